@@ -1,21 +1,41 @@
 package com.github.ffalcinelli.buffalo.airstation;
 
+import com.github.ffalcinelli.buffalo.airstation.Bulkhead.Lane;
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
 import com.github.ffalcinelli.buffalo.exception.AuthenticationException;
+import com.github.ffalcinelli.buffalo.exception.CircuitOpenException;
+import com.github.ffalcinelli.buffalo.exception.DeadlineExceededException;
+import com.github.ffalcinelli.buffalo.exception.SessionExpiredException;
 import com.github.ffalcinelli.buffalo.models.NasSettings;
 import com.github.ffalcinelli.buffalo.models.NetworkDevice;
 import com.github.ffalcinelli.buffalo.models.WifiSettings;
 import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.*;
 import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
 import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static com.github.ffalcinelli.buffalo.utils.Utils.getBooleanOrDefault;
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
 import static com.github.ffalcinelli.buffalo.utils.Utils.getStringOrDefault;
 
 /**
@@ -23,13 +43,74 @@ import static com.github.ffalcinelli.buffalo.utils.Utils.getStringOrDefault;
  * <p>
  * Provides a Java API for the functions exposed by the device.
  * <p>
+ * Concurrency and timeouts are read from the settings:
+ * <ul>
+ * <li>maxRequests: the maximum number of concurrent requests of the dispatcher (owned client only).</li>
+ * <li>maxRequestsPerHost: the maximum number of concurrent requests to the device.</li>
+ * <li>maxQueuedRequests: the maximum number of requests waiting for a free slot before being rejected.</li>
+ * <li>connectTimeout, readTimeout, writeTimeout, callTimeout: timeouts in milliseconds (0 means no timeout).</li>
+ * <li>encryptor: the login password encryption, "js" (default) or "jca" for the Java Cryptography Architecture.</li>
+ * <li>autoLogin: whether to log in again with the last credentials when the session expires (default true).</li>
+ * </ul>
+ * <p>
+ * An AirStation is safe for concurrent use: the session is an immutable {@link Session} published atomically by the
+ * {@link RequestAdapter}, so requests from many threads run in parallel (within the device bulkhead) without any
+ * external locking. Logging in or out while other requests are running only affects the requests built afterwards.
+ * <p>
  * Created by fabio on 24/02/17.
  */
 public class AirStation implements Closeable {
 
-    private JSONObject settings;
-    private OkHttpClient client;
-    private RequestAdapter adapter;
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+    public static final int DEFAULT_MAX_QUEUED_REQUESTS = 64;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 10000;
+    public static final int DEFAULT_WRITE_TIMEOUT = 10000;
+    public static final int DEFAULT_CALL_TIMEOUT = 0;
+    public static final boolean DEFAULT_AUTO_LOGIN = true;
+
+    private static final JSONFunction[] NAS_SERVICES = {SAMBA, TORRENT, DLNA, WEB_AXS};
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final JSONObject settings;
+    private final OkHttpClient client;
+    private final RequestAdapter adapter;
+    private final Bulkhead bulkhead;
+    private final SingleFlight<JSONFunction, JSONObject> singleFlight = new SingleFlight<>();
+    private final int callTimeout;
+    private final boolean autoLogin;
+    private final SingleFlight<Session, JSONObject> logins = new SingleFlight<>();
+    private final WriteQueue writeQueue;
+    private final Throttle throttle;
+    private final CircuitBreaker breaker;
+    private final RetryPolicy retryPolicy;
+    private volatile ResponseCache cache;
+    private volatile Credentials credentials;
+    private final ConcurrentMap<JSONFunction, Fingerprinted> fingerprints = new ConcurrentHashMap<>();
+
+    private final ResponseHandler<JSONObject> setHandler = new ResponseHandler<JSONObject>() {
+        @Override
+        public JSONObject handle(Response response) throws IOException {
+            HtmlScanner scanner = new HtmlScanner(response.body().source(), true);
+            checkSession(scanner);
+            return new JSONObject().put("RESULT", scanner.remainder());
+        }
+    };
+
+    private final ResponseHandler<JSONObject> loginResponseHandler = new ResponseHandler<JSONObject>() {
+        @Override
+        public JSONObject handle(Response response) throws IOException {
+            return adapter.toLoginResponse(response);
+        }
+    };
+
+    private final ResponseHandler<JSONArray> dhcpHandler = new ResponseHandler<JSONArray>() {
+        @Override
+        public JSONArray handle(Response response) throws IOException {
+            return adapter.toDhcpEntries(response);
+        }
+    };
 
     public AirStation(String url) {
         this(url, getDefaultCookieJar());
@@ -44,15 +125,57 @@ public class AirStation implements Closeable {
     }
 
     public AirStation(JSONObject settings, CookieJar cookieJar) {
+        this(settings, cookieJar, newClient(settings));
+    }
+
+    /**
+     * Build an AirStation sharing the dispatcher and the connection pool of the given {@link OkHttpClient}.
+     * The session is kept by the passed {@link CookieJar} and a dedicated {@link RequestAdapter}, so many devices can
+     * be handled by a single client without mixing their sessions.
+     *
+     * @param settings     The configuration settings.
+     * @param cookieJar    The {@link CookieJar} for this device (if null a default one is used).
+     * @param sharedClient The {@link OkHttpClient} whose resources will be shared.
+     */
+    public AirStation(JSONObject settings, CookieJar cookieJar, OkHttpClient sharedClient) {
         this.adapter = new RequestAdapter(
                 getStringOrDefault(settings, "url", DEFAULT_URL),
-                getStringOrDefault(settings, "encoding", DEFAULT_ENCODING)
+                getStringOrDefault(settings, "encoding", DEFAULT_ENCODING),
+                getStringOrDefault(settings, "encryptor", DEFAULT_ENCRYPTOR)
         );
         this.settings = settings;
-        this.client = new OkHttpClient.Builder()
+        this.client = sharedClient.newBuilder()
                 .cookieJar(cookieJar != null ? cookieJar : RequestAdapter.getDefaultCookieJar())
+                .connectTimeout(getIntOrDefault(settings, "connectTimeout", DEFAULT_CONNECT_TIMEOUT), TimeUnit.MILLISECONDS)
+                .readTimeout(getIntOrDefault(settings, "readTimeout", DEFAULT_READ_TIMEOUT), TimeUnit.MILLISECONDS)
+                .writeTimeout(getIntOrDefault(settings, "writeTimeout", DEFAULT_WRITE_TIMEOUT), TimeUnit.MILLISECONDS)
                 .build();
+        this.callTimeout = getIntOrDefault(settings, "callTimeout", DEFAULT_CALL_TIMEOUT);
+        this.bulkhead = new Bulkhead(
+                getIntOrDefault(settings, "maxRequestsPerHost", DEFAULT_MAX_REQUESTS_PER_HOST),
+                getIntOrDefault(settings, "maxQueuedRequests", DEFAULT_MAX_QUEUED_REQUESTS)
+        );
+        this.autoLogin = getBooleanOrDefault(settings, "autoLogin", DEFAULT_AUTO_LOGIN);
+        if (settings.has("cache"))
+            this.cache = new ResponseCache(settings.getJSONObject("cache"));
+        this.writeQueue = settings.has("writeQueue") ? new WriteQueue(this, settings.getJSONObject("writeQueue")) : null;
+        this.throttle = settings.has("throttle") ? new Throttle(settings.getJSONObject("throttle")) : null;
+        this.breaker = settings.has("circuitBreaker")
+                ? new CircuitBreaker(this, settings.getJSONObject("circuitBreaker")) : null;
+        this.retryPolicy = settings.has("retry") ? new RetryPolicy(settings.getJSONObject("retry")) : null;
+    }
 
+    /**
+     * Build an {@link OkHttpClient} whose dispatcher is configured by the maxRequests and maxRequestsPerHost settings.
+     *
+     * @param settings The configuration settings.
+     * @return The {@link OkHttpClient}.
+     */
+    static OkHttpClient newClient(JSONObject settings) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(getIntOrDefault(settings, "maxRequests", DEFAULT_MAX_REQUESTS));
+        dispatcher.setMaxRequestsPerHost(getIntOrDefault(settings, "maxRequestsPerHost", DEFAULT_MAX_REQUESTS_PER_HOST));
+        return new OkHttpClient.Builder().dispatcher(dispatcher).build();
     }
 
     /**
@@ -73,8 +196,716 @@ public class AirStation implements Closeable {
         return adapter;
     }
 
+    /**
+     * Get the {@link Bulkhead} limiting the concurrent requests to this device.
+     *
+     * @return The {@link Bulkhead} in use.
+     */
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * Get the {@link SingleFlight} coalescing concurrent `get_json_param` requests for the same dataset.
+     *
+     * @return The {@link SingleFlight} in use.
+     */
+    public SingleFlight<JSONFunction, JSONObject> getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Get the {@link ResponseCache} of `get_json_param` responses, enabled by the "cache" settings object.
+     *
+     * @return The {@link ResponseCache} in use, or null if caching is disabled.
+     */
+    public ResponseCache getResponseCache() {
+        return cache;
+    }
+
+    /**
+     * Get the {@link WriteQueue} collapsing the pending `set` requests, enabled by the "writeQueue" settings object.
+     *
+     * @return The {@link WriteQueue} in use, or null if writes are sent right away.
+     */
+    public WriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Get the {@link Throttle} adapting the request rate to the device load, enabled by the "throttle" settings
+     * object.
+     *
+     * @return The {@link Throttle} in use, or null if requests are not throttled.
+     */
+    public Throttle getThrottle() {
+        return throttle;
+    }
+
+    /**
+     * Get the {@link CircuitBreaker} failing requests fast while the device is unreachable, enabled by the
+     * "circuitBreaker" settings object.
+     *
+     * @return The {@link CircuitBreaker} in use, or null if requests are always sent.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker;
+    }
+
+    /**
+     * Get the {@link RetryPolicy} hedging and retrying the idempotent reads, enabled by the "retry" settings object.
+     *
+     * @return The {@link RetryPolicy} in use, or null if reads are sent once.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    void setResponseCache(ResponseCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Execute the given {@link Request} within the device bulkhead, and let the handler process the {@link Response}.
+     * The response is always closed before returning.
+     *
+     * @param request The {@link Request} to execute.
+     * @param handler The {@link ResponseHandler} producing the result.
+     * @param <T>     The result type.
+     * @return The result produced by the handler.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    <T> T execute(Request request, ResponseHandler<T> handler) throws IOException {
+        return execute(request, handler, Lane.DEFAULT);
+    }
+
+    private <T> T execute(Request request, ResponseHandler<T> handler, Lane lane) throws IOException {
+        admit(lane);
+        Call call = client.newCall(request);
+        CallTimeout timeout = CallTimeout.start(call, callTimeout);
+        Response response = null;
+        try {
+            response = call.execute();
+            responded(response);
+            return handler.handle(response);
+        } catch (IOException e) {
+            if (response == null)
+                failed(call, timeout);
+            throw CallTimeout.translate(timeout, e);
+        } finally {
+            if (response != null)
+                response.close();
+            CallTimeout.stop(timeout);
+            bulkhead.release(lane);
+        }
+    }
+
+    /**
+     * Let a synchronous request through the circuit breaker and the throttle, and take a slot of its bulkhead lane.
+     * The calling thread waits for a throttle token when the throttle paces requests without a priority.
+     *
+     * @param lane The {@link Lane} of the request.
+     * @throws IOException If the circuit is open, the bulkhead is full, the deadline expired or interrupted.
+     */
+    private void admit(Lane lane) throws IOException {
+        if (breaker != null && !breaker.allowRequest())
+            throw new CircuitOpenException("The device is unreachable, the circuit breaker is open");
+        if (throttle != null) {
+            sampleBusy();
+            long wait = throttle.pace(lane.isPrioritized() ? lane.priority : null);
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttled");
+                }
+                if (lane.isExpired(System.currentTimeMillis()))
+                    throw new DeadlineExceededException("The request deadline expired while throttled");
+            }
+        }
+        bulkhead.acquire(lane);
+    }
+
+    /**
+     * Enqueue the given {@link Request} within the device bulkhead, and let the handler process the {@link Response}.
+     * The bulkhead slot is released before notifying the callback, so the callback may issue further requests.
+     *
+     * @param request  The {@link Request} to enqueue.
+     * @param handler  The {@link ResponseHandler} producing the result.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     * @param <T>      The result type.
+     */
+    <T> void enqueue(Request request, ResponseHandler<T> handler, AsyncCallback<T> callback) {
+        enqueue(request, handler, callback, trackerOf(callback), Lane.of(callback, false));
+    }
+
+    /**
+     * Enqueue the given {@link Request} within the device bulkhead, and let the handler process the {@link Response}.
+     *
+     * @param request  The {@link Request} to enqueue.
+     * @param handler  The {@link ResponseHandler} producing the result.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     * @param tracker  The {@link CallTracker} to notify with the issued request, may be null.
+     * @param lane     The bulkhead {@link Lane} the request waits in.
+     * @param <T>      The result type.
+     */
+    <T> void enqueue(final Request request, final ResponseHandler<T> handler, final AsyncCallback<T> callback,
+                     final CallTracker tracker, final Lane lane) {
+        if (breaker != null && !breaker.allowRequest()) {
+            callback.onFailure(new CircuitOpenException("The device is unreachable, the circuit breaker is open"));
+            return;
+        }
+        if (throttle != null) {
+            sampleBusy();
+            long wait = throttle.pace(lane.isPrioritized() ? lane.priority : null);
+            if (wait > 0) {
+                Throttle.TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (lane.isExpired(System.currentTimeMillis()))
+                            callback.onFailure(new DeadlineExceededException(
+                                    "The request deadline expired while throttled"));
+                        else
+                            submit(request, handler, callback, tracker, lane);
+                    }
+                }, wait, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        submit(request, handler, callback, tracker, lane);
+    }
+
+    private <T> void submit(final Request request, final ResponseHandler<T> handler, final AsyncCallback<T> callback,
+                            final CallTracker tracker, final Lane lane) {
+        try {
+            bulkhead.submit(new Runnable() {
+                @Override
+                public void run() {
+                    final Call call = client.newCall(request);
+                    final CallTimeout timeout = CallTimeout.start(call, callTimeout);
+                    if (tracker != null)
+                        tracker.track(cancellable(call, timeout));
+                    try {
+                        call.enqueue(new Callback() {
+                            @Override
+                            public void onFailure(Call call, IOException e) {
+                                CallTimeout.stop(timeout);
+                                failed(call, timeout);
+                                bulkhead.release(lane);
+                                callback.onFailure(CallTimeout.translate(timeout, e));
+                            }
+
+                            @Override
+                            public void onResponse(Call call, Response response) {
+                                T result;
+                                try {
+                                    responded(response);
+                                    result = handler.handle(response);
+                                } catch (IOException e) {
+                                    bulkhead.release(lane);
+                                    callback.onFailure(CallTimeout.translate(timeout, e));
+                                    return;
+                                } catch (Exception e) {
+                                    bulkhead.release(lane);
+                                    callback.onFailure(e);
+                                    return;
+                                } finally {
+                                    response.close();
+                                    CallTimeout.stop(timeout);
+                                }
+                                bulkhead.release(lane);
+                                callback.onSuccess(result);
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        CallTimeout.stop(timeout);
+                        bulkhead.release(lane);
+                        callback.onFailure(e);
+                    }
+                }
+            }, lane, new Runnable() {
+                @Override
+                public void run() {
+                    callback.onFailure(new DeadlineExceededException(
+                            "The request deadline expired while waiting for a slot"));
+                }
+            });
+        } catch (IOException e) {
+            callback.onFailure(e);
+        }
+    }
+
+    /**
+     * Feed the {@link Throttle} with the latency of a response, and the {@link CircuitBreaker} with its success.
+     */
+    private void responded(Response response) {
+        if (throttle != null)
+            throttle.onLatency(response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+        if (breaker != null)
+            breaker.onSuccess();
+    }
+
+    /**
+     * Feed the {@link Throttle} and the {@link CircuitBreaker} with a transport failure. A call cancelled by its
+     * caller tells nothing about the device and is ignored, unlike one cancelled by its {@link CallTimeout}.
+     *
+     * @param call    The failed {@link Call}.
+     * @param timeout The {@link CallTimeout} watching the call, may be null.
+     */
+    private void failed(Call call, CallTimeout timeout) {
+        if (call.isCanceled() && !CallTimeout.hasFired(timeout))
+            return;
+        if (throttle != null)
+            throttle.onFailure();
+        if (breaker != null)
+            breaker.onFailure();
+    }
+
+    /**
+     * Send the half-open probe of the given breaker: a request for the home page, outside the bulkhead.
+     *
+     * @param breaker The {@link CircuitBreaker} to notify with the probe outcome.
+     */
+    void probe(final CircuitBreaker breaker) {
+        Call call = client.newCall(adapter.getHomeRequest());
+        final CallTimeout timeout = CallTimeout.start(call, callTimeout);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                CallTimeout.stop(timeout);
+                breaker.onFailure();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                CallTimeout.stop(timeout);
+                breaker.onSuccess();
+            }
+        });
+    }
+
+    /**
+     * Sample the BUSY state of the device, if the {@link Throttle} asks for it.
+     */
+    private void sampleBusy() {
+        if (!throttle.isSampleDue() || !adapter.isLoggedIn())
+            return;
+        getJSONParam(BUSY, new AsyncCallback<JSONObject>() {
+            @Override
+            public void onFailure(Throwable t) {
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+            }
+        });
+    }
+
+    /**
+     * Execute a {@link Request} needing a valid session. If the device answers with its login page, the session is
+     * recovered by {@link #recover(Session, AsyncCallback)} and a fresh request is executed once more.
+     *
+     * @param factory The {@link RequestFactory} building the request.
+     * @param handler The {@link ResponseHandler} producing the result.
+     * @param <T>     The result type.
+     * @return The result produced by the handler.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    <T> T executeInSession(RequestFactory factory, ResponseHandler<T> handler) throws IOException {
+        return executeInSession(factory, handler, Lane.DEFAULT);
+    }
+
+    private <T> T executeInSession(RequestFactory factory, ResponseHandler<T> handler, Lane lane) throws IOException {
+        Session session = adapter.getSession();
+        try {
+            return execute(factory.newRequest(), handler, lane);
+        } catch (SessionExpiredException e) {
+            if (!canRecover())
+                throw e;
+            AirStationFuture<JSONObject> recovery = new AirStationFuture<>();
+            recover(session, recovery);
+            await(recovery);
+            return execute(factory.newRequest(), handler, lane);
+        }
+    }
+
+    /**
+     * Enqueue a {@link Request} needing a valid session. If the device answers with its login page, the session is
+     * recovered by {@link #recover(Session, AsyncCallback)} and a fresh request is enqueued once more.
+     *
+     * @param factory  The {@link RequestFactory} building the request.
+     * @param handler  The {@link ResponseHandler} producing the result.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     * @param <T>      The result type.
+     */
+    <T> void enqueueInSession(RequestFactory factory, ResponseHandler<T> handler, AsyncCallback<T> callback) {
+        enqueueInSession(factory, handler, callback, trackerOf(callback), Lane.of(callback, false));
+    }
+
+    private <T> void enqueueInSession(final RequestFactory factory, final ResponseHandler<T> handler,
+                                      final AsyncCallback<T> callback, final CallTracker tracker, final Lane lane) {
+        final Session session = adapter.getSession();
+        Request request;
+        try {
+            request = factory.newRequest();
+        } catch (IOException e) {
+            callback.onFailure(e);
+            return;
+        }
+        enqueue(request, handler, new AsyncCallback<T>() {
+            @Override
+            public void onFailure(final Throwable t) {
+                if (!(t instanceof SessionExpiredException) || !canRecover()) {
+                    callback.onFailure(t);
+                    return;
+                }
+                recover(session, new AsyncCallback<JSONObject>() {
+                    @Override
+                    public void onFailure(Throwable t) {
+                        callback.onFailure(t);
+                    }
+
+                    @Override
+                    public void onSuccess(JSONObject data) {
+                        try {
+                            enqueue(factory.newRequest(), handler, callback, tracker, lane);
+                        } catch (IOException e) {
+                            callback.onFailure(e);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess(T data) {
+                callback.onSuccess(data);
+            }
+        }, tracker, lane);
+    }
+
+    /**
+     * Enqueue an idempotent read through the {@link RetryPolicy}, if enabled, so that it can be hedged and retried.
+     *
+     * @param factory  The {@link RequestFactory} building the request.
+     * @param handler  The {@link ResponseHandler} producing the result.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     * @param tracker  The {@link CallTracker} to hand every call to, may be null.
+     * @param lane     The {@link Lane} of every request sent.
+     * @param <T>      The result type.
+     */
+    private <T> void read(final RequestFactory factory, final ResponseHandler<T> handler,
+                          AsyncCallback<T> callback, CallTracker tracker, final Lane lane) {
+        if (retryPolicy == null) {
+            enqueueInSession(factory, handler, callback, tracker, lane);
+            return;
+        }
+        retryPolicy.execute(new RetryPolicy.Attempt<T>() {
+            @Override
+            public void start(AsyncCallback<T> callback, CallTracker tracker) {
+                enqueueInSession(factory, handler, callback, tracker, lane);
+            }
+        }, callback, tracker);
+    }
+
+    /**
+     * Execute an idempotent read through the {@link RetryPolicy}, if enabled.
+     * Synchronous version of {@link #read(RequestFactory, ResponseHandler, AsyncCallback, CallTracker, Lane)}.
+     */
+    private <T> T read(RequestFactory factory, ResponseHandler<T> handler) throws IOException {
+        if (retryPolicy == null)
+            return executeInSession(factory, handler);
+        AirStationFuture<T> future = new AirStationFuture<>();
+        read(factory, handler, future, future, Lane.DEFAULT);
+        return await(future);
+    }
+
+    private boolean canRecover() {
+        return autoLogin && credentials != null;
+    }
+
+    /**
+     * Log in again after the given session expired. Concurrent recoveries of the same session share a single login,
+     * and a session already replaced by a newer login is not recovered again.
+     *
+     * @param expired  The {@link Session} found expired.
+     * @param callback The {@link AsyncCallback} to notify once the session is recovered.
+     */
+    private void recover(Session expired, AsyncCallback<JSONObject> callback) {
+        Credentials credentials = this.credentials;
+        if (credentials == null) {
+            callback.onFailure(new SessionExpiredException("The device session has expired"));
+            return;
+        }
+        if (adapter.getSession() != expired) {
+            callback.onSuccess(new JSONObject().put("RESULT", "OK"));
+            return;
+        }
+        SingleFlight<Session, JSONObject>.Flight flight = logins.join(expired, callback);
+        if (flight != null)
+            login(credentials.username, credentials.password, flight);
+    }
+
+    /**
+     * Get the number of logins performed to recover an expired session.
+     *
+     * @return The number of automatic logins.
+     */
+    public long getAutoLoginCount() {
+        return logins.getLeaderCount();
+    }
+
+    /**
+     * Wait for the given future, unwrapping its failure.
+     *
+     * @param future The {@link AirStationFuture} to wait for.
+     * @param <T>    The result type.
+     * @return The future result.
+     * @throws IOException If the future failed with an {@link IOException} or the wait was interrupted.
+     */
+    private static <T> T await(AirStationFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the device response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new AirStationException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Look the given param up in the cache, starting a refresh in the background lane if the value is stale.
+     *
+     * @param param The JSON param.
+     * @return The cached value or null if none is available.
+     */
+    private JSONObject cached(final JSONFunction param) {
+        if (cache == null || !cache.isCached(param))
+            return null;
+        ResponseCache.Lookup lookup = cache.get(param);
+        if (lookup == null)
+            return null;
+        if (lookup.refresh)
+            fetch(param, new Refresh(param));
+        return lookup.value;
+    }
+
+    /**
+     * Wrap the given callback so that a successful result is stored into the cache.
+     *
+     * @param param    The JSON param.
+     * @param callback The {@link AsyncCallback} to notify.
+     * @return The wrapping {@link AsyncCallback}, or the given one if the param is not cached.
+     */
+    private AsyncCallback<JSONObject> caching(final JSONFunction param, final AsyncCallback<JSONObject> callback) {
+        if (cache == null || !cache.isCached(param))
+            return callback;
+        final long generation = cache.generation(param);
+        return new AsyncCallback<JSONObject>() {
+            @Override
+            public void onFailure(Throwable t) {
+                callback.onFailure(t);
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+                cache.put(param, data, generation);
+                callback.onSuccess(data);
+            }
+        };
+    }
+
+    /**
+     * Retrieve the given param from the device, joining the request already in flight if any.
+     *
+     * @param param    The JSON param to retrieve.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    private void fetch(JSONFunction param, AsyncCallback<JSONObject> callback) {
+        SingleFlight<JSONFunction, JSONObject>.Flight flight = singleFlight.join(param, callback);
+        if (flight != null)
+            read(jsonParamRequest(param), jsonHandler(param), caching(param, flight), flight, Lane.of(callback, false));
+    }
+
+    /**
+     * Retrieve the given param decoding it with the reader while the response is read. Cached params are decoded from
+     * the cached value instead, and fetched through {@link #getJSONParam(JSONFunction)} on a miss so that the cache
+     * is filled.
+     *
+     * @param param  The JSON param to retrieve.
+     * @param reader The {@link JSONParamReader} decoding the response.
+     * @param <T>    The result type.
+     * @return The decoded value.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    private <T> T getTyped(JSONFunction param, JSONParamReader<T> reader) throws IOException {
+        if (cache != null && cache.isCached(param))
+            return reader.read(getJSONParam(param));
+        if (!adapter.isLoggedIn())
+            throw new IllegalStateException("You must be logged in to perform this request.");
+        return executeInSession(jsonParamRequest(param), typedHandler(reader));
+    }
+
+    private <T> void getTyped(JSONFunction param, final JSONParamReader<T> reader, final AsyncCallback<T> callback) {
+        if (cache != null && cache.isCached(param)) {
+            getJSONParam(param, new AsyncCallback<JSONObject>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    callback.onFailure(t);
+                }
+
+                @Override
+                public void onSuccess(JSONObject data) {
+                    T result;
+                    try {
+                        result = reader.read(data);
+                    } catch (IOException | RuntimeException e) {
+                        callback.onFailure(e);
+                        return;
+                    }
+                    callback.onSuccess(result);
+                }
+            });
+        } else if (!adapter.isLoggedIn()) {
+            callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
+        } else {
+            enqueueInSession(jsonParamRequest(param), typedHandler(reader), callback);
+        }
+    }
+
+    /**
+     * Build the handler parsing a `get_json_param` response. The body is fingerprinted while it is read and, when it
+     * is byte for byte the same as the previous response for the param, the previous {@link JSONObject} is returned
+     * without parsing the body again. Parsed values are made read only, so that they can be shared.
+     *
+     * @param param The JSON param requested.
+     * @return The {@link ResponseHandler}.
+     */
+    private ResponseHandler<JSONObject> jsonHandler(final JSONFunction param) {
+        return new ResponseHandler<JSONObject>() {
+            @Override
+            public JSONObject handle(Response response) throws IOException {
+                Buffer body = new Buffer();
+                Fingerprint fingerprint = Fingerprint.read(response.body().source(), body);
+                Fingerprinted last = fingerprints.get(param);
+                JSONObject value;
+                if (last != null && last.fingerprint.matches(fingerprint)) {
+                    value = last.value;
+                } else {
+                    MediaType contentType = response.body().contentType();
+                    Charset charset = contentType != null ? contentType.charset(UTF_8) : UTF_8;
+                    String text = body.readString(charset);
+                    checkSession(text);
+                    value = ReadOnlyJSONObject.of(new JSONObject(text));
+                    fingerprints.put(param, new Fingerprinted(fingerprint, value));
+                }
+                if (param == BUSY && throttle != null)
+                    throttle.onBusy(value.optBoolean("SYSTEM"));
+                return value;
+            }
+        };
+    }
+
+    private <T> ResponseHandler<T> typedHandler(final JSONParamReader<T> reader) {
+        return new ResponseHandler<T>() {
+            @Override
+            public T handle(Response response) throws IOException {
+                BufferedSource source = response.body().source();
+                while (source.request(1) && Character.isWhitespace(source.buffer().getByte(0)))
+                    source.skip(1);
+                if (source.request(1) && source.buffer().getByte(0) == '<') {
+                    checkSession(new HtmlScanner(source, true));
+                    throw new AirStationException("Unexpected response from the device");
+                }
+                return reader.read(new JsonStreamReader(source));
+            }
+        };
+    }
+
+    /**
+     * Drop the cached params which may be changed by a `set` request.
+     *
+     * @param params The `set` request parameters.
+     */
+    private void invalidate(Map<String, String> params) {
+        if (cache != null)
+            cache.invalidate(ResponseCache.affectedBy(params));
+    }
+
+    private RequestFactory jsonParamRequest(final JSONFunction param) {
+        return new RequestFactory() {
+            @Override
+            public Request newRequest() {
+                return adapter.getJSONParamRequest(param);
+            }
+        };
+    }
+
+    private RequestFactory setRequest(final Map<String, String> params) {
+        return new RequestFactory() {
+            @Override
+            public Request newRequest() throws IOException {
+                // Parameters carrying the session (e.g. DHCP edits) must be replayed with the current one.
+                if (!params.containsKey("sWebSessionid"))
+                    return adapter.getSETRequest(params);
+                Map<String, String> current = new HashMap<>(params);
+                Session session = adapter.getSession();
+                current.put("sWebSessionid", session.getWebSessionId());
+                current.put("sWebSessionnum", session.getWebSessionNum());
+                return adapter.getSETRequest(current);
+            }
+        };
+    }
+
+    private RequestFactory frmRequest(final String frm) {
+        return new RequestFactory() {
+            @Override
+            public Request newRequest() {
+                return adapter.getFRMRequest(frm);
+            }
+        };
+    }
+
+    /**
+     * Wrap a {@link Call} into the handle given to trackers. A call cancelled by its {@link CallTimeout} is not
+     * reported as cancelled, as it failed like any timed out request.
+     */
+    private static Cancellable cancellable(final Call call, final CallTimeout timeout) {
+        return new Cancellable() {
+            @Override
+            public void cancel() {
+                call.cancel();
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return call.isCanceled() && !CallTimeout.hasFired(timeout);
+            }
+        };
+    }
+
+    private static CallTracker trackerOf(AsyncCallback<?> callback) {
+        return callback instanceof CallTracker ? (CallTracker) callback : null;
+    }
+
     /**
      * Call the `get_json_param` device function.
+     * The result is read only, nested objects and arrays included: changing it throws an
+     * {@link UnsupportedOperationException}, a copy to edit can be made with {@code new JSONObject(result.toString())}.
+     * Concurrent calls for the same param thus safely share the same request and the same {@link JSONObject}
+     * instance, as do the values served by the {@link ResponseCache}.
+     * <p>
+     * When the device sends the same bytes it sent for the previous request, the body is not parsed again and the
+     * previous {@link JSONObject} instance is returned: a result identical (==) to the previous one means the data
+     * is not modified.
      *
      * @param param The JSON param to retrieve.
      * @return A {@link JSONObject} with the data.
@@ -83,11 +914,31 @@ public class AirStation implements Closeable {
     public JSONObject getJSONParam(final JSONFunction param) throws IOException {
         if (!adapter.isLoggedIn())
             throw new IllegalStateException("You must be logged in to perform this request.");
-        return new JSONObject(client.newCall(adapter.getJSONParamRequest(param.name())).execute().body().string());
+        JSONObject cached = cached(param);
+        if (cached != null)
+            return cached;
+        AirStationFuture<JSONObject> future = new AirStationFuture<>();
+        SingleFlight<JSONFunction, JSONObject>.Flight flight = singleFlight.join(param, future);
+        if (flight == null)
+            return await(future);
+        AsyncCallback<JSONObject> landing = caching(param, flight);
+        JSONObject result;
+        try {
+            result = read(jsonParamRequest(param), jsonHandler(param));
+        } catch (IOException | RuntimeException e) {
+            landing.onFailure(e);
+            throw e;
+        }
+        landing.onSuccess(result);
+        return result;
     }
 
     /**
      * Tell the device to perform an action upon the given parameters.
+     * The cached params affected by the action are invalidated once the request is done.
+     * <p>
+     * When the {@link WriteQueue} is enabled, a setting is sent together with the pending writes to the same setting,
+     * and the whole queue is flushed.
      *
      * @param params The parameters map.
      * @return A {@link JSONObject} containing the device response. Usually a {"RESULT": "OK"} response.
@@ -96,13 +947,23 @@ public class AirStation implements Closeable {
     public JSONObject set(final Map<String, String> params) throws IOException {
         if (!adapter.isLoggedIn())
             throw new IllegalStateException("You must be logged in to perform this request.");
-        String response = client.newCall(adapter.getSETRequest(params)).execute().body().string();
-        return new JSONObject().put("RESULT", response);
+        if (writeQueue != null && WriteQueue.isQueued(params)) {
+            AirStationFuture<JSONObject> future = new AirStationFuture<>();
+            writeQueue.submit(params, future);
+            writeQueue.flush();
+            return await(future);
+        }
+        try {
+            return executeInSession(setRequest(params), setHandler, Lane.SERIAL);
+        } finally {
+            invalidate(params);
+        }
     }
 
     /**
      * Call the `get_json_param` device function.
      * Asynchronous version of {@link #getJSONParam(RequestAdapter.JSONFunction)} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param param    The JSON param to retrieve.
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
@@ -111,23 +972,20 @@ public class AirStation implements Closeable {
         if (!adapter.isLoggedIn())
             callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
         else {
-            client.newCall(adapter.getJSONParamRequest(param.name())).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    callback.onFailure(e);
-                }
-
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    callback.onSuccess(new JSONObject(response.body().string()));
-                }
-            });
+            JSONObject cached = cached(param);
+            if (cached != null)
+                callback.onSuccess(cached);
+            else
+                fetch(param, callback);
         }
     }
 
     /**
      * Tell the device to perform an action upon the given parameters.
      * Asynchronous version of {@link #set(Map) set} method.
+     * <p>
+     * When the {@link WriteQueue} is enabled, settings wait in the queue and are collapsed with the later writes to
+     * the same setting until the queue is flushed.
      *
      * @param params   The parameters map.
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
@@ -135,27 +993,75 @@ public class AirStation implements Closeable {
     public void set(final Map<String, String> params, final AsyncCallback<JSONObject> callback) {
         if (!adapter.isLoggedIn())
             callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
-        else {
-            try {
-                client.newCall(adapter.getSETRequest(params)).enqueue(new Callback() {
-                    @Override
-                    public void onFailure(Call call, IOException e) {
-                        callback.onFailure(e);
-                    }
+        else if (writeQueue != null && WriteQueue.isQueued(params))
+            writeQueue.submit(params, callback);
+        else
+            send(params, callback);
+    }
 
-                    @Override
-                    public void onResponse(Call call, Response response) throws IOException {
-                        callback.onSuccess(new JSONObject().put("RESULT", response.body().string()));
-                    }
-                });
-            } catch (UnsupportedEncodingException e) {
-                callback.onFailure(e);
+    /**
+     * Send a `set` request right away, invalidating the cached params it affects once done.
+     *
+     * @param params   The parameters map.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    void send(final Map<String, String> params, final AsyncCallback<JSONObject> callback) {
+        enqueueInSession(setRequest(params), setHandler, new AsyncCallback<JSONObject>() {
+            @Override
+            public void onFailure(Throwable t) {
+                invalidate(params);
+                callback.onFailure(t);
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+                invalidate(params);
+                callback.onSuccess(data);
             }
+        }, trackerOf(callback), Lane.of(callback, true));
+    }
+
+    /**
+     * Call the `get_json_param` device function for each of the given datasets at the same time, within the device
+     * bulkhead, and merge the results. The datasets are shared by every caller and are read only, see
+     * {@link #getJSONParam(JSONFunction)}.
+     *
+     * @param params The JSON params to retrieve.
+     * @return A {@link JSONParamSnapshot} with the datasets retrieved and the failures of the others.
+     * @throws IOException Whenever interrupted while waiting for the results.
+     */
+    public JSONParamSnapshot getJSONParams(EnumSet<JSONFunction> params) throws IOException {
+        if (!adapter.isLoggedIn())
+            throw new IllegalStateException("You must be logged in to perform this request.");
+        AirStationFuture<JSONParamSnapshot> future = new AirStationFuture<>();
+        getJSONParams(params, future);
+        return await(future);
+    }
+
+    /**
+     * Call the `get_json_param` device function for each of the given datasets at the same time.
+     * Asynchronous version of {@link #getJSONParams(EnumSet)} method. The callback always succeeds once every request
+     * is done, partial failures are reported by the {@link JSONParamSnapshot}. The datasets are shared by every caller
+     * and are read only, see {@link #getJSONParam(JSONFunction)}.
+     *
+     * @param params   The JSON params to retrieve.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getJSONParams(EnumSet<JSONFunction> params, AsyncCallback<JSONParamSnapshot> callback) {
+        if (!adapter.isLoggedIn()) {
+            callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
+            return;
         }
+        SnapshotCollector collector = new SnapshotCollector(params, callback);
+        for (JSONFunction param : params)
+            getJSONParam(param, collector.newCallback(param));
     }
 
     /**
      * Open a session to the device by logging in.
+     * Once logged in, the credentials are kept in memory until {@link #close()} to log in again whenever the session
+     * expires, unless autoLogin is disabled by the settings. The home page is requested first, and no login is sent
+     * if the device shows it without asking for one, the session being still open.
      *
      * @param username The username (usually "admin").
      * @param password The password (if it's not been changed set it to "password").
@@ -163,19 +1069,29 @@ public class AirStation implements Closeable {
      * @throws IOException Whenever something goes wrong communicating with the device or login fails.
      */
     public JSONObject login(final String username, final String password) throws IOException {
-        if (!adapter.isLoggedIn()) {
-            try {
-                Response getHomeResponse = client.newCall(adapter.getHomeRequest()).execute();
-                Request doLoginRequest = adapter.doLoginFromHomeResponse(username, password, getHomeResponse);
-                Response response = client.newCall(doLoginRequest).execute();
-                return adapter.toJSONResponse(response);
-            } catch (Exception e) {
-                throw new AuthenticationException("Unable to authenticate user " + username, e);
-            }
+        Request doLoginRequest;
+        try {
+            doLoginRequest = execute(adapter.getHomeRequest(), loginHandler(username, password));
+        } catch (Exception e) {
+            throw new AuthenticationException("Unable to authenticate user " + username, e);
         }
-        //TODO: check this up if it's really logged in
-        return new JSONObject().put("RESULT", "OK");
+        // The device shows its login page unless the session is still open.
+        if (doLoginRequest == null)
+            return notLoggedIn(username);
+        try {
+            JSONObject result = execute(doLoginRequest, loginResponseHandler);
+            credentials = new Credentials(username, password);
+            return result;
+        } catch (Exception e) {
+            throw new AuthenticationException("Unable to authenticate user " + username, e);
+        }
+    }
 
+    private JSONObject notLoggedIn(String username) throws AuthenticationException {
+        if (!adapter.isLoggedIn())
+            throw new AuthenticationException("Unable to authenticate user " + username,
+                    new AirStationException("The device did not show its login page"));
+        return new JSONObject().put("RESULT", "OK");
     }
 
     /**
@@ -187,73 +1103,129 @@ public class AirStation implements Closeable {
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
     public void login(final String username, final String password, final AsyncCallback<JSONObject> callback) {
-        client.newCall(adapter.getHomeRequest()).enqueue(new Callback() {
+        final CallTracker tracker = trackerOf(callback);
+        enqueue(adapter.getHomeRequest(), loginHandler(username, password), new AsyncCallback<Request>() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
+            public void onFailure(Throwable t) {
+                callback.onFailure(t);
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                Request request = adapter.doLoginFromHomeResponse(username, password, response);
+            public void onSuccess(Request request) {
                 if (request != null) {
-                    client.newCall(request).enqueue(new Callback() {
-                        @Override
-                        public void onFailure(Call call, IOException e) {
-                            callback.onFailure(e);
-                        }
-
+                    enqueue(request, new ResponseHandler<JSONObject>() {
                         @Override
-                        public void onResponse(Call call, Response response) throws IOException {
+                        public JSONObject handle(Response response) throws IOException {
+                            JSONObject result;
                             try {
-                                callback.onSuccess(adapter.toJSONResponse(response));
+                                result = adapter.toLoginResponse(response);
                             } catch (Exception e) {
-                                callback.onFailure(new AuthenticationException("Unable to authenticate user " + username, e));
+                                throw new AuthenticationException("Unable to authenticate user " + username, e);
                             }
+                            credentials = new Credentials(username, password);
+                            return result;
                         }
-                    });
+                    }, callback, tracker, Lane.DEFAULT);
                 } else {
-                    callback.onSuccess(new JSONObject().put("RESULT", "OK"));
+                    JSONObject result;
+                    try {
+                        result = notLoggedIn(username);
+                    } catch (AuthenticationException e) {
+                        callback.onFailure(e);
+                        return;
+                    }
+                    callback.onSuccess(result);
                 }
             }
-        });
+        }, tracker, Lane.DEFAULT);
+    }
+
+    private ResponseHandler<Request> loginHandler(final String username, final String password) {
+        return new ResponseHandler<Request>() {
+            @Override
+            public Request handle(Response response) throws IOException {
+                return adapter.doLoginFromHomeResponse(username, password, response);
+            }
+        };
     }
 
     /**
-     * Close the session.
+     * Close the session. The writes pending in the {@link WriteQueue} are sent, and done, before the logout request.
      *
      * @throws IOException Whenever something goes wrong communicating with the device.
      */
     @Override
     public void close() throws IOException {
-        client.newCall(adapter.getLogoutRequest()).execute();
-        adapter.close();
+        if (writeQueue != null) {
+            AirStationFuture<Void> drained = new AirStationFuture<>();
+            writeQueue.drain(drained);
+            await(drained);
+        }
+        credentials = null;
+        fingerprints.clear();
+        try {
+            execute(adapter.getLogoutRequest(), new ResponseHandler<Void>() {
+                @Override
+                public Void handle(Response response) throws IOException {
+                    return null;
+                }
+            });
+        } finally {
+            adapter.close();
+        }
     }
 
     /**
      * Close the session.
-     * Asynchronous version of {@link #close()} method.
+     * Asynchronous version of {@link #close()} method: the logout request is sent once the writes pending in the
+     * {@link WriteQueue} are done.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
     public void close(final AsyncCallback<JSONObject> callback) {
-        client.newCall(adapter.getLogoutRequest()).enqueue(new Callback() {
+        if (writeQueue == null) {
+            logout(callback);
+            return;
+        }
+        writeQueue.drain(new AsyncCallback<Void>() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                closeIgnoreException(adapter);
-                callback.onFailure(e);
+            public void onFailure(Throwable t) {
+                logout(callback);
             }
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                adapter.close();
-                callback.onSuccess(adapter.toJSONResponse(response));
+            public void onSuccess(Void data) {
+                logout(callback);
             }
         });
     }
 
+    private void logout(final AsyncCallback<JSONObject> callback) {
+        credentials = null;
+        fingerprints.clear();
+        enqueue(adapter.getLogoutRequest(), new ResponseHandler<JSONObject>() {
+            @Override
+            public JSONObject handle(Response response) throws IOException {
+                adapter.close();
+                return adapter.toJSONResponse(response);
+            }
+        }, new AsyncCallback<JSONObject>() {
+            @Override
+            public void onFailure(Throwable t) {
+                closeIgnoreException(adapter);
+                callback.onFailure(t);
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+                callback.onSuccess(data);
+            }
+        }, trackerOf(callback), Lane.DEFAULT);
+    }
+
     /**
      * Get informations about internet status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the internet status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -265,6 +1237,7 @@ public class AirStation implements Closeable {
     /**
      * Get informations about internet status.
      * Asynchronous version of {@link #getIcon()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -274,6 +1247,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get informations about connected devices.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the connected devices informations.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -285,6 +1259,7 @@ public class AirStation implements Closeable {
     /**
      * Get informations about connected devices.
      * Asynchronous version of {@link #getDevCtrl()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -292,8 +1267,29 @@ public class AirStation implements Closeable {
         getJSONParam(DEVCTRL, callback);
     }
 
+    /**
+     * Get the connected devices, decoded from the DEVCTRL response while it is read.
+     *
+     * @return A list of {@link NetworkDevice}.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public List<NetworkDevice> getDevices() throws IOException {
+        return getTyped(DEVCTRL, JSONParamReader.DEVICES);
+    }
+
+    /**
+     * Get the connected devices, decoded from the DEVCTRL response while it is read.
+     * Asynchronous version of {@link #getDevices()} method.
+     *
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getDevices(AsyncCallback<List<NetworkDevice>> callback) {
+        getTyped(DEVCTRL, JSONParamReader.DEVICES, callback);
+    }
+
     /**
      * Get informations about the AirStation status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the AirStation status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -305,6 +1301,7 @@ public class AirStation implements Closeable {
     /**
      * Get informations about the AirStation status.
      * Asynchronous version of {@link #getDevice()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -314,6 +1311,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get AOSS function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the AOSS status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -325,6 +1323,7 @@ public class AirStation implements Closeable {
     /**
      * Get AOSS function status.
      * Asycnhronous version of {@link #getAoss()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -334,6 +1333,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get the wireless settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the wireless settings.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -345,6 +1345,7 @@ public class AirStation implements Closeable {
     /**
      * Get the wireless settings.
      * Asynchronous version of {@link #getWireless()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -352,8 +1353,29 @@ public class AirStation implements Closeable {
         getJSONParam(WIRELESS, callback);
     }
 
+    /**
+     * Get the settings of the primary network of each radio, decoded from the WIRELESS response while it is read.
+     *
+     * @return A list of {@link WifiSettings}, in the order given by the device.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public List<WifiSettings> getWifiSettings() throws IOException {
+        return getTyped(WIRELESS, JSONParamReader.WIRELESS);
+    }
+
+    /**
+     * Get the settings of the primary network of each radio, decoded from the WIRELESS response while it is read.
+     * Asynchronous version of {@link #getWifiSettings()} method.
+     *
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getWifiSettings(AsyncCallback<List<WifiSettings>> callback) {
+        getTyped(WIRELESS, JSONParamReader.WIRELESS, callback);
+    }
+
     /**
      * Get WPS status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the WPS status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -365,6 +1387,7 @@ public class AirStation implements Closeable {
     /**
      * Get WPS status.
      * Asynchronous version of {@link #getWps()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -374,6 +1397,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get NAS status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the NAS status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -385,6 +1409,7 @@ public class AirStation implements Closeable {
     /**
      * Get NAS status.
      * Asynchronous version of {@link #getNas()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -392,9 +1417,69 @@ public class AirStation implements Closeable {
         getJSONParam(NAS, callback);
     }
 
+    /**
+     * Get which NAS services are enabled, decoded from the SAMBA, TORRENT, DLNA and WEB_AXS responses.
+     *
+     * @return The {@link NasSettings}.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public NasSettings getNasSettings() throws IOException {
+        NasSettings nas = new NasSettings();
+        for (JSONFunction param : NAS_SERVICES)
+            setNasService(nas, param, getTyped(param, JSONParamReader.FUNCTION_ENABLED));
+        return nas;
+    }
+
+    /**
+     * Get which NAS services are enabled, decoded from the SAMBA, TORRENT, DLNA and WEB_AXS responses.
+     * Asynchronous version of {@link #getNasSettings()} method: the services are requested concurrently and the
+     * first failure is notified.
+     *
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getNasSettings(final AsyncCallback<NasSettings> callback) {
+        final NasSettings nas = new NasSettings();
+        final AtomicInteger pending = new AtomicInteger(NAS_SERVICES.length);
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (final JSONFunction param : NAS_SERVICES) {
+            getTyped(param, JSONParamReader.FUNCTION_ENABLED, new AsyncCallback<Boolean>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    if (failed.compareAndSet(false, true))
+                        callback.onFailure(t);
+                }
+
+                @Override
+                public void onSuccess(Boolean enabled) {
+                    setNasService(nas, param, enabled);
+                    if (pending.decrementAndGet() == 0 && !failed.get())
+                        callback.onSuccess(nas);
+                }
+            });
+        }
+    }
+
+    private static void setNasService(NasSettings nas, JSONFunction param, boolean enabled) {
+        switch (param) {
+            case SAMBA:
+                nas.setSambaEnabled(enabled);
+                break;
+            case TORRENT:
+                nas.setTorrentEnabled(enabled);
+                break;
+            case DLNA:
+                nas.setDlnaEnabled(enabled);
+                break;
+            case WEB_AXS:
+                nas.setWebAccessEnabled(enabled);
+                break;
+        }
+    }
+
 
     /**
      * Get guest wireless settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the guest wireless settings
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -406,6 +1491,7 @@ public class AirStation implements Closeable {
     /**
      * Get guest wireless settings.
      * Asynchronous version of {@link #getGuest()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -413,8 +1499,29 @@ public class AirStation implements Closeable {
         getJSONParam(GUEST, callback);
     }
 
+    /**
+     * Get the guest network settings, decoded from the GUEST response while it is read.
+     *
+     * @return The guest {@link WifiSettings}.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public WifiSettings getGuestSettings() throws IOException {
+        return getTyped(GUEST, JSONParamReader.GUEST);
+    }
+
+    /**
+     * Get the guest network settings, decoded from the GUEST response while it is read.
+     * Asynchronous version of {@link #getGuestSettings()} method.
+     *
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getGuestSettings(AsyncCallback<WifiSettings> callback) {
+        getTyped(GUEST, JSONParamReader.GUEST, callback);
+    }
+
     /**
      * Get QOS settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the QOS settings.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -426,6 +1533,7 @@ public class AirStation implements Closeable {
     /**
      * Get QOS settings.
      * Asynchronous version of {@link #getQos()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -435,6 +1543,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get Parental settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the parental settings.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -446,6 +1555,7 @@ public class AirStation implements Closeable {
     /**
      * Get Parental settings.
      * Asynchronous version of {@link #getParental()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -455,6 +1565,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get System Wide settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the system settings.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -466,6 +1577,7 @@ public class AirStation implements Closeable {
     /**
      * Get System Wide settings.
      * Asynchronous version of {@link #getSystem()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -475,6 +1587,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get language settings.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the language settings.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -486,6 +1599,7 @@ public class AirStation implements Closeable {
     /**
      * Get language settings.
      * Asynchronous version of {@link #getLang()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -496,6 +1610,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get device busy status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the device busy status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -507,6 +1622,7 @@ public class AirStation implements Closeable {
     /**
      * Get device busy status.
      * Asynchronous version of {@link #getBusy()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -516,6 +1632,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get Extender monitor function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the extender monitor status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -527,6 +1644,7 @@ public class AirStation implements Closeable {
     /**
      * Get Extender monitor function status.
      * Asynchronous version of {@link #getExtenderMonitor()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -536,6 +1654,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get DLNA function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with DLNA status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -547,6 +1666,7 @@ public class AirStation implements Closeable {
     /**
      * Get DLNA function status.
      * Asynchronous version of {@link #getDlna()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -556,6 +1676,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get Bit Torrent function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with Bit Torrent status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -567,6 +1688,7 @@ public class AirStation implements Closeable {
     /**
      * Get Bit Torrent function status.
      * Asynchronous version of {@link #getTorrent()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -576,6 +1698,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get Web Access function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the Web Access status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -587,6 +1710,7 @@ public class AirStation implements Closeable {
     /**
      * Get Web Access function status.
      * Asynchronous version of {@link #getWebAccess()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -596,6 +1720,7 @@ public class AirStation implements Closeable {
 
     /**
      * Get SAMBA function status.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @return A {@link JSONObject} with the SAMBA status.
      * @throws IOException Whenever something goes wrong communicating with the device.
@@ -607,6 +1732,7 @@ public class AirStation implements Closeable {
     /**
      * Get SAMBA function status.
      * Asynchronous version of {@link #getSamba()} method.
+     * The result is shared by every caller and is read only, see {@link #getJSONParam(JSONFunction)}.
      *
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
@@ -871,7 +1997,7 @@ public class AirStation implements Closeable {
     public JSONArray getDhcpReservation() throws IOException {
         if (!adapter.isLoggedIn())
             throw new IllegalStateException("You must be logged in to perform this request.");
-        return adapter.toDhcpEntries(client.newCall(adapter.getFRMRequest("dhcps_lease.html")).execute());
+        return read(frmRequest("dhcps_lease.html"), dhcpHandler);
     }
 
     /**
@@ -881,19 +2007,125 @@ public class AirStation implements Closeable {
      * @param callback The {@link AsyncCallback} to use either on success or failure events.
      */
     public void getDhcpReservation(final AsyncCallback<JSONArray> callback) {
+        if (!adapter.isLoggedIn()) {
+            callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
+            return;
+        }
+        read(frmRequest("dhcps_lease.html"), dhcpHandler, callback, trackerOf(callback), Lane.of(callback, false));
+    }
+
+    /**
+     * Stream the current DHCP leases to the given listener, one {@link NetworkDevice} at a time, without building the
+     * whole table in memory.
+     *
+     * @param listener The {@link DhcpLeaseListener} notified for each lease.
+     * @return The number of leases read.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public int getDhcpLeases(DhcpLeaseListener listener) throws IOException {
         if (!adapter.isLoggedIn())
+            throw new IllegalStateException("You must be logged in to perform this request.");
+        return executeInSession(frmRequest("dhcps_lease.html"), leaseHandler(listener));
+    }
+
+    /**
+     * Stream the current DHCP leases to the given listener, one {@link NetworkDevice} at a time.
+     * Asynchronous version of {@link #getDhcpLeases(DhcpLeaseListener)} method: the listener is notified on the
+     * thread reading the response.
+     *
+     * @param listener The {@link DhcpLeaseListener} notified for each lease.
+     * @param callback The {@link AsyncCallback} to use either on success or failure events.
+     */
+    public void getDhcpLeases(DhcpLeaseListener listener, AsyncCallback<Integer> callback) {
+        if (!adapter.isLoggedIn()) {
             callback.onFailure(new IllegalStateException("You must be logged in to perform this request."));
-        client.newCall(adapter.getFRMRequest("dhcps_lease.html")).enqueue(new Callback() {
+            return;
+        }
+        enqueueInSession(frmRequest("dhcps_lease.html"), leaseHandler(listener), callback);
+    }
+
+    /**
+     * Open a cursor over the current DHCP leases, reading them from the response body as {@link DhcpLeaseReader#next()}
+     * is called. Login and error pages are reported right away, an expired session being recovered first as usual.
+     * <p>
+     * The response and its bulkhead slot are held until the reader is closed, so it must be closed once done:
+     * <pre>
+     * try (DhcpLeaseReader reader = airStation.openDhcpLeases()) {
+     *     while (reader.next())
+     *         System.out.println(reader.getIpAddress());
+     * }
+     * </pre>
+     * The callTimeout covers the request up to the response headers only, the body being read at the caller's pace.
+     *
+     * @return The {@link DhcpLeaseReader} over the live response.
+     * @throws IOException Whenever something goes wrong communicating with the device.
+     */
+    public DhcpLeaseReader openDhcpLeases() throws IOException {
+        if (!adapter.isLoggedIn())
+            throw new IllegalStateException("You must be logged in to perform this request.");
+        Session session = adapter.getSession();
+        try {
+            return openLeaseReader();
+        } catch (SessionExpiredException e) {
+            if (!canRecover())
+                throw e;
+            AirStationFuture<JSONObject> recovery = new AirStationFuture<>();
+            recover(session, recovery);
+            await(recovery);
+            return openLeaseReader();
+        }
+    }
+
+    private DhcpLeaseReader openLeaseReader() throws IOException {
+        final Lane lane = Lane.DEFAULT;
+        admit(lane);
+        Call call = client.newCall(adapter.getFRMRequest("dhcps_lease.html"));
+        CallTimeout timeout = CallTimeout.start(call, callTimeout);
+        final Response response;
+        try {
+            response = call.execute();
+        } catch (IOException e) {
+            failed(call, timeout);
+            bulkhead.release(lane);
+            throw CallTimeout.translate(timeout, e);
+        } finally {
+            CallTimeout.stop(timeout);
+        }
+        responded(response);
+        DhcpLeaseReader reader = new DhcpLeaseReader(response.body().source(), new Closeable() {
+            private final AtomicBoolean closed = new AtomicBoolean();
+
             @Override
-            public void onFailure(Call call, IOException e) {
-                callback.onFailure(e);
+            public void close() {
+                if (closed.compareAndSet(false, true)) {
+                    response.close();
+                    bulkhead.release(lane);
+                }
             }
+        });
+        try {
+            reader.open();
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
 
+    private ResponseHandler<Integer> leaseHandler(final DhcpLeaseListener listener) {
+        return new ResponseHandler<Integer>() {
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                callback.onSuccess(adapter.toDhcpEntries(response));
+            public Integer handle(Response response) throws IOException {
+                int count = 0;
+                try (DhcpLeaseReader reader = adapter.toDhcpLeaseReader(response)) {
+                    while (reader.next()) {
+                        listener.onLease(reader.toNetworkDevice());
+                        count++;
+                    }
+                }
+                return count;
             }
-        });
+        };
     }
 
     /**
@@ -917,4 +2149,120 @@ public class AirStation implements Closeable {
     public void updateDhcpReservation(NetworkDevice dev, AsyncCallback<JSONObject> callback) {
         set(adapter.getDhcpEntryParams(dev), callback);
     }
+
+    /**
+     * Collect the results of several `get_json_param` requests into a {@link JSONParamSnapshot}.
+     */
+    private static class SnapshotCollector {
+        private final EnumMap<JSONFunction, JSONObject> values = new EnumMap<>(JSONFunction.class);
+        private final EnumMap<JSONFunction, Throwable> failures = new EnumMap<>(JSONFunction.class);
+        private final AsyncCallback<JSONParamSnapshot> callback;
+        private final CallTracker tracker;
+        private int pending;
+
+        SnapshotCollector(EnumSet<JSONFunction> params, AsyncCallback<JSONParamSnapshot> callback) {
+            this.callback = callback;
+            this.tracker = trackerOf(callback);
+            this.pending = params.size();
+            if (pending == 0)
+                callback.onSuccess(new JSONParamSnapshot(System.currentTimeMillis(), values, failures));
+        }
+
+        AsyncCallback<JSONObject> newCallback(JSONFunction param) {
+            return new ParamCallback(param);
+        }
+
+        private void done(JSONFunction param, JSONObject value, Throwable failure) {
+            synchronized (this) {
+                if (failure != null)
+                    failures.put(param, failure);
+                else
+                    values.put(param, value);
+                if (--pending > 0)
+                    return;
+            }
+            callback.onSuccess(new JSONParamSnapshot(System.currentTimeMillis(), values, failures));
+        }
+
+        private class ParamCallback implements AsyncCallback<JSONObject>, CallTracker {
+            private final JSONFunction param;
+
+            ParamCallback(JSONFunction param) {
+                this.param = param;
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                done(param, null, t);
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+                done(param, data, null);
+            }
+
+            @Override
+            public void track(Cancellable call) {
+                if (tracker != null)
+                    tracker.track(call);
+            }
+        }
+    }
+
+    /**
+     * The callback of a stale-while-revalidate refresh, sent in the background lane since the stale value was already
+     * served. The refreshed value is stored by the caching callback of the flight.
+     */
+    private final class Refresh implements AsyncCallback<JSONObject>, Prioritized {
+        private final JSONFunction param;
+
+        private Refresh(JSONFunction param) {
+            this.param = param;
+        }
+
+        @Override
+        public Bulkhead.Priority getPriority() {
+            return Bulkhead.Priority.BACKGROUND;
+        }
+
+        @Override
+        public long getDeadline() {
+            return 0;
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            cache.refreshFailed(param);
+        }
+
+        @Override
+        public void onSuccess(JSONObject data) {
+        }
+    }
+
+    /**
+     * The credentials of the last successful login.
+     */
+    private static final class Credentials {
+        private final String username;
+        private final String password;
+
+        private Credentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+
+    /**
+     * The last parsed response of a param, with the {@link Fingerprint} of its body.
+     */
+    private static final class Fingerprinted {
+        private final Fingerprint fingerprint;
+        private final JSONObject value;
+
+        private Fingerprinted(Fingerprint fingerprint, JSONObject value) {
+            this.fingerprint = fingerprint;
+            this.value = value;
+        }
+    }
 }
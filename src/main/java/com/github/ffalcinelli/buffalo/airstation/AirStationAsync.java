@@ -0,0 +1,574 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.models.NasSettings;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import com.github.ffalcinelli.buffalo.models.WifiSettings;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+
+/**
+ * A {@link java.util.concurrent.Future} based view of an {@link AirStation}.
+ * <p>
+ * Each operation returns an {@link AirStationFuture} whose callbacks run on the {@link Executor} given at construction
+ * time, so that operations can be chained with {@link AirStationFuture#then(AirStationFuture.Continuation)} without
+ * blocking threads. Cancelling a future cancels the underlying HTTP call.
+ * <p>
+ * As for {@link AirStation#getJSONParam(JSONFunction)}, the {@link org.json.JSONObject} results are shared by every
+ * caller and are read only.
+ */
+public class AirStationAsync {
+
+    private final AirStation airStation;
+    private final Executor executor;
+
+    /**
+     * Build an {@link AirStationAsync} running callbacks on the HTTP client threads.
+     *
+     * @param airStation The {@link AirStation} to wrap.
+     */
+    public AirStationAsync(AirStation airStation) {
+        this(airStation, AirStationFuture.DIRECT_EXECUTOR);
+    }
+
+    /**
+     * Build an {@link AirStationAsync}.
+     *
+     * @param airStation The {@link AirStation} to wrap.
+     * @param executor   The {@link Executor} to complete futures with.
+     */
+    public AirStationAsync(AirStation airStation, Executor executor) {
+        this.airStation = airStation;
+        this.executor = executor;
+    }
+
+    /**
+     * Get the wrapped {@link AirStation}.
+     *
+     * @return The {@link AirStation} in use.
+     */
+    public AirStation getAirStation() {
+        return airStation;
+    }
+
+    private <T> AirStationFuture<T> newFuture() {
+        return new AirStationFuture<>(executor);
+    }
+
+    /**
+     * Call the `get_json_param` device function.
+     * Future based version of {@link AirStation#getJSONParam(RequestAdapter.JSONFunction)} method.
+     *
+     * @param param The JSON param to retrieve.
+     * @return An {@link AirStationFuture} completed with the data.
+     */
+    public AirStationFuture<JSONObject> getJSONParam(JSONFunction param) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getJSONParam(param, future);
+        return future;
+    }
+
+    /**
+     * Call the `get_json_param` device function for each of the given datasets at the same time.
+     * Future based version of {@link AirStation#getJSONParams(EnumSet)} method. Cancelling the future cancels every
+     * pending request.
+     *
+     * @param params The JSON params to retrieve.
+     * @return An {@link AirStationFuture} completed with the merged {@link JSONParamSnapshot}.
+     */
+    public AirStationFuture<JSONParamSnapshot> getJSONParams(EnumSet<JSONFunction> params) {
+        AirStationFuture<JSONParamSnapshot> future = newFuture();
+        airStation.getJSONParams(params, future);
+        return future;
+    }
+
+    /**
+     * Tell the device to perform an action upon the given parameters.
+     * Future based version of {@link AirStation#set(Map)} method.
+     *
+     * @param params The parameters map.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> set(Map<String, String> params) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.set(params, future);
+        return future;
+    }
+
+    /**
+     * Open a session to the device by logging in.
+     * Future based version of {@link AirStation#login(String, String)} method.
+     *
+     * @param username The username (usually "admin").
+     * @param password The password (if it's not been changed set it to "password").
+     * @return An {@link AirStationFuture} completed with {"RESULT": "OK"} if all went fine.
+     */
+    public AirStationFuture<JSONObject> login(String username, String password) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.login(username, password, future);
+        return future;
+    }
+
+    /**
+     * Close the session.
+     * Future based version of {@link AirStation#close()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> close() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.close(future);
+        return future;
+    }
+
+    /**
+     * Get a {@link JSONArray} of current DHCP reserved address entries.
+     * Future based version of {@link AirStation#getDhcpReservation()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the DHCP address entries.
+     */
+    public AirStationFuture<JSONArray> getDhcpReservation() {
+        AirStationFuture<JSONArray> future = newFuture();
+        airStation.getDhcpReservation(future);
+        return future;
+    }
+
+    /**
+     * Stream the current DHCP leases to the given listener.
+     * Future based version of {@link AirStation#getDhcpLeases(DhcpLeaseListener)} method.
+     *
+     * @param listener The {@link DhcpLeaseListener} notified for each lease.
+     * @return An {@link AirStationFuture} completed with the number of leases read.
+     */
+    public AirStationFuture<Integer> getDhcpLeases(DhcpLeaseListener listener) {
+        AirStationFuture<Integer> future = newFuture();
+        airStation.getDhcpLeases(listener, future);
+        return future;
+    }
+
+    /**
+     * Get the connected devices.
+     * Future based version of {@link AirStation#getDevices()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the list of {@link NetworkDevice}.
+     */
+    public AirStationFuture<List<NetworkDevice>> getDevices() {
+        AirStationFuture<List<NetworkDevice>> future = newFuture();
+        airStation.getDevices(future);
+        return future;
+    }
+
+    /**
+     * Get the settings of the primary network of each radio.
+     * Future based version of {@link AirStation#getWifiSettings()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the list of {@link WifiSettings}.
+     */
+    public AirStationFuture<List<WifiSettings>> getWifiSettings() {
+        AirStationFuture<List<WifiSettings>> future = newFuture();
+        airStation.getWifiSettings(future);
+        return future;
+    }
+
+    /**
+     * Get the guest network settings.
+     * Future based version of {@link AirStation#getGuestSettings()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the guest {@link WifiSettings}.
+     */
+    public AirStationFuture<WifiSettings> getGuestSettings() {
+        AirStationFuture<WifiSettings> future = newFuture();
+        airStation.getGuestSettings(future);
+        return future;
+    }
+
+    /**
+     * Get which NAS services are enabled.
+     * Future based version of {@link AirStation#getNasSettings()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the {@link NasSettings}.
+     */
+    public AirStationFuture<NasSettings> getNasSettings() {
+        AirStationFuture<NasSettings> future = newFuture();
+        airStation.getNasSettings(future);
+        return future;
+    }
+
+    /**
+     * Get informations about internet status.
+     * Future based version of {@link AirStation#getIcon()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getIcon() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getIcon(future);
+        return future;
+    }
+
+    /**
+     * Get informations about connected devices.
+     * Future based version of {@link AirStation#getDevCtrl()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getDevCtrl() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getDevCtrl(future);
+        return future;
+    }
+
+    /**
+     * Get informations about the AirStation status.
+     * Future based version of {@link AirStation#getDevice()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getDevice() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getDevice(future);
+        return future;
+    }
+
+    /**
+     * Get AOSS function status.
+     * Future based version of {@link AirStation#getAoss()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getAoss() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getAoss(future);
+        return future;
+    }
+
+    /**
+     * Get the wireless settings.
+     * Future based version of {@link AirStation#getWireless()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getWireless() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getWireless(future);
+        return future;
+    }
+
+    /**
+     * Get WPS status.
+     * Future based version of {@link AirStation#getWps()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getWps() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getWps(future);
+        return future;
+    }
+
+    /**
+     * Get NAS status.
+     * Future based version of {@link AirStation#getNas()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getNas() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getNas(future);
+        return future;
+    }
+
+    /**
+     * Get guest wireless settings.
+     * Future based version of {@link AirStation#getGuest()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getGuest() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getGuest(future);
+        return future;
+    }
+
+    /**
+     * Get QOS settings.
+     * Future based version of {@link AirStation#getQos()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getQos() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getQos(future);
+        return future;
+    }
+
+    /**
+     * Get Parental settings.
+     * Future based version of {@link AirStation#getParental()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getParental() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getParental(future);
+        return future;
+    }
+
+    /**
+     * Get System Wide settings.
+     * Future based version of {@link AirStation#getSystem()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getSystem() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getSystem(future);
+        return future;
+    }
+
+    /**
+     * Get language settings.
+     * Future based version of {@link AirStation#getLang()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getLang() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getLang(future);
+        return future;
+    }
+
+    /**
+     * Get device busy status.
+     * Future based version of {@link AirStation#getBusy()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getBusy() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getBusy(future);
+        return future;
+    }
+
+    /**
+     * Get Extender monitor function status.
+     * Future based version of {@link AirStation#getExtenderMonitor()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getExtenderMonitor() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getExtenderMonitor(future);
+        return future;
+    }
+
+    /**
+     * Get DLNA function status.
+     * Future based version of {@link AirStation#getDlna()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getDlna() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getDlna(future);
+        return future;
+    }
+
+    /**
+     * Get Bit Torrent function status.
+     * Future based version of {@link AirStation#getTorrent()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getTorrent() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getTorrent(future);
+        return future;
+    }
+
+    /**
+     * Get Web Access function status.
+     * Future based version of {@link AirStation#getWebAccess()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getWebAccess() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getWebAccess(future);
+        return future;
+    }
+
+    /**
+     * Get SAMBA function status.
+     * Future based version of {@link AirStation#getSamba()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> getSamba() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.getSamba(future);
+        return future;
+    }
+
+    /**
+     * Wake on Lan the given MAC address sending magic packets from the AirStation device.
+     * Future based version of {@link AirStation#wol(String)} method.
+     *
+     * @param macAddress The device MAC address to send magic packet to.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> wol(String macAddress) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.wol(macAddress, future);
+        return future;
+    }
+
+    /**
+     * Put AirStation in AOSS mode.
+     * Future based version of {@link AirStation#aoss()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> aoss() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.aoss(future);
+        return future;
+    }
+
+    /**
+     * Update informations about a connected device.
+     * Future based version of {@link AirStation#updateDevCtrl(NetworkDevice)} method.
+     *
+     * @param dev The device info to update.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> updateDevCtrl(NetworkDevice dev) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.updateDevCtrl(dev, future);
+        return future;
+    }
+
+    /**
+     * Update the basic wifi basic settings.
+     * Future based version of {@link AirStation#wirelessBasicSetup(WifiSettings, WifiSettings)} method.
+     *
+     * @param a Settings for wifi A
+     * @param g Settings for wifi G
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> wirelessBasicSetup(WifiSettings a, WifiSettings g) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.wirelessBasicSetup(a, g, future);
+        return future;
+    }
+
+    /**
+     * Update guest wifi basic settings.
+     * Future based version of {@link AirStation#guestBasicSetup(WifiSettings)} method.
+     *
+     * @param guest Guest wifi settings.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> guestBasicSetup(WifiSettings guest) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.guestBasicSetup(guest, future);
+        return future;
+    }
+
+    /**
+     * Update NAS basic settings.
+     * Future based version of {@link AirStation#nasBasicSetup(NasSettings)} method.
+     *
+     * @param nas NAS function settings.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> nasBasicSetup(NasSettings nas) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.nasBasicSetup(nas, future);
+        return future;
+    }
+
+    /**
+     * Enable/Disable QOS function mode.
+     * Future based version of {@link AirStation#qos(boolean)} method.
+     *
+     * @param on If must be enabled or disabled.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> qos(boolean on) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.qos(on, future);
+        return future;
+    }
+
+    /**
+     * Put device in given QOS policy mode if flag enabled is true.
+     * Future based version of {@link AirStation#setQosPolicy(String, boolean)} method.
+     *
+     * @param policy The policy to use.
+     * @param enabled Whether to enable or disable the mode.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> setQosPolicy(String policy, boolean enabled) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.setQosPolicy(policy, enabled, future);
+        return future;
+    }
+
+    /**
+     * Setup the parental policy.
+     * Future based version of {@link AirStation#setParentalPolicy(int)} method.
+     *
+     * @param policy The parental policy.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> setParentalPolicy(int policy) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.setParentalPolicy(policy, future);
+        return future;
+    }
+
+    /**
+     * Enable/Disable guest wifi access mode.
+     * Future based version of {@link AirStation#guest(boolean)} method.
+     *
+     * @param on Whether to enable or disable the guest wifi.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> guest(boolean on) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.guest(on, future);
+        return future;
+    }
+
+    /**
+     * Detect attached storage devices.
+     * Future based version of {@link AirStation#detectNas()} method.
+     *
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> detectNas() {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.detectNas(future);
+        return future;
+    }
+
+    /**
+     * Edit the DHCP entry.
+     * Future based version of {@link AirStation#updateDhcpReservation(NetworkDevice)} method.
+     *
+     * @param dev The entry to edit.
+     * @return An {@link AirStationFuture} completed with the device response.
+     */
+    public AirStationFuture<JSONObject> updateDhcpReservation(NetworkDevice dev) {
+        AirStationFuture<JSONObject> future = newFuture();
+        airStation.updateDhcpReservation(dev, future);
+        return future;
+    }
+}
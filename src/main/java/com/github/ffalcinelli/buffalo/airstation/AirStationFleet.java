@@ -0,0 +1,201 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.CookieJar;
+import okhttp3.OkHttpClient;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+
+/**
+ * A fleet of {@link AirStation} devices sharing the same {@link OkHttpClient} resources.
+ * <p>
+ * Every {@link AirStation} created by the fleet gets its own {@link CookieJar} and {@link RequestAdapter}, while the
+ * dispatcher thread pool and the connection pool are shared among all of them. Devices with a {@link RetryPolicy} also
+ * share a single {@link RetryBudget}, configured by the "retryBudget" fleet settings object, so that the retries of a
+ * failing subnet can not add up to more than the budget of the whole fleet.
+ */
+public class AirStationFleet implements Closeable {
+
+    private final OkHttpClient client;
+    private final RetryBudget retryBudget;
+    private final List<AirStation> airStations = new CopyOnWriteArrayList<>();
+
+    public AirStationFleet() {
+        this(new OkHttpClient());
+    }
+
+    /**
+     * Build a fleet whose shared dispatcher is configured by the maxRequests and maxRequestsPerHost settings, and
+     * whose shared {@link RetryBudget} by the "retryBudget" settings object.
+     *
+     * @param settings The fleet wide configuration settings.
+     */
+    public AirStationFleet(JSONObject settings) {
+        this(AirStation.newClient(settings), new RetryBudget(
+                settings.has("retryBudget") ? settings.getJSONObject("retryBudget") : new JSONObject()));
+    }
+
+    /**
+     * Build a fleet upon the given {@link OkHttpClient}. The fleet takes the ownership of the client resources and
+     * releases them on {@link #close()}.
+     *
+     * @param client The {@link OkHttpClient} to share among devices.
+     */
+    public AirStationFleet(OkHttpClient client) {
+        this(client, new RetryBudget(new JSONObject()));
+    }
+
+    private AirStationFleet(OkHttpClient client, RetryBudget retryBudget) {
+        this.client = client;
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Get the shared {@link OkHttpClient}.
+     *
+     * @return The {@link OkHttpClient} shared among the fleet devices.
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Get the {@link RetryBudget} shared by the {@link RetryPolicy} of the fleet devices.
+     *
+     * @return The fleet wide {@link RetryBudget}.
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Create a new {@link AirStation} handle for the given url and add it to the fleet.
+     *
+     * @param url The AirStation url.
+     * @return The {@link AirStation} handle.
+     */
+    public AirStation newAirStation(String url) {
+        return newAirStation(new JSONObject().put("url", url));
+    }
+
+    /**
+     * Create a new {@link AirStation} handle for the given settings and add it to the fleet.
+     *
+     * @param settings The configuration settings.
+     * @return The {@link AirStation} handle.
+     */
+    public AirStation newAirStation(JSONObject settings) {
+        return newAirStation(settings, null);
+    }
+
+    /**
+     * Create a new {@link AirStation} handle for the given settings and add it to the fleet.
+     *
+     * @param settings  The configuration settings.
+     * @param cookieJar The {@link CookieJar} to use for this device (if null a default one is used).
+     * @return The {@link AirStation} handle.
+     */
+    public AirStation newAirStation(JSONObject settings, CookieJar cookieJar) {
+        AirStation airStation = new AirStation(settings, cookieJar, client);
+        if (airStation.getRetryPolicy() != null)
+            airStation.getRetryPolicy().setBudget(retryBudget);
+        airStations.add(airStation);
+        return airStation;
+    }
+
+    /**
+     * Get the devices handled by this fleet.
+     *
+     * @return An unmodifiable view of the {@link AirStation} handles.
+     */
+    public List<AirStation> getAirStations() {
+        return Collections.unmodifiableList(airStations);
+    }
+
+    /**
+     * Remove a device from the fleet. The device session is not closed.
+     *
+     * @param airStation The {@link AirStation} to remove.
+     * @return True if the device was part of the fleet, false otherwise.
+     */
+    public boolean remove(AirStation airStation) {
+        return airStations.remove(airStation);
+    }
+
+    /**
+     * Run the given operation against every device of the fleet, with at most parallelism operations running at
+     * the same time. The call returns when every operation is done.
+     *
+     * @param operation   The {@link Operation} to run.
+     * @param parallelism The maximum number of operations running at the same time.
+     * @param <T>         The operation result type.
+     * @return A list of completed {@link Future}, in the same order of {@link #getAirStations()}.
+     * @throws InterruptedException If interrupted while waiting for the operations to complete.
+     */
+    public <T> List<Future<T>> forEach(final Operation<T> operation, int parallelism) throws InterruptedException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        List<Callable<T>> tasks = new ArrayList<>();
+        for (final AirStation airStation : airStations) {
+            tasks.add(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return operation.apply(airStation);
+                }
+            });
+        }
+        if (tasks.isEmpty())
+            return new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            return executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Close every device session, then shut down the shared dispatcher and evict the pooled connections.
+     *
+     * @throws IOException Never thrown, device close failures are ignored.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            forEach(new Operation<Void>() {
+                @Override
+                public Void apply(AirStation airStation) throws IOException {
+                    closeIgnoreException(airStation);
+                    return null;
+                }
+            }, client.dispatcher().getMaxRequests());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            airStations.clear();
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * An operation to run against a single device of the fleet.
+     *
+     * @param <T> The operation result type.
+     */
+    public interface Operation<T> {
+
+        T apply(AirStation airStation) throws IOException;
+    }
+}
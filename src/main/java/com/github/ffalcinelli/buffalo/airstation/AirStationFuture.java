@@ -0,0 +1,273 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pending result of an asynchronous AirStation operation.
+ * <p>
+ * Callbacks registered through {@link #addCallback(AsyncCallback)} are run on the {@link Executor} given at
+ * construction time. Operations can be chained with {@link #then(Continuation)} and cancelling a future cancels the
+ * underlying requests of the step currently running.
+ */
+public class AirStationFuture<T> implements Future<T>, AsyncCallback<T>, CallTracker {
+
+    /**
+     * An {@link Executor} running tasks on the thread completing the future.
+     */
+    public static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private enum State {PENDING, SUCCEEDED, FAILED, CANCELLED}
+
+    private final Executor executor;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<AsyncCallback<? super T>> callbacks = new ArrayList<>();
+    private final List<Cancellable> calls = new ArrayList<>();
+    private State state = State.PENDING;
+    private T value;
+    private Throwable failure;
+    private Future<?> upstream;
+
+    /**
+     * Build a pending {@link AirStationFuture} running its callbacks on the thread completing it.
+     */
+    public AirStationFuture() {
+        this(DIRECT_EXECUTOR);
+    }
+
+    /**
+     * Build a pending {@link AirStationFuture}.
+     *
+     * @param executor The {@link Executor} to run callbacks with.
+     */
+    public AirStationFuture(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Build an already succeeded {@link AirStationFuture}.
+     *
+     * @param value    The result.
+     * @param executor The {@link Executor} to run callbacks with.
+     * @param <T>      The result type.
+     * @return The succeeded future.
+     */
+    public static <T> AirStationFuture<T> succeeded(T value, Executor executor) {
+        AirStationFuture<T> future = new AirStationFuture<>(executor);
+        future.onSuccess(value);
+        return future;
+    }
+
+    /**
+     * Build an already failed {@link AirStationFuture}.
+     *
+     * @param t        The failure cause.
+     * @param executor The {@link Executor} to run callbacks with.
+     * @param <T>      The result type.
+     * @return The failed future.
+     */
+    public static <T> AirStationFuture<T> failed(Throwable t, Executor executor) {
+        AirStationFuture<T> future = new AirStationFuture<>(executor);
+        future.onFailure(t);
+        return future;
+    }
+
+    /**
+     * Get the {@link Executor} running the callbacks.
+     *
+     * @return The {@link Executor} in use.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Register a callback to run once the future completes. If already completed, the callback is scheduled at once.
+     * Cancellation is notified to {@link AsyncCallback#onFailure(Throwable)} with a {@link CancellationException}.
+     *
+     * @param callback The {@link AsyncCallback} to notify.
+     * @return This future.
+     */
+    public AirStationFuture<T> addCallback(AsyncCallback<? super T> callback) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        dispatch(callback);
+        return this;
+    }
+
+    /**
+     * Chain an operation to run on success. The returned future completes with the result of the future produced by
+     * the continuation; failures and cancellation of this future are propagated to it. Cancelling the returned
+     * future cancels the step currently running.
+     *
+     * @param continuation The {@link Continuation} to run with the result of this future.
+     * @param <U>          The result type of the continuation.
+     * @return A future completed when the continuation completes.
+     */
+    public <U> AirStationFuture<U> then(final Continuation<? super T, U> continuation) {
+        final AirStationFuture<U> next = new AirStationFuture<>(executor);
+        next.setUpstream(this);
+        addCallback(new AsyncCallback<T>() {
+            @Override
+            public void onFailure(Throwable t) {
+                next.onFailure(t);
+            }
+
+            @Override
+            public void onSuccess(T data) {
+                AirStationFuture<U> step;
+                try {
+                    step = continuation.apply(data);
+                } catch (Exception e) {
+                    next.onFailure(e);
+                    return;
+                }
+                next.setUpstream(step);
+                step.addCallback(next);
+            }
+        });
+        return next;
+    }
+
+    @Override
+    public void track(Cancellable call) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = state == State.CANCELLED;
+            if (state == State.PENDING)
+                calls.add(call);
+        }
+        if (cancelled)
+            call.cancel();
+    }
+
+    private void setUpstream(Future<?> upstream) {
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = state == State.CANCELLED;
+            this.upstream = upstream;
+        }
+        if (cancelled)
+            upstream.cancel(true);
+    }
+
+    @Override
+    public void onSuccess(T data) {
+        complete(State.SUCCEEDED, data, null);
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+        complete(t instanceof CancellationException ? State.CANCELLED : State.FAILED, null, t);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(State.CANCELLED, null, new CancellationException("Operation cancelled")))
+            return false;
+        List<Cancellable> calls;
+        Future<?> upstream;
+        synchronized (this) {
+            calls = new ArrayList<>(this.calls);
+            this.calls.clear();
+            upstream = this.upstream;
+        }
+        for (Cancellable call : calls)
+            call.cancel();
+        if (upstream != null)
+            upstream.cancel(mayInterruptIfRunning);
+        return true;
+    }
+
+    private boolean complete(State state, T value, Throwable failure) {
+        List<AsyncCallback<? super T>> toNotify;
+        synchronized (this) {
+            if (this.state != State.PENDING)
+                return false;
+            this.state = state;
+            this.value = value;
+            this.failure = failure;
+            toNotify = new ArrayList<>(callbacks);
+            callbacks.clear();
+            if (state != State.CANCELLED)
+                calls.clear();
+        }
+        done.countDown();
+        for (AsyncCallback<? super T> callback : toNotify)
+            dispatch(callback);
+        return true;
+    }
+
+    private void dispatch(final AsyncCallback<? super T> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (state == State.SUCCEEDED)
+                    callback.onSuccess(value);
+                else
+                    callback.onFailure(failure);
+            }
+        });
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit))
+            throw new TimeoutException();
+        return result();
+    }
+
+    private synchronized T result() throws ExecutionException {
+        switch (state) {
+            case SUCCEEDED:
+                return value;
+            case CANCELLED:
+                throw (CancellationException) failure;
+            default:
+                throw new ExecutionException(failure);
+        }
+    }
+
+    /**
+     * An operation producing a new {@link AirStationFuture} from the result of a previous one.
+     *
+     * @param <T> The input type.
+     * @param <U> The result type.
+     */
+    public interface Continuation<T, U> {
+
+        AirStationFuture<U> apply(T value) throws Exception;
+    }
+}
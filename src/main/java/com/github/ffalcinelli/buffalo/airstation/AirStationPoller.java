@@ -0,0 +1,312 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * Polls chosen {@link JSONFunction}s of many devices from a single scheduler, publishing the results to
+ * {@link PollListener}s.
+ * <p>
+ * The first poll of each function is delayed by a random amount within its minimum interval, and every following
+ * delay is jittered, so that polls of many devices do not line up. The interval of each function adapts to its data:
+ * it is halved when the data changes and doubled while it stays the same, within the bounds given for the function.
+ * Failures back off to the maximum interval.
+ * <p>
+ * Polls are issued through the asynchronous API, so they never block the scheduler, and at most maxPollsPerDevice
+ * polls of the same device are in flight at once (never more than its bulkhead allows). Polls wait in the
+ * {@link Bulkhead.Priority#BACKGROUND} lane of the device bulkhead, behind interactive requests, and a poll still
+ * waiting when the next one would be due is dropped. The poller is configured by the settings:
+ * <ul>
+ * <li>minInterval, maxInterval: the default interval bounds in milliseconds.</li>
+ * <li>jitter: the random variation of each delay, in percent of the delay.</li>
+ * <li>maxPollsPerDevice: the maximum number of polls in flight for each device.</li>
+ * <li>threads: the number of scheduler threads.</li>
+ * </ul>
+ */
+public class AirStationPoller implements Closeable {
+
+    public static final int DEFAULT_MIN_INTERVAL = 5000;
+    public static final int DEFAULT_MAX_INTERVAL = 60000;
+    public static final int DEFAULT_JITTER = 20;
+    public static final int DEFAULT_MAX_POLLS_PER_DEVICE = 1;
+    public static final int DEFAULT_THREADS = 1;
+
+    private final ScheduledExecutorService scheduler;
+    private final long minInterval;
+    private final long maxInterval;
+    private final int jitter;
+    private final int maxPollsPerDevice;
+    private final List<PollListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Poll> polls = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<AirStation, Semaphore> slots = new ConcurrentHashMap<>();
+
+    public AirStationPoller() {
+        this(new JSONObject());
+    }
+
+    /**
+     * Build a poller from the given settings.
+     *
+     * @param settings The poller settings.
+     */
+    public AirStationPoller(JSONObject settings) {
+        this.minInterval = getIntOrDefault(settings, "minInterval", DEFAULT_MIN_INTERVAL);
+        this.maxInterval = getIntOrDefault(settings, "maxInterval", DEFAULT_MAX_INTERVAL);
+        this.jitter = getIntOrDefault(settings, "jitter", DEFAULT_JITTER);
+        this.maxPollsPerDevice = getIntOrDefault(settings, "maxPollsPerDevice", DEFAULT_MAX_POLLS_PER_DEVICE);
+        if (minInterval < 1 || maxInterval < minInterval)
+            throw new IllegalArgumentException("Invalid interval bounds " + minInterval + "-" + maxInterval);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                getIntOrDefault(settings, "threads", DEFAULT_THREADS), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AirStationPoller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    public void addListener(PollListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PollListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start polling the given param within the default interval bounds.
+     *
+     * @param airStation The device to poll, which must be logged in.
+     * @param param      The JSON param to poll.
+     * @return The {@link Poll} handle.
+     */
+    public Poll poll(AirStation airStation, JSONFunction param) {
+        return poll(airStation, param, minInterval, maxInterval);
+    }
+
+    /**
+     * Start polling the given param within the given interval bounds.
+     *
+     * @param airStation  The device to poll, which must be logged in.
+     * @param param       The JSON param to poll.
+     * @param minInterval The shortest interval between polls, in milliseconds.
+     * @param maxInterval The longest interval between polls, in milliseconds.
+     * @return The {@link Poll} handle.
+     */
+    public Poll poll(AirStation airStation, JSONFunction param, long minInterval, long maxInterval) {
+        if (minInterval < 1 || maxInterval < minInterval)
+            throw new IllegalArgumentException("Invalid interval bounds " + minInterval + "-" + maxInterval);
+        Semaphore slot = slots.get(airStation);
+        if (slot == null) {
+            int permits = Math.min(maxPollsPerDevice, airStation.getBulkhead().getMaxConcurrent());
+            slots.putIfAbsent(airStation, new Semaphore(Math.max(1, permits)));
+            slot = slots.get(airStation);
+        }
+        Poll poll = new Poll(airStation, param, slot, minInterval, maxInterval);
+        polls.add(poll);
+        poll.schedule(ThreadLocalRandom.current().nextLong(minInterval));
+        return poll;
+    }
+
+    /**
+     * Stop polling the given device.
+     *
+     * @param airStation The device to stop polling.
+     */
+    public void remove(AirStation airStation) {
+        for (Poll poll : polls) {
+            if (poll.airStation == airStation)
+                poll.cancel();
+        }
+        slots.remove(airStation);
+    }
+
+    /**
+     * Get the active polls.
+     *
+     * @return The {@link Poll} handles not cancelled yet.
+     */
+    public List<Poll> getPolls() {
+        return new CopyOnWriteArrayList<>(polls);
+    }
+
+    /**
+     * Stop every poll and the scheduler. Polls already in flight complete, but are not published.
+     */
+    @Override
+    public void close() {
+        for (Poll poll : polls)
+            poll.cancel();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Apply the jitter to the given delay.
+     *
+     * @param delay The delay in milliseconds.
+     * @return The jittered delay.
+     */
+    long jittered(long delay) {
+        long spread = delay * jitter / 100;
+        if (spread <= 0)
+            return delay;
+        return Math.max(0, delay - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1));
+    }
+
+    private void publish(Poll poll, JSONObject data, boolean changed) {
+        for (PollListener listener : listeners) {
+            try {
+                listener.onResult(poll.airStation, poll.param, data, changed);
+            } catch (RuntimeException ignore) {
+                // A failing listener must not stop the poll.
+            }
+        }
+    }
+
+    private void publishFailure(Poll poll, Throwable t) {
+        for (PollListener listener : listeners) {
+            try {
+                listener.onFailure(poll.airStation, poll.param, t);
+            } catch (RuntimeException ignore) {
+                // A failing listener must not stop the poll.
+            }
+        }
+    }
+
+    /**
+     * The periodic poll of a JSON param of a device.
+     */
+    public class Poll implements Runnable, AsyncCallback<JSONObject>, Prioritized {
+        private final AirStation airStation;
+        private final JSONFunction param;
+        private final Semaphore slot;
+        private final long minInterval;
+        private final long maxInterval;
+        private volatile long interval;
+        private volatile boolean cancelled;
+        private volatile long deadline;
+        private JSONObject last;
+        private ScheduledFuture<?> next;
+
+        private Poll(AirStation airStation, JSONFunction param, Semaphore slot, long minInterval, long maxInterval) {
+            this.airStation = airStation;
+            this.param = param;
+            this.slot = slot;
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            this.interval = minInterval;
+        }
+
+        public AirStation getAirStation() {
+            return airStation;
+        }
+
+        public JSONFunction getParam() {
+            return param;
+        }
+
+        /**
+         * Get the current interval, before jitter.
+         *
+         * @return The interval in milliseconds.
+         */
+        public long getInterval() {
+            return interval;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public Bulkhead.Priority getPriority() {
+            return Bulkhead.Priority.BACKGROUND;
+        }
+
+        @Override
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Stop this poll.
+         */
+        public void cancel() {
+            cancelled = true;
+            polls.remove(this);
+            synchronized (this) {
+                if (next != null)
+                    next.cancel(false);
+            }
+        }
+
+        private synchronized void schedule(long delay) {
+            if (cancelled)
+                return;
+            try {
+                next = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                cancelled = true;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+            if (!slot.tryAcquire()) {
+                // The device is busy with other polls, try again later.
+                schedule(jittered(minInterval));
+                return;
+            }
+            deadline = System.currentTimeMillis() + interval;
+            airStation.getJSONParam(param, this);
+        }
+
+        @Override
+        public void onSuccess(JSONObject data) {
+            slot.release();
+            boolean changed;
+            synchronized (this) {
+                changed = last != null && last != data && !last.similar(data);
+                if (changed)
+                    interval = Math.max(minInterval, interval / 2);
+                else if (last != null)
+                    interval = Math.min(maxInterval, interval * 2);
+                last = data;
+            }
+            if (!cancelled)
+                publish(this, data, changed);
+            schedule(jittered(interval));
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            slot.release();
+            interval = maxInterval;
+            if (!cancelled)
+                publishFailure(this, t);
+            schedule(jittered(interval));
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.BulkheadFullException;
+import com.github.ffalcinelli.buffalo.exception.DeadlineExceededException;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-device bulkhead: at most a given number of requests run at the same time, the others wait in a bounded queue
+ * and are rejected when the queue is full. This way a slow device can only use its own slots of the shared
+ * dispatcher.
+ * <p>
+ * Waiting requests are kept in two lanes: a freed slot goes to the oldest {@link Priority#INTERACTIVE} request, and to
+ * a {@link Priority#BACKGROUND} one only when no interactive request is waiting. Requests waiting past their deadline
+ * are dropped instead of being sent. Serial requests (the `set` ones) always take the interactive lane and run one at
+ * a time in submission order, so that forms carrying the session counter never interleave.
+ */
+public class Bulkhead {
+
+    public enum Priority {INTERACTIVE, BACKGROUND}
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Deque<Entry> interactive = new ArrayDeque<>();
+    private final Deque<Entry> background = new ArrayDeque<>();
+    private final List<Deque<Entry>> lanes = new ArrayList<>(2);
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private int active;
+    private boolean serialActive;
+
+    /**
+     * Build a {@link Bulkhead}.
+     *
+     * @param maxConcurrent The maximum number of requests running at the same time.
+     * @param maxQueued     The maximum number of requests waiting for a free slot.
+     */
+    public Bulkhead(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent < 1)
+            throw new IllegalArgumentException("maxConcurrent must be greater than zero");
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = Math.max(0, maxQueued);
+        lanes.add(interactive);
+        lanes.add(background);
+    }
+
+    /**
+     * Run the task as soon as a slot is available. The task owns the slot and must {@link #release()} it when done.
+     *
+     * @param task The task to run.
+     * @throws BulkheadFullException If no slot is available and the queue is full.
+     */
+    void submit(Runnable task) throws BulkheadFullException, DeadlineExceededException {
+        submit(task, Lane.DEFAULT, null);
+    }
+
+    /**
+     * Run the task as soon as a slot of the given lane is available. The task owns the slot and must
+     * {@link #release(Lane)} it when done.
+     *
+     * @param task      The task to run.
+     * @param lane      The {@link Lane} to wait in.
+     * @param onExpired The task to run instead if the deadline expires while waiting, may be null.
+     * @throws BulkheadFullException      If no slot is available and the queue is full.
+     * @throws DeadlineExceededException If the deadline is already expired and no slot is available.
+     */
+    void submit(Runnable task, Lane lane, Runnable onExpired) throws BulkheadFullException, DeadlineExceededException {
+        synchronized (this) {
+            if (active >= maxConcurrent || (lane.serial && serialActive)) {
+                if (lane.isExpired(System.currentTimeMillis())) {
+                    expired.incrementAndGet();
+                    throw new DeadlineExceededException("The request deadline expired before a slot was available");
+                }
+                if (interactive.size() + background.size() >= maxQueued) {
+                    rejected.incrementAndGet();
+                    throw new BulkheadFullException("Too many pending requests: "
+                            + (interactive.size() + background.size()) + " queued");
+                }
+                Entry entry = new Entry(task, lane, onExpired);
+                (lane.serial || lane.priority == Priority.INTERACTIVE ? interactive : background).add(entry);
+                return;
+            }
+            active++;
+            serialActive |= lane.serial;
+        }
+        task.run();
+    }
+
+    /**
+     * Wait for a free slot. The caller owns the slot and must {@link #release()} it when done.
+     *
+     * @throws BulkheadFullException If no slot is available and the queue is full.
+     * @throws InterruptedIOException If interrupted while waiting.
+     */
+    void acquire() throws BulkheadFullException, DeadlineExceededException, InterruptedIOException {
+        acquire(Lane.DEFAULT);
+    }
+
+    /**
+     * Wait for a free slot of the given lane. The caller owns the slot and must {@link #release(Lane)} it when done.
+     *
+     * @param lane The {@link Lane} to wait in.
+     * @throws BulkheadFullException      If no slot is available and the queue is full.
+     * @throws DeadlineExceededException If the deadline expired while waiting.
+     * @throws InterruptedIOException     If interrupted while waiting.
+     */
+    void acquire(Lane lane) throws BulkheadFullException, DeadlineExceededException, InterruptedIOException {
+        final CountDownLatch granted = new CountDownLatch(1);
+        final AtomicBoolean dropped = new AtomicBoolean();
+        final Runnable waiter = new Runnable() {
+            @Override
+            public void run() {
+                granted.countDown();
+            }
+        };
+        submit(waiter, lane, new Runnable() {
+            @Override
+            public void run() {
+                dropped.set(true);
+                granted.countDown();
+            }
+        });
+        try {
+            granted.await();
+        } catch (InterruptedException e) {
+            boolean owned;
+            synchronized (this) {
+                owned = !remove(waiter) && !dropped.get();
+            }
+            if (owned)
+                release(lane);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free slot");
+        }
+        if (dropped.get())
+            throw new DeadlineExceededException("The request deadline expired while waiting for a slot");
+    }
+
+    /**
+     * Release a slot, handing it over to the first queued task if any.
+     */
+    void release() {
+        release(Lane.DEFAULT);
+    }
+
+    /**
+     * Release a slot taken in the given lane, handing it over to the first queued task which can run: interactive
+     * ones first, then background ones. Expired tasks met on the way are dropped.
+     *
+     * @param lane The {@link Lane} the slot was taken in.
+     */
+    void release(Lane lane) {
+        Entry next = null;
+        List<Entry> drop = null;
+        synchronized (this) {
+            active--;
+            if (lane.serial)
+                serialActive = false;
+            long now = System.currentTimeMillis();
+            for (Deque<Entry> queue : lanes) {
+                Iterator<Entry> it = queue.iterator();
+                while (next == null && it.hasNext()) {
+                    Entry entry = it.next();
+                    if (entry.lane.isExpired(now)) {
+                        it.remove();
+                        if (drop == null)
+                            drop = new ArrayList<>();
+                        drop.add(entry);
+                    } else if (!entry.lane.serial || !serialActive) {
+                        it.remove();
+                        next = entry;
+                    }
+                }
+            }
+            if (next != null) {
+                active++;
+                serialActive |= next.lane.serial;
+            }
+        }
+        if (drop != null) {
+            for (Entry entry : drop) {
+                expired.incrementAndGet();
+                if (entry.onExpired != null)
+                    entry.onExpired.run();
+            }
+        }
+        if (next != null)
+            next.task.run();
+    }
+
+    private boolean remove(Runnable task) {
+        for (Deque<Entry> queue : lanes) {
+            Iterator<Entry> it = queue.iterator();
+            while (it.hasNext()) {
+                if (it.next().task == task) {
+                    it.remove();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the maximum number of requests running at the same time.
+     *
+     * @return The number of slots.
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Get the number of requests currently running.
+     *
+     * @return The number of busy slots.
+     */
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * Get the number of requests waiting for a free slot.
+     *
+     * @return The queue length.
+     */
+    public synchronized int getQueueLength() {
+        return interactive.size() + background.size();
+    }
+
+    /**
+     * Get the number of requests waiting for a free slot with the given priority.
+     *
+     * @param priority The lane priority.
+     * @return The lane length.
+     */
+    public synchronized int getQueueLength(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactive.size() : background.size();
+    }
+
+    /**
+     * Get the number of requests rejected since creation.
+     *
+     * @return The rejection counter.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the number of requests dropped since creation because their deadline expired.
+     *
+     * @return The expiration counter.
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * How a request waits for a slot: its priority, its deadline and whether it must run alone among serial requests.
+     */
+    static final class Lane {
+
+        static final Lane DEFAULT = new Lane(Priority.INTERACTIVE, 0, false);
+        static final Lane SERIAL = new Lane(Priority.INTERACTIVE, 0, true);
+
+        final Priority priority;
+        final long deadline;
+        final boolean serial;
+
+        Lane(Priority priority, long deadline, boolean serial) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.serial = serial;
+        }
+
+        /**
+         * Get the lane of an asynchronous operation, as given by its callback when it is {@link Prioritized}.
+         *
+         * @param callback The operation callback.
+         * @param serial   Whether the operation is a serial one.
+         * @return The {@link Lane}.
+         */
+        static Lane of(AsyncCallback<?> callback, boolean serial) {
+            if (!(callback instanceof Prioritized))
+                return serial ? SERIAL : DEFAULT;
+            Prioritized prioritized = (Prioritized) callback;
+            Priority priority = prioritized.getPriority();
+            return new Lane(priority != null ? priority : Priority.INTERACTIVE, prioritized.getDeadline(), serial);
+        }
+
+        /**
+         * Tell whether the lane was chosen by a {@link Prioritized} callback, rather than being a default one.
+         *
+         * @return True if the lane was given by the callback.
+         */
+        boolean isPrioritized() {
+            return this != DEFAULT && this != SERIAL;
+        }
+
+        boolean isExpired(long now) {
+            return deadline > 0 && now > deadline;
+        }
+    }
+
+    private static final class Entry {
+        private final Runnable task;
+        private final Lane lane;
+        private final Runnable onExpired;
+
+        private Entry(Runnable task, Lane lane, Runnable onExpired) {
+            this.task = task;
+            this.lane = lane;
+            this.onExpired = onExpired;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancel a {@link Call} still running after a given amount of time. A shared daemon timer is used for every call.
+ */
+class CallTimeout implements Runnable {
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "AirStation Watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Call call;
+    private final long millis;
+    private final ScheduledFuture<?> future;
+    private volatile boolean fired;
+
+    private CallTimeout(Call call, long millis) {
+        this.call = call;
+        this.millis = millis;
+        this.future = WATCHDOG.schedule(this, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start watching the given {@link Call}.
+     *
+     * @param call   The {@link Call} to cancel on timeout.
+     * @param millis The timeout in milliseconds, nothing is watched if not positive.
+     * @return The {@link CallTimeout}, or null if millis is not positive.
+     */
+    static CallTimeout start(Call call, long millis) {
+        return millis > 0 ? new CallTimeout(call, millis) : null;
+    }
+
+    /**
+     * Stop watching the call, if any.
+     *
+     * @param timeout The {@link CallTimeout} to stop, may be null.
+     */
+    static void stop(CallTimeout timeout) {
+        if (timeout != null)
+            timeout.future.cancel(false);
+    }
+
+    /**
+     * Translate the failure of a watched call into an {@link InterruptedIOException} if it was caused by the timeout.
+     *
+     * @param timeout The {@link CallTimeout}, may be null.
+     * @param e       The failure.
+     * @return The translated failure.
+     */
+    static IOException translate(CallTimeout timeout, IOException e) {
+        if (hasFired(timeout)) {
+            InterruptedIOException timedOut = new InterruptedIOException("Call timed out after " + timeout.millis + "ms");
+            timedOut.initCause(e);
+            return timedOut;
+        }
+        return e;
+    }
+
+    /**
+     * Tell whether the call was cancelled by the given timeout.
+     *
+     * @param timeout The {@link CallTimeout}, may be null.
+     * @return True if the timeout fired.
+     */
+    static boolean hasFired(CallTimeout timeout) {
+        return timeout != null && timeout.fired;
+    }
+
+    @Override
+    public void run() {
+        fired = true;
+        call.cancel();
+    }
+}
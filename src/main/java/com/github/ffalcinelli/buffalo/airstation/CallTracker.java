@@ -0,0 +1,10 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+/**
+ * Interface to be notified of every request issued on behalf of an asynchronous operation, so that the operation
+ * can be cancelled.
+ */
+interface CallTracker {
+
+    void track(Cancellable call);
+}
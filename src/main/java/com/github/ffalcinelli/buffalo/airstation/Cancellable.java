@@ -0,0 +1,19 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+/**
+ * A handle to cancel a single request issued on behalf of an operation.
+ */
+interface Cancellable {
+
+    /**
+     * Cancel the request, if still running.
+     */
+    void cancel();
+
+    /**
+     * Tell whether the request was cancelled on purpose, rather than by a timeout.
+     *
+     * @return True if the request was cancelled.
+     */
+    boolean isCanceled();
+}
@@ -0,0 +1,179 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * A per-device circuit breaker, so that an unreachable device fails fast instead of holding slots until its connect
+ * timeout.
+ * <p>
+ * After failureThreshold consecutive transport failures the circuit opens, and every request fails right away with a
+ * {@link com.github.ffalcinelli.buffalo.exception.CircuitOpenException}. The first request after the cooldown moves
+ * the circuit to half-open and triggers a single probe of the device home page, while requests keep failing fast:
+ * the circuit closes when the probe gets a response and opens again otherwise. Any response closes the circuit, since
+ * it proves the device reachable. The breaker is configured by the "circuitBreaker" settings object:
+ * <pre>
+ * {"failureThreshold": 5, "cooldown": 30000}
+ * </pre>
+ */
+public class CircuitBreaker {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final int DEFAULT_COOLDOWN = 30000;
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final AirStation airStation;
+    private final int failureThreshold;
+    private final long cooldown;
+    private final List<CircuitListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    /**
+     * Build a breaker for the given device.
+     *
+     * @param airStation The device, probed through {@link AirStation#probe(CircuitBreaker)}.
+     * @param settings   The breaker settings.
+     */
+    CircuitBreaker(AirStation airStation, JSONObject settings) {
+        this.airStation = airStation;
+        this.failureThreshold = getIntOrDefault(settings, "failureThreshold", DEFAULT_FAILURE_THRESHOLD);
+        this.cooldown = getIntOrDefault(settings, "cooldown", DEFAULT_COOLDOWN);
+        if (failureThreshold < 1 || cooldown < 0)
+            throw new IllegalArgumentException("failureThreshold must be positive and cooldown must not be negative");
+    }
+
+    public void addListener(CircuitListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CircuitListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Tell whether a request may be sent, starting the half-open probe once the cooldown is over.
+     *
+     * @return False if the request must fail fast.
+     */
+    boolean allowRequest() {
+        boolean probe;
+        synchronized (this) {
+            if (state == State.CLOSED)
+                return true;
+            probe = state == State.OPEN && now() - openedAt >= cooldown;
+        }
+        if (probe && transition(State.OPEN, State.HALF_OPEN)) {
+            probes.incrementAndGet();
+            airStation.probe(this);
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Feed a response from the device, closing the circuit.
+     */
+    void onSuccess() {
+        State previous;
+        synchronized (this) {
+            failures = 0;
+            if (state == State.CLOSED)
+                return;
+            previous = state;
+        }
+        transition(previous, State.CLOSED);
+    }
+
+    /**
+     * Feed a transport failure, opening the circuit after failureThreshold consecutive ones or when the probe fails.
+     */
+    void onFailure() {
+        State previous;
+        synchronized (this) {
+            if (state == State.OPEN)
+                return;
+            if (state == State.CLOSED && ++failures < failureThreshold)
+                return;
+            previous = state;
+        }
+        transition(previous, State.OPEN);
+    }
+
+    private boolean transition(State from, State to) {
+        synchronized (this) {
+            if (state != from)
+                return false;
+            state = to;
+            if (to == State.OPEN) {
+                openedAt = now();
+                opened.incrementAndGet();
+            }
+            if (to == State.CLOSED)
+                failures = 0;
+        }
+        for (CircuitListener listener : listeners) {
+            try {
+                listener.onStateChange(airStation, from, to);
+            } catch (RuntimeException e) {
+                // A faulty listener must not break the request path.
+            }
+        }
+        return true;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of consecutive transport failures.
+     *
+     * @return The failures since the last response.
+     */
+    public synchronized int getConsecutiveFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the number of requests failed fast since creation.
+     *
+     * @return The rejection counter.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the number of times the circuit opened since creation.
+     *
+     * @return The opening counter.
+     */
+    public long getOpenCount() {
+        return opened.get();
+    }
+
+    /**
+     * Get the number of half-open probes sent since creation.
+     *
+     * @return The probe counter.
+     */
+    public long getProbeCount() {
+        return probes.get();
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+/**
+ * Interface to be notified when the {@link CircuitBreaker} of a device changes state.
+ */
+public interface CircuitListener {
+
+    void onStateChange(AirStation airStation, CircuitBreaker.State previous, CircuitBreaker.State current);
+}
@@ -0,0 +1,137 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Turns the DEVCTRL client lists of many devices into a stream of {@link DeviceEvent}s.
+ * <p>
+ * The last client list of each device is kept by MAC address, and each new list is compared to it in linear time:
+ * only the clients which joined, left or changed their QoS priority, parental control or disconnect state are
+ * notified. The first list of a device is notified as {@link DeviceEvent.Type#JOINED} events.
+ * <p>
+ * The feed is a {@link PollListener}, so it can be registered to an {@link AirStationPoller} polling DEVCTRL: polls
+ * whose data did not change are skipped without any comparison. Lists can also be given through
+ * {@link #update(AirStation, Collection)}.
+ */
+public class DeviceChangeFeed implements PollListener {
+
+    private final List<DeviceEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<AirStation, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    public void addListener(DeviceEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DeviceEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void onResult(AirStation airStation, JSONFunction param, JSONObject data, boolean changed) {
+        if (param != JSONFunction.DEVCTRL || (!changed && snapshots.containsKey(airStation)))
+            return;
+        List<NetworkDevice> devices;
+        try {
+            devices = JSONParamReader.DEVICES.read(data);
+        } catch (IOException e) {
+            // Not a client list, there is nothing to compare.
+            return;
+        }
+        update(airStation, devices);
+    }
+
+    @Override
+    public void onFailure(AirStation airStation, JSONFunction param, Throwable t) {
+    }
+
+    /**
+     * Compare the given client list to the previous one of the device, and notify the differences.
+     *
+     * @param airStation The device.
+     * @param devices    The clients currently connected to the device.
+     * @return The events notified.
+     */
+    public List<DeviceEvent> update(AirStation airStation, Collection<NetworkDevice> devices) {
+        Snapshot snapshot = snapshots.get(airStation);
+        if (snapshot == null) {
+            snapshots.putIfAbsent(airStation, new Snapshot());
+            snapshot = snapshots.get(airStation);
+        }
+        List<DeviceEvent> events = new ArrayList<>();
+        synchronized (snapshot) {
+            Map<String, NetworkDevice> previous = snapshot.devices;
+            Map<String, NetworkDevice> current = new HashMap<>(devices.size() * 2);
+            for (NetworkDevice device : devices) {
+                String mac = key(device);
+                if (mac == null || current.containsKey(mac))
+                    continue;
+                current.put(mac, device);
+                NetworkDevice before = previous.remove(mac);
+                if (before == null)
+                    events.add(new DeviceEvent(DeviceEvent.Type.JOINED, null, device));
+                else if (changed(before, device))
+                    events.add(new DeviceEvent(DeviceEvent.Type.CHANGED, before, device));
+            }
+            for (NetworkDevice left : previous.values())
+                events.add(new DeviceEvent(DeviceEvent.Type.LEFT, left, null));
+            snapshot.devices = current;
+        }
+        for (DeviceEvent event : events) {
+            for (DeviceEventListener listener : listeners)
+                listener.onDeviceEvent(airStation, event);
+        }
+        return events;
+    }
+
+    /**
+     * Get the last known clients of a device.
+     *
+     * @param airStation The device.
+     * @return The clients of the last list, empty if none was received.
+     */
+    public List<NetworkDevice> getDevices(AirStation airStation) {
+        Snapshot snapshot = snapshots.get(airStation);
+        if (snapshot == null)
+            return new ArrayList<>();
+        synchronized (snapshot) {
+            return new ArrayList<>(snapshot.devices.values());
+        }
+    }
+
+    /**
+     * Drop the last client list of a device, so that its next list is notified as new.
+     *
+     * @param airStation The device.
+     */
+    public void forget(AirStation airStation) {
+        snapshots.remove(airStation);
+    }
+
+    private static String key(NetworkDevice device) {
+        String mac = device.getMacAddress();
+        return mac == null || mac.isEmpty() ? null : mac.toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean changed(NetworkDevice before, NetworkDevice after) {
+        return before.getQos() != after.getQos()
+                || before.isParentalEnabled() != after.isParentalEnabled()
+                || before.isDisconnected() != after.isDisconnected();
+    }
+
+    private static final class Snapshot {
+        private Map<String, NetworkDevice> devices = new HashMap<>();
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+
+/**
+ * A change of the clients connected to a device, as reported by a {@link DeviceChangeFeed}.
+ */
+public final class DeviceEvent {
+
+    public enum Type {
+        /**
+         * The client appeared in the device list.
+         */
+        JOINED,
+        /**
+         * The client disappeared from the device list.
+         */
+        LEFT,
+        /**
+         * The QoS priority, the parental control or the disconnect state of the client changed.
+         */
+        CHANGED
+    }
+
+    private final Type type;
+    private final NetworkDevice previous;
+    private final NetworkDevice current;
+
+    DeviceEvent(Type type, NetworkDevice previous, NetworkDevice current) {
+        this.type = type;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the client as it was before the change.
+     *
+     * @return The previous {@link NetworkDevice}, null for {@link Type#JOINED} events.
+     */
+    public NetworkDevice getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Get the client as it is after the change.
+     *
+     * @return The current {@link NetworkDevice}, null for {@link Type#LEFT} events.
+     */
+    public NetworkDevice getCurrent() {
+        return current;
+    }
+
+    public String getMacAddress() {
+        return current != null ? current.getMacAddress() : previous.getMacAddress();
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceEvent{" + type + " " + getMacAddress() + "}";
+    }
+}
@@ -0,0 +1,9 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+/**
+ * Interface to receive the client changes of a {@link DeviceChangeFeed}.
+ */
+public interface DeviceEventListener {
+
+    void onDeviceEvent(AirStation airStation, DeviceEvent event);
+}
@@ -0,0 +1,11 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+
+/**
+ * Interface to receive the DHCP leases one at a time, as they are read from the device response.
+ */
+public interface DhcpLeaseListener {
+
+    void onLease(NetworkDevice device);
+}
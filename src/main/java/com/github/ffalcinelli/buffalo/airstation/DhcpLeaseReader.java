@@ -0,0 +1,285 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.SessionExpiredException;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import okio.BufferedSource;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cursor over the rows of the DHCP lease table (dhcps_lease.html), reading them straight from the response body.
+ * <p>
+ * Only the row being read is kept in memory, whatever the size of the table:
+ * <pre>
+ * while (reader.next())
+ *     System.out.println(reader.getIpAddress() + " " + reader.getMacAddress());
+ * </pre>
+ */
+public class DhcpLeaseReader implements Closeable {
+
+    private static final String TABLE_CLASS = "AD_LIST";
+    private static final String NO_LEASE = "--:--:--";
+
+    private final Closeable resource;
+    private final HtmlScanner scanner;
+    private final StringBuilder pending = new StringBuilder();
+    private final List<String> cells = new ArrayList<>(5);
+    private boolean inTable;
+    private boolean done;
+    private String ipAddress;
+    private String macAddress;
+    private String lease;
+    private String id;
+
+    /**
+     * Build a reader over the given DHCP lease page.
+     *
+     * @param source The page body.
+     */
+    public DhcpLeaseReader(BufferedSource source) {
+        this(source, source);
+    }
+
+    /**
+     * Build a reader over the given DHCP lease page, releasing the given resource once closed.
+     *
+     * @param source   The page body.
+     * @param resource The {@link Closeable} holding the body, as the live response.
+     */
+    DhcpLeaseReader(BufferedSource source, Closeable resource) {
+        this.resource = resource;
+        // Lines are recorded until the table is found, to report error and login pages.
+        this.scanner = new HtmlScanner(source, true);
+    }
+
+    /**
+     * Look the table up without reading any row, so that error and login pages are reported right away.
+     *
+     * @throws SessionExpiredException If the device answered with the login page.
+     * @throws IOException             Whenever something goes wrong reading the page or the page reports an error.
+     */
+    void open() throws IOException {
+        if (!inTable && !done && !seekTable())
+            done = true;
+    }
+
+    /**
+     * Move to the next lease.
+     *
+     * @return True if a lease was read, false at the end of the table.
+     * @throws SessionExpiredException If the device answered with the login page.
+     * @throws IOException             Whenever something goes wrong reading the page or the page reports an error.
+     */
+    public boolean next() throws IOException {
+        if (done)
+            return false;
+        if (!inTable && !seekTable()) {
+            done = true;
+            return false;
+        }
+        while (true) {
+            int rowEnd = indexOfIgnoreCase(pending, "</tr>", 0);
+            int tableEnd = indexOfIgnoreCase(pending, "</table>", 0);
+            if (tableEnd >= 0 && (rowEnd < 0 || tableEnd < rowEnd)) {
+                done = true;
+                pending.setLength(0);
+                scanner.drain();
+                return false;
+            }
+            if (rowEnd >= 0) {
+                String row = pending.substring(0, rowEnd);
+                pending.delete(0, rowEnd + "</tr>".length());
+                if (readRow(row))
+                    return true;
+                continue;
+            }
+            String line = scanner.nextLine();
+            if (line == null) {
+                done = true;
+                return false;
+            }
+            pending.append(line).append('\n');
+        }
+    }
+
+    private boolean seekTable() throws IOException {
+        String line;
+        while ((line = scanner.nextLine()) != null) {
+            int idx = line.indexOf(TABLE_CLASS);
+            if (idx >= 0) {
+                inTable = true;
+                scanner.stopRecording();
+                pending.append(line, idx, line.length()).append('\n');
+                return true;
+            }
+        }
+        // No table at all: let the full parse tell an error or the login page.
+        Document doc = RequestAdapter.toDocument(scanner.remainder());
+        if (RequestAdapter.isLoginPage(doc))
+            throw new SessionExpiredException("The device session has expired");
+        return false;
+    }
+
+    private boolean readRow(String row) {
+        cells.clear();
+        int pos = 0;
+        while (true) {
+            int start = indexOfIgnoreCase(row, "<td", pos);
+            if (start < 0)
+                break;
+            int open = row.indexOf('>', start);
+            if (open < 0)
+                break;
+            int end = indexOfIgnoreCase(row, "</td>", open);
+            if (end < 0)
+                end = row.length();
+            cells.add(row.substring(open + 1, end));
+            pos = end;
+        }
+        if (cells.size() != 5)
+            return false;
+        String submit = attribute(cells.get(4), "type=\"submit\"", "name");
+        if (submit == null || submit.length() < 3)
+            return false;
+        ipAddress = text(cells.get(0)).replace("(*)", "");
+        macAddress = text(cells.get(1));
+        lease = text(cells.get(2));
+        id = submit.substring(3);
+        return true;
+    }
+
+    /**
+     * Get the leased IP address. Manually reserved addresses are marked by the device with "(*)", which is removed.
+     *
+     * @return The IP address.
+     */
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getMacAddress() {
+        return macAddress;
+    }
+
+    /**
+     * Get the remaining lease time, as shown by the device (hours:minutes:seconds or "--:--:--" for reservations).
+     *
+     * @return The lease time text.
+     */
+    public String getLease() {
+        return lease;
+    }
+
+    /**
+     * Get the table entry id, used to edit the entry.
+     *
+     * @return The entry id.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Build a {@link NetworkDevice} from the current lease. The lease time is converted to seconds, 0 if the address
+     * is reserved.
+     *
+     * @return The {@link NetworkDevice}.
+     */
+    public NetworkDevice toNetworkDevice() {
+        NetworkDevice device = new NetworkDevice();
+        device.setIpAddress(ipAddress);
+        device.setMacAddress(macAddress);
+        device.setLeaseTime(parseLease(lease));
+        try {
+            device.setId(Integer.parseInt(id));
+        } catch (NumberFormatException e) {
+            // Leave the default id.
+        }
+        return device;
+    }
+
+    @Override
+    public void close() throws IOException {
+        resource.close();
+    }
+
+    /**
+     * Convert a lease time in the hours:minutes:seconds form to seconds.
+     *
+     * @param lease The lease time text.
+     * @return The lease time in seconds, 0 if not available.
+     */
+    static long parseLease(String lease) {
+        if (lease == null || lease.equals(NO_LEASE))
+            return 0;
+        long seconds = 0;
+        for (String part : lease.split(":")) {
+            try {
+                seconds = seconds * 60 + Long.parseLong(part.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return seconds;
+    }
+
+    private static String text(String html) {
+        StringBuilder sb = new StringBuilder(html.length());
+        boolean inTag = false;
+        boolean space = false;
+        for (int i = 0; i < html.length(); i++) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                inTag = true;
+            } else if (c == '>') {
+                inTag = false;
+            } else if (!inTag) {
+                if (Character.isWhitespace(c)) {
+                    space = sb.length() > 0;
+                } else {
+                    if (space)
+                        sb.append(' ');
+                    space = false;
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.indexOf("&") >= 0 ? Parser.unescapeEntities(sb.toString(), false) : sb.toString();
+    }
+
+    private static String attribute(String html, String marker, String name) {
+        int idx = html.indexOf(marker);
+        if (idx < 0)
+            return null;
+        int start = html.lastIndexOf('<', idx);
+        int end = html.indexOf('>', idx);
+        if (start < 0 || end < 0)
+            return null;
+        String tag = html.substring(start, end);
+        String pattern = " " + name + "=\"";
+        int value = tag.indexOf(pattern);
+        if (value < 0)
+            return null;
+        value += pattern.length();
+        int close = tag.indexOf('"', value);
+        return close < 0 ? null : tag.substring(value, close);
+    }
+
+    private static int indexOfIgnoreCase(CharSequence text, String target, int from) {
+        int max = text.length() - target.length();
+        for (int i = Math.max(from, 0); i <= max; i++) {
+            int j = 0;
+            while (j < target.length()
+                    && Character.toLowerCase(text.charAt(i + j)) == target.charAt(j))
+                j++;
+            if (j == target.length())
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+import java.io.IOException;
+
+/**
+ * A 64 bit FNV-1a hash of a response body, computed while the body is read.
+ * <p>
+ * FNV-1a is not a cryptographic hash: it only tells whether a device sent the very same bytes it sent before, so
+ * that the previous parsed value can be reused. The body length is compared as well, to make collisions between
+ * responses of the same dataset even less likely.
+ */
+final class Fingerprint {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final int CHUNK_SIZE = 8192;
+
+    private long hash = OFFSET_BASIS;
+    private long length;
+
+    /**
+     * Read the whole source into the sink, hashing the bytes as they are read.
+     *
+     * @param source The {@link BufferedSource} of the body.
+     * @param sink   The {@link Buffer} receiving the body.
+     * @return The {@link Fingerprint} of the body.
+     * @throws IOException Whenever something goes wrong reading the source.
+     */
+    static Fingerprint read(BufferedSource source, Buffer sink) throws IOException {
+        Fingerprint fingerprint = new Fingerprint();
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int count;
+        while ((count = source.read(chunk, 0, chunk.length)) != -1) {
+            fingerprint.update(chunk, 0, count);
+            sink.write(chunk, 0, count);
+        }
+        return fingerprint;
+    }
+
+    void update(byte[] data, int offset, int count) {
+        long h = hash;
+        for (int i = offset; i < offset + count; i++) {
+            h ^= data[i] & 0xff;
+            h *= PRIME;
+        }
+        hash = h;
+        length += count;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    boolean matches(Fingerprint other) {
+        return other != null && hash == other.hash && length == other.length;
+    }
+}
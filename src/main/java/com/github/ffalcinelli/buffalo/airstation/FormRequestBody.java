@@ -0,0 +1,227 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A form encoded {@link RequestBody} written straight into the request sink, with the same encoding
+ * {@link java.net.URLEncoder} produces.
+ * <p>
+ * Names and values made of characters which need no escaping are written as they are, and pairs known to be already
+ * encoded can be added with {@link Builder#addEncoded(String, String)}, so that no intermediate String or byte array
+ * is built for them.
+ */
+final class FormRequestBody extends RequestBody {
+
+    private static final MediaType CONTENT_TYPE = RequestAdapter.FORM;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final Charset charset;
+    private final boolean utf8;
+    private final List<String> names;
+    private final List<String> values;
+    private final boolean[] encoded;
+    private long contentLength = -1;
+
+    private FormRequestBody(Builder builder) {
+        this.charset = builder.charset;
+        this.utf8 = charset.equals(UTF_8);
+        this.names = builder.names;
+        this.values = builder.values;
+        this.encoded = new boolean[builder.encoded.size()];
+        for (int i = 0; i < encoded.length; i++)
+            encoded[i] = builder.encoded.get(i);
+    }
+
+    /**
+     * Build a body with the given parameters.
+     *
+     * @param params  The parameters to encode.
+     * @param charset The {@link Charset} to encode non ASCII characters with.
+     * @return The {@link FormRequestBody}.
+     */
+    static FormRequestBody of(Map<String, String> params, Charset charset) {
+        Builder builder = new Builder(charset);
+        for (Map.Entry<String, String> entry : params.entrySet())
+            builder.add(entry.getKey(), entry.getValue());
+        return builder.build();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public long contentLength() {
+        if (contentLength == -1) {
+            long length = 0;
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0)
+                    length++;
+                length += encodedLength(names.get(i), encoded[i]) + 1 + encodedLength(values.get(i), encoded[i]);
+            }
+            contentLength = length;
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0)
+                sink.writeByte('&');
+            write(sink, names.get(i), encoded[i]);
+            sink.writeByte('=');
+            write(sink, values.get(i), encoded[i]);
+        }
+    }
+
+    private void write(BufferedSink sink, String s, boolean encoded) throws IOException {
+        if (encoded) {
+            sink.writeUtf8(s);
+            return;
+        }
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (isSafe(c)) {
+                sink.writeByte(c);
+                i++;
+            } else if (c == ' ') {
+                sink.writeByte('+');
+                i++;
+            } else if (utf8) {
+                int codePoint = s.codePointAt(i);
+                writeUtf8Escaped(sink, s, i, codePoint);
+                i += Character.charCount(codePoint);
+            } else {
+                int end = i + 1;
+                while (end < s.length() && !isSafe(s.charAt(end)) && s.charAt(end) != ' ')
+                    end++;
+                for (byte b : s.substring(i, end).getBytes(charset))
+                    writeEscaped(sink, b);
+                i = end;
+            }
+        }
+    }
+
+    private static void writeUtf8Escaped(BufferedSink sink, String s, int index, int codePoint) throws IOException {
+        if (Character.isSurrogate(s.charAt(index)) && Character.charCount(codePoint) == 1) {
+            // Unpaired surrogates are replaced as String.getBytes does.
+            writeEscaped(sink, (byte) '?');
+        } else if (codePoint < 0x80) {
+            writeEscaped(sink, (byte) codePoint);
+        } else if (codePoint < 0x800) {
+            writeEscaped(sink, (byte) (0xc0 | codePoint >> 6));
+            writeEscaped(sink, (byte) (0x80 | codePoint & 0x3f));
+        } else if (codePoint < 0x10000) {
+            writeEscaped(sink, (byte) (0xe0 | codePoint >> 12));
+            writeEscaped(sink, (byte) (0x80 | codePoint >> 6 & 0x3f));
+            writeEscaped(sink, (byte) (0x80 | codePoint & 0x3f));
+        } else {
+            writeEscaped(sink, (byte) (0xf0 | codePoint >> 18));
+            writeEscaped(sink, (byte) (0x80 | codePoint >> 12 & 0x3f));
+            writeEscaped(sink, (byte) (0x80 | codePoint >> 6 & 0x3f));
+            writeEscaped(sink, (byte) (0x80 | codePoint & 0x3f));
+        }
+    }
+
+    private static void writeEscaped(BufferedSink sink, byte b) throws IOException {
+        sink.writeByte('%');
+        sink.writeByte(HEX[(b >> 4) & 0xf]);
+        sink.writeByte(HEX[b & 0xf]);
+    }
+
+    private long encodedLength(String s, boolean encoded) {
+        if (encoded)
+            return s.length();
+        long length = 0;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (isSafe(c) || c == ' ') {
+                length++;
+                i++;
+            } else if (utf8) {
+                int codePoint = s.codePointAt(i);
+                int count = Character.charCount(codePoint);
+                if (count == 1 && Character.isSurrogate(c))
+                    length += 3;
+                else
+                    length += 3 * (codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4);
+                i += count;
+            } else {
+                int end = i + 1;
+                while (end < s.length() && !isSafe(s.charAt(end)) && s.charAt(end) != ' ')
+                    end++;
+                length += 3 * s.substring(i, end).getBytes(charset).length;
+                i = end;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Whether the character is left as is by {@link java.net.URLEncoder}.
+     */
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    /**
+     * Builder of {@link FormRequestBody}, keeping the pairs in insertion order.
+     */
+    static final class Builder {
+        private final Charset charset;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<Boolean> encoded = new ArrayList<>();
+
+        Builder(Charset charset) {
+            this.charset = charset;
+        }
+
+        /**
+         * Add a pair, to be encoded while written.
+         *
+         * @param name  The parameter name.
+         * @param value The parameter value.
+         * @return This builder.
+         */
+        Builder add(String name, String value) {
+            return add(name, value, false);
+        }
+
+        /**
+         * Add a pair which is already form encoded, to be written as is.
+         *
+         * @param name  The encoded parameter name.
+         * @param value The encoded parameter value.
+         * @return This builder.
+         */
+        Builder addEncoded(String name, String value) {
+            return add(name, value, true);
+        }
+
+        private Builder add(String name, String value, boolean isEncoded) {
+            names.add(name);
+            values.add(value);
+            encoded.add(isEncoded);
+            return this;
+        }
+
+        FormRequestBody build() {
+            return new FormRequestBody(this);
+        }
+    }
+}
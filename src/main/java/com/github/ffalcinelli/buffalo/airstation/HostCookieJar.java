@@ -0,0 +1,124 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A non persistent, thread safe {@link CookieJar} keeping cookies by host.
+ * <p>
+ * Cookies are identified by name, domain and path, so saving a cookie again replaces the previous one whatever the
+ * request url was. Expired cookies are evicted both on save and on load, and each host keeps at most
+ * {@link #DEFAULT_MAX_COOKIES_PER_HOST} cookies, dropping the least recently saved ones first.
+ */
+public class HostCookieJar implements CookieJar {
+
+    public static final int DEFAULT_MAX_COOKIES_PER_HOST = 50;
+
+    private final ConcurrentMap<String, Map<String, Cookie>> cookieStore = new ConcurrentHashMap<>();
+    private final int maxCookiesPerHost;
+
+    public HostCookieJar() {
+        this(DEFAULT_MAX_COOKIES_PER_HOST);
+    }
+
+    /**
+     * Build a cookie jar keeping at most the given number of cookies for each host.
+     *
+     * @param maxCookiesPerHost The maximum number of cookies per host.
+     */
+    public HostCookieJar(final int maxCookiesPerHost) {
+        if (maxCookiesPerHost < 1)
+            throw new IllegalArgumentException("The maximum number of cookies per host must be greater than zero");
+        this.maxCookiesPerHost = maxCookiesPerHost;
+    }
+
+    @Override
+    public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
+        Map<String, Cookie> hostCookies = hostCookies(url.host());
+        long now = System.currentTimeMillis();
+        synchronized (hostCookies) {
+            for (Cookie cookie : cookies) {
+                String key = keyOf(cookie);
+                // Re-insert to keep the map in save order.
+                hostCookies.remove(key);
+                if (cookie.expiresAt() > now)
+                    hostCookies.put(key, cookie);
+            }
+            evictExpired(hostCookies, now);
+        }
+    }
+
+    @Override
+    public List<Cookie> loadForRequest(HttpUrl url) {
+        Map<String, Cookie> hostCookies = cookieStore.get(url.host());
+        List<Cookie> result = new ArrayList<>();
+        if (hostCookies == null)
+            return result;
+        synchronized (hostCookies) {
+            evictExpired(hostCookies, System.currentTimeMillis());
+            for (Cookie cookie : hostCookies.values()) {
+                if (cookie.matches(url))
+                    result.add(cookie);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of cookies currently stored.
+     *
+     * @return The number of stored cookies.
+     */
+    public int size() {
+        int size = 0;
+        for (Map<String, Cookie> hostCookies : cookieStore.values()) {
+            synchronized (hostCookies) {
+                size += hostCookies.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Drop every stored cookie.
+     */
+    public void clear() {
+        cookieStore.clear();
+    }
+
+    private Map<String, Cookie> hostCookies(String host) {
+        Map<String, Cookie> hostCookies = cookieStore.get(host);
+        if (hostCookies == null) {
+            hostCookies = new LinkedHashMap<String, Cookie>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cookie> eldest) {
+                    return size() > maxCookiesPerHost;
+                }
+            };
+            Map<String, Cookie> existing = cookieStore.putIfAbsent(host, hostCookies);
+            if (existing != null)
+                hostCookies = existing;
+        }
+        return hostCookies;
+    }
+
+    private static void evictExpired(Map<String, Cookie> hostCookies, long now) {
+        for (Iterator<Cookie> it = hostCookies.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt() <= now)
+                it.remove();
+        }
+    }
+
+    private static String keyOf(Cookie cookie) {
+        return cookie.name() + ';' + cookie.domain() + ';' + cookie.path();
+    }
+}
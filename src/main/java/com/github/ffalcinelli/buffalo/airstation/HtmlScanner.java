@@ -0,0 +1,155 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okio.BufferedSource;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * A single pass, line based scanner over an HTML response body, used to look a few tokens up without building a DOM.
+ * <p>
+ * When recording, the lines read are kept so that the whole page can still be handed to Jsoup as a fallback.
+ */
+final class HtmlScanner {
+
+    private static final String ERROR_CLASS = "errortxt";
+
+    private final BufferedSource source;
+    private StringBuilder transcript;
+
+    /**
+     * Build a scanner over the given source.
+     *
+     * @param source    The {@link BufferedSource} to read.
+     * @param recording Whether to keep the lines read for {@link #remainder()}.
+     */
+    HtmlScanner(BufferedSource source, boolean recording) {
+        this.source = source;
+        this.transcript = recording ? new StringBuilder() : null;
+    }
+
+    /**
+     * Read the next line.
+     *
+     * @return The line, or null at the end of the body.
+     * @throws IOException Whenever something goes wrong reading the body.
+     */
+    String nextLine() throws IOException {
+        String line = source.readUtf8Line();
+        if (line != null && transcript != null)
+            transcript.append(line).append('\n');
+        return line;
+    }
+
+    /**
+     * Get the whole page: the lines already read followed by the unread part of the body.
+     *
+     * @return The page text.
+     * @throws IOException Whenever something goes wrong reading the body.
+     */
+    String remainder() throws IOException {
+        if (transcript == null)
+            throw new IllegalStateException("The scanner is not recording");
+        return transcript.append(source.readUtf8()).toString();
+    }
+
+    /**
+     * Stop keeping the lines read, once the fallback is no longer needed.
+     */
+    void stopRecording() {
+        transcript = null;
+    }
+
+    /**
+     * Skip the unread part of the body without decoding it, so that the connection can be reused.
+     *
+     * @throws IOException Whenever something goes wrong reading the body.
+     */
+    void drain() throws IOException {
+        while (source.request(1))
+            source.skip(source.buffer().size());
+    }
+
+    /**
+     * Tell whether the body is the device login page, by scanning it up to its title. JSON and plain text bodies are
+     * told apart by their first character and are not read at all. Only a page whose title can not be found is
+     * parsed by Jsoup, which needs the scanner to be recording.
+     *
+     * @return True if the body is the login page.
+     * @throws IOException Whenever something goes wrong reading the body.
+     */
+    boolean isLoginPage() throws IOException {
+        if (!startsWithTag())
+            return false;
+        StringBuilder title = null;
+        String line;
+        while ((line = nextLine()) != null) {
+            String lower = line.toLowerCase(Locale.ROOT);
+            int start = 0;
+            if (title == null) {
+                int tag = lower.indexOf("<title");
+                if (tag < 0)
+                    continue;
+                start = lower.indexOf('>', tag) + 1;
+                if (start == 0)
+                    break;
+                title = new StringBuilder();
+            }
+            int end = lower.indexOf("</title>", start);
+            title.append(line, start, end >= 0 ? end : line.length()).append(' ');
+            if (end >= 0)
+                return title.toString().trim().equalsIgnoreCase("login");
+        }
+        return transcript != null && RequestAdapter.isLoginPage(Jsoup.parse(remainder()));
+    }
+
+    private boolean startsWithTag() throws IOException {
+        for (long i = 0; source.request(i + 1); i++) {
+            byte b = source.buffer().getByte(i);
+            if (!Character.isWhitespace(b))
+                return b == '<';
+        }
+        return false;
+    }
+
+    /**
+     * Scan a page for the error div the device adds to failed form responses. Only once found, the page from the div
+     * onwards is parsed by Jsoup to read the error message. The start of a tag spanning many lines is kept until the
+     * tag is closed, so that the div is found even when its class attribute is not on the line of its start.
+     *
+     * @param source The {@link BufferedSource} to read.
+     * @throws IOException Whenever the page reports an error or something goes wrong reading the body.
+     */
+    static void checkError(BufferedSource source) throws IOException {
+        HtmlScanner scanner = new HtmlScanner(source, false);
+        StringBuilder open = null;
+        String line;
+        while ((line = scanner.nextLine()) != null) {
+            int idx = line.indexOf(ERROR_CLASS);
+            if (idx >= 0) {
+                int tag = line.lastIndexOf('<', idx);
+                String start = tag >= 0 ? line.substring(tag) : open != null ? open.append(line).toString() : line;
+                RequestAdapter.toDocument(start + '\n' + source.readUtf8());
+                return;
+            }
+            int tag = line.lastIndexOf('<');
+            if (tag >= 0 && line.indexOf('>', tag) < 0)
+                open = new StringBuilder(line.substring(tag)).append('\n');
+            else if (open != null && line.indexOf('>') < 0)
+                open.append(line).append('\n');
+            else
+                open = null;
+        }
+    }
+
+    /**
+     * Whether the given line may belong to an error page.
+     *
+     * @param line The line to check.
+     * @return True if the line mentions the error div class.
+     */
+    static boolean isError(String line) {
+        return line.contains(ERROR_CLASS);
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import com.github.ffalcinelli.buffalo.models.WifiSettings;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoders turning a `get_json_param` response into models while it is read, through a {@link JsonStreamReader}.
+ * An already parsed response is walked by a {@link JsonTreeReader} and mapped by the same decoders.
+ * <p>
+ * Device arrays end with a {"NULL":"NULL"} element, which is skipped. Fields not needed by the models are skipped
+ * without being decoded.
+ */
+abstract class JSONParamReader<T> {
+
+    /**
+     * The DEVICE list of the DEVCTRL dataset.
+     */
+    static final JSONParamReader<List<NetworkDevice>> DEVICES = new JSONParamReader<List<NetworkDevice>>() {
+        @Override
+        List<NetworkDevice> read(JsonReader reader) throws IOException {
+            List<NetworkDevice> devices = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("DEVICE")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        NetworkDevice device = readDevice(reader);
+                        if (device != null)
+                            devices.add(device);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return devices;
+        }
+    };
+
+    /**
+     * The primary network of each radio of the WIRELESS dataset, in the order given by the device.
+     */
+    static final JSONParamReader<List<WifiSettings>> WIRELESS = new JSONParamReader<List<WifiSettings>>() {
+        @Override
+        List<WifiSettings> read(JsonReader reader) throws IOException {
+            List<WifiSettings> interfaces = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("INTERFACE")) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        WifiSettings wifi = new WifiSettings();
+                        if (readInterface(reader, wifi, true))
+                            interfaces.add(wifi);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return interfaces;
+        }
+    };
+
+    /**
+     * The guest network of the GUEST dataset.
+     */
+    static final JSONParamReader<WifiSettings> GUEST = new JSONParamReader<WifiSettings>() {
+        @Override
+        WifiSettings read(JsonReader reader) throws IOException {
+            WifiSettings guest = new WifiSettings();
+            boolean found = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "FUNCTION":
+                        guest.setEnabled(reader.nextBoolean());
+                        break;
+                    case "AUTODOWN_TIME":
+                        guest.setTime(reader.nextInt(guest.getTime()));
+                        break;
+                    case "INTERFACE":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            if (found)
+                                reader.skipValue();
+                            else
+                                found = readInterface(reader, guest, false);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return guest;
+        }
+    };
+
+    /**
+     * The FUNCTION flag of a service dataset, such as SAMBA or DLNA.
+     */
+    static final JSONParamReader<Boolean> FUNCTION_ENABLED = new JSONParamReader<Boolean>() {
+        @Override
+        Boolean read(JsonReader reader) throws IOException {
+            boolean enabled = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("FUNCTION"))
+                    enabled = reader.nextBoolean();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+            return enabled;
+        }
+    };
+
+    /**
+     * Decode a value from the given reader.
+     *
+     * @param reader The {@link JsonReader} positioned at the start of the response.
+     * @return The decoded value.
+     * @throws IOException Whenever something goes wrong reading the response.
+     */
+    abstract T read(JsonReader reader) throws IOException;
+
+    /**
+     * Decode a value already parsed, as the ones served by the {@link ResponseCache}.
+     *
+     * @param json The parsed response.
+     * @return The decoded value.
+     * @throws IOException If the response does not have the expected shape.
+     */
+    T read(JSONObject json) throws IOException {
+        return read(new JsonTreeReader(json));
+    }
+
+    private static NetworkDevice readDevice(JsonReader reader) throws IOException {
+        NetworkDevice device = new NetworkDevice();
+        boolean terminator = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "NAME":
+                    device.setName(reader.nextString());
+                    break;
+                case "IMAGE":
+                    device.setImg(reader.nextString());
+                    break;
+                case "IP":
+                    device.setIpAddress(reader.nextString());
+                    break;
+                case "MAC":
+                    device.setMacAddress(reader.nextString());
+                    break;
+                case "QOS":
+                    device.setQos(reader.nextInt(device.getQos()));
+                    break;
+                case "PARENTAL":
+                    device.setParentalEnabled(reader.nextBoolean());
+                    break;
+                case "DISCONNECT":
+                    device.setDisconnected(reader.nextBoolean());
+                    break;
+                case "NULL":
+                    terminator = true;
+                    reader.skipValue();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return terminator && device.getMacAddress() == null ? null : device;
+    }
+
+    /**
+     * Read a radio interface into the given settings, taking the first network of its MBSSID list.
+     *
+     * @param reader   The {@link JsonReader} positioned at the interface object.
+     * @param wifi     The {@link WifiSettings} to fill.
+     * @param function Whether the interface FUNCTION flag tells if the settings are enabled.
+     * @return False if the object is the array terminator.
+     * @throws IOException Whenever something goes wrong reading the response.
+     */
+    private static boolean readInterface(JsonReader reader, WifiSettings wifi, boolean function)
+            throws IOException {
+        boolean content = false;
+        boolean network = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            content |= !name.equals("NULL");
+            switch (name) {
+                case "FUNCTION":
+                    if (function)
+                        wifi.setEnabled(reader.nextBoolean());
+                    else
+                        reader.skipValue();
+                    break;
+                case "BANDWIDTH":
+                    wifi.setBw(leadingInt(reader.nextString(), "MHz"));
+                    break;
+                case "CHANNEL":
+                    wifi.setChannel(leadingInt(reader.nextString(), null));
+                    break;
+                case "MBSSID":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        if (network)
+                            reader.skipValue();
+                        else
+                            network = readNetwork(reader, wifi);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    private static boolean readNetwork(JsonReader reader, WifiSettings wifi) throws IOException {
+        boolean content = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            content |= !name.equals("NULL");
+            switch (name) {
+                case "SSID":
+                    wifi.setSsid(reader.nextString());
+                    break;
+                case "WPA_PSK":
+                    wifi.setKey(reader.nextString());
+                    break;
+                case "ENCRYPTION":
+                    wifi.setEncryptionType(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return content;
+    }
+
+    /**
+     * Parse the number of values like "11", "1-5" or "20/40MHz": the digits right before the suffix if given,
+     * the leading digits otherwise. Values like "AUTO" are 0.
+     */
+    private static int leadingInt(String value, String suffix) {
+        int end = suffix != null && value.endsWith(suffix) ? value.length() - suffix.length() : -1;
+        int start;
+        if (end >= 0) {
+            start = end;
+            while (start > 0 && Character.isDigit(value.charAt(start - 1)))
+                start--;
+        } else {
+            start = 0;
+            end = 0;
+            while (end < value.length() && Character.isDigit(value.charAt(end)))
+                end++;
+        }
+        return start < end ? Integer.parseInt(value.substring(start, end)) : 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+
+/**
+ * The merged result of several `get_json_param` requests issued at the same time.
+ * <p>
+ * Every requested {@link JSONFunction} is either in {@link #getValues()} or in {@link #getFailures()}.
+ */
+public class JSONParamSnapshot {
+
+    private final long timestamp;
+    private final Map<JSONFunction, JSONObject> values;
+    private final Map<JSONFunction, Throwable> failures;
+
+    /**
+     * Build a {@link JSONParamSnapshot}.
+     *
+     * @param timestamp The time the snapshot was completed, in milliseconds since epoch.
+     * @param values    The datasets successfully retrieved.
+     * @param failures  The failure of each dataset that could not be retrieved.
+     */
+    public JSONParamSnapshot(long timestamp, EnumMap<JSONFunction, JSONObject> values,
+                             EnumMap<JSONFunction, Throwable> failures) {
+        this.timestamp = timestamp;
+        this.values = Collections.unmodifiableMap(values);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Get the time the snapshot was completed.
+     *
+     * @return The time in milliseconds since epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the datasets successfully retrieved.
+     *
+     * @return An unmodifiable {@link Map} of the datasets.
+     */
+    public Map<JSONFunction, JSONObject> getValues() {
+        return values;
+    }
+
+    /**
+     * Get the failures of the datasets that could not be retrieved.
+     *
+     * @return An unmodifiable {@link Map} of the failures.
+     */
+    public Map<JSONFunction, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get a single dataset.
+     *
+     * @param param The dataset to get.
+     * @return The dataset, or null if it was not requested or could not be retrieved.
+     */
+    public JSONObject get(JSONFunction param) {
+        return values.get(param);
+    }
+
+    /**
+     * Whether every requested dataset has been retrieved.
+     *
+     * @return True if there are no failures, false otherwise.
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "JSONParamSnapshot{timestamp=" + timestamp + ", values=" + values.keySet() +
+                ", failures=" + failures.keySet() + "}";
+    }
+}
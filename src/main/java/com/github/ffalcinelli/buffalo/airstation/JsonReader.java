@@ -0,0 +1,89 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import java.io.IOException;
+
+/**
+ * A pull reader of JSON tokens, so that the decoders of {@link JSONParamReader} can map a response the same way
+ * whether it is streamed by a {@link JsonStreamReader} or already parsed and walked by a {@link JsonTreeReader}.
+ * <p>
+ * Values are read one token at a time: objects with {@link #beginObject()}, {@link #hasNext()},
+ * {@link #nextName()} and {@link #endObject()}, arrays with {@link #beginArray()} and {@link #endArray()}, and
+ * whatever is not needed with {@link #skipValue()}. Scalars are read leniently, as `opt*` methods of org.json do:
+ * a quoted number is a number and a "true" string is a boolean.
+ */
+abstract class JsonReader {
+
+    enum Token {BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT}
+
+    /**
+     * Look the next token up without consuming it.
+     *
+     * @return The next {@link Token}.
+     * @throws IOException Whenever something goes wrong reading the source.
+     */
+    abstract Token peek() throws IOException;
+
+    abstract void beginObject() throws IOException;
+
+    abstract void endObject() throws IOException;
+
+    abstract void beginArray() throws IOException;
+
+    abstract void endArray() throws IOException;
+
+    abstract String nextName() throws IOException;
+
+    /**
+     * Read a scalar value as a String. Numbers, booleans and null are returned as they are written.
+     *
+     * @return The value.
+     * @throws IOException Whenever something goes wrong reading the source or the value is not a scalar.
+     */
+    abstract String nextString() throws IOException;
+
+    /**
+     * Skip the next value, however nested.
+     *
+     * @throws IOException Whenever something goes wrong reading the source.
+     */
+    abstract void skipValue() throws IOException;
+
+    /**
+     * Whether the current object or array has more elements.
+     *
+     * @return False at the end of the object or array.
+     * @throws IOException Whenever something goes wrong reading the source.
+     */
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    boolean nextBoolean() throws IOException {
+        return Boolean.parseBoolean(nextString());
+    }
+
+    /**
+     * Read an integer value, using the given default when the value is not a number.
+     *
+     * @param defaultValue The value to return for non numeric values.
+     * @return The value read.
+     * @throws IOException Whenever something goes wrong reading the source.
+     */
+    int nextInt(int defaultValue) throws IOException {
+        return (int) nextLong(defaultValue);
+    }
+
+    long nextLong(long defaultValue) throws IOException {
+        String value = nextString();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException notNumber) {
+                return defaultValue;
+            }
+        }
+    }
+}
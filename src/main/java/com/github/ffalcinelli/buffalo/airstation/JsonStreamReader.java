@@ -0,0 +1,249 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+
+/**
+ * A {@link JsonReader} reading JSON straight from a {@link BufferedSource}, so that a response can be decoded into
+ * models without building the body String and the {@link org.json.JSONObject} tree first.
+ */
+final class JsonStreamReader extends JsonReader {
+
+    private static final ByteString STRING_END = ByteString.encodeUtf8("\"\\");
+    private static final ByteString LITERAL_END = ByteString.encodeUtf8(",:]} \t\r\n");
+
+    private static final int DOCUMENT = 0;
+    private static final int ARRAY = 1;
+    private static final int OBJECT_NAME = 2;
+    private static final int OBJECT_VALUE = 3;
+
+    private final BufferedSource source;
+    private final Buffer buffer;
+    private int[] scopes = new int[16];
+    private int depth = 1;
+
+    /**
+     * Build a reader over the given source.
+     *
+     * @param source The {@link BufferedSource} holding the JSON text.
+     */
+    JsonStreamReader(BufferedSource source) {
+        this.source = source;
+        this.buffer = source.buffer();
+        scopes[0] = DOCUMENT;
+    }
+
+    @Override
+    Token peek() throws IOException {
+        while (source.request(1)) {
+            byte b = buffer.getByte(0);
+            switch (b) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                case ',':
+                case ':':
+                    buffer.skip(1);
+                    continue;
+                case '{':
+                    return Token.BEGIN_OBJECT;
+                case '}':
+                    return Token.END_OBJECT;
+                case '[':
+                    return Token.BEGIN_ARRAY;
+                case ']':
+                    return Token.END_ARRAY;
+                case '"':
+                    return scopes[depth - 1] == OBJECT_NAME ? Token.NAME : Token.STRING;
+                case 't':
+                case 'f':
+                    return Token.BOOLEAN;
+                case 'n':
+                    return Token.NULL;
+                default:
+                    return Token.NUMBER;
+            }
+        }
+        return Token.END_DOCUMENT;
+    }
+
+    @Override
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        buffer.skip(1);
+        valueRead();
+        push(OBJECT_NAME);
+    }
+
+    @Override
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        buffer.skip(1);
+        depth--;
+    }
+
+    @Override
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        buffer.skip(1);
+        valueRead();
+        push(ARRAY);
+    }
+
+    @Override
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        buffer.skip(1);
+        depth--;
+    }
+
+    @Override
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        buffer.skip(1);
+        String name = readQuoted();
+        scopes[depth - 1] = OBJECT_VALUE;
+        return name;
+    }
+
+    @Override
+    String nextString() throws IOException {
+        Token token = peek();
+        String value;
+        if (token == Token.STRING) {
+            buffer.skip(1);
+            value = readQuoted();
+        } else if (token == Token.NUMBER || token == Token.BOOLEAN || token == Token.NULL) {
+            value = readLiteral();
+        } else {
+            throw new AirStationException("Expected a value but was " + token);
+        }
+        valueRead();
+        return value;
+    }
+
+    @Override
+    void skipValue() throws IOException {
+        Token token = peek();
+        if (token == Token.BEGIN_OBJECT) {
+            beginObject();
+            while (hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        } else if (token == Token.BEGIN_ARRAY) {
+            beginArray();
+            while (hasNext())
+                skipValue();
+            endArray();
+        } else if (token == Token.NAME) {
+            nextName();
+        } else if (token == Token.STRING) {
+            buffer.skip(1);
+            skipQuoted();
+            valueRead();
+        } else if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT) {
+            throw new AirStationException("Expected a value but was " + token);
+        } else {
+            long index = source.indexOfElement(LITERAL_END);
+            if (index == -1) {
+                while (source.request(1))
+                    buffer.clear();
+            } else {
+                buffer.skip(index);
+            }
+            valueRead();
+        }
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected)
+            throw new AirStationException("Expected " + expected + " but was " + token);
+    }
+
+    private void push(int scope) {
+        if (depth == scopes.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(scopes, 0, grown, 0, depth);
+            scopes = grown;
+        }
+        scopes[depth++] = scope;
+    }
+
+    private void valueRead() {
+        if (scopes[depth - 1] == OBJECT_VALUE)
+            scopes[depth - 1] = OBJECT_NAME;
+    }
+
+    private String readQuoted() throws IOException {
+        StringBuilder sb = null;
+        while (true) {
+            long index = source.indexOfElement(STRING_END);
+            if (index == -1)
+                throw new AirStationException("Unterminated string");
+            if (buffer.getByte(index) == '"') {
+                String chunk = buffer.readUtf8(index);
+                buffer.skip(1);
+                return sb == null ? chunk : sb.append(chunk).toString();
+            }
+            if (sb == null)
+                sb = new StringBuilder();
+            sb.append(buffer.readUtf8(index));
+            buffer.skip(1);
+            sb.append(readEscape());
+        }
+    }
+
+    private void skipQuoted() throws IOException {
+        while (true) {
+            long index = source.indexOfElement(STRING_END);
+            if (index == -1)
+                throw new AirStationException("Unterminated string");
+            boolean quote = buffer.getByte(index) == '"';
+            buffer.skip(index + 1);
+            if (quote)
+                return;
+            // Skip the escaped character, unicode digits are skipped as plain characters.
+            source.skip(1);
+        }
+    }
+
+    private char readEscape() throws IOException {
+        if (!source.request(1))
+            throw new AirStationException("Unterminated escape sequence");
+        byte escaped = buffer.readByte();
+        switch (escaped) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                source.require(4);
+                try {
+                    return (char) Integer.parseInt(buffer.readUtf8(4), 16);
+                } catch (NumberFormatException e) {
+                    throw new AirStationException("Malformed unicode escape");
+                }
+            default:
+                return (char) escaped;
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        long index = source.indexOfElement(LITERAL_END);
+        return index == -1 ? source.readUtf8() : buffer.readUtf8(index);
+    }
+}
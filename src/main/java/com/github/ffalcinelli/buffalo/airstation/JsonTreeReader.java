@@ -0,0 +1,134 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * A {@link JsonReader} walking an already parsed {@link JSONObject}, as the ones served by the {@link ResponseCache},
+ * so that it is decoded by the very same mapping as a streamed response without being written out again.
+ * <p>
+ * The members of an object are read in the order of {@link JSONObject#keys()}, which is not the order of the text.
+ */
+final class JsonTreeReader extends JsonReader {
+
+    private final Deque<Object> stack = new ArrayDeque<>();
+
+    /**
+     * Build a reader over the given tree.
+     *
+     * @param json The {@link JSONObject} to walk.
+     */
+    JsonTreeReader(JSONObject json) {
+        stack.push(json);
+    }
+
+    @Override
+    Token peek() throws IOException {
+        Object top = stack.peek();
+        if (top == null)
+            return Token.END_DOCUMENT;
+        if (top instanceof ObjectCursor)
+            return ((ObjectCursor) top).names.hasNext() ? Token.NAME : Token.END_OBJECT;
+        if (top instanceof ArrayCursor) {
+            ArrayCursor cursor = (ArrayCursor) top;
+            if (cursor.index == cursor.array.length())
+                return Token.END_ARRAY;
+            top = cursor.array.opt(cursor.index++);
+            stack.push(top);
+        }
+        if (top instanceof JSONObject)
+            return Token.BEGIN_OBJECT;
+        if (top instanceof JSONArray)
+            return Token.BEGIN_ARRAY;
+        if (top instanceof Boolean)
+            return Token.BOOLEAN;
+        if (top instanceof Number)
+            return Token.NUMBER;
+        if (top == JSONObject.NULL)
+            return Token.NULL;
+        return Token.STRING;
+    }
+
+    @Override
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        stack.push(new ObjectCursor((JSONObject) stack.pop()));
+    }
+
+    @Override
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        stack.pop();
+    }
+
+    @Override
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        stack.push(new ArrayCursor((JSONArray) stack.pop()));
+    }
+
+    @Override
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        stack.pop();
+    }
+
+    @Override
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        ObjectCursor cursor = (ObjectCursor) stack.peek();
+        String name = cursor.names.next();
+        stack.push(cursor.object.opt(name));
+        return name;
+    }
+
+    @Override
+    String nextString() throws IOException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN && token != Token.NULL)
+            throw new AirStationException("Expected a value but was " + token);
+        return String.valueOf(stack.pop());
+    }
+
+    @Override
+    void skipValue() throws IOException {
+        Token token = peek();
+        if (token == Token.NAME)
+            nextName();
+        else if (token == Token.END_OBJECT || token == Token.END_ARRAY || token == Token.END_DOCUMENT)
+            throw new AirStationException("Expected a value but was " + token);
+        else
+            stack.pop();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected)
+            throw new AirStationException("Expected " + expected + " but was " + token);
+    }
+
+    private static final class ObjectCursor {
+        private final JSONObject object;
+        private final Iterator<String> names;
+
+        private ObjectCursor(JSONObject object) {
+            this.object = object;
+            this.names = object.keys();
+        }
+    }
+
+    private static final class ArrayCursor {
+        private final JSONArray array;
+        private int index;
+
+        private ArrayCursor(JSONArray array) {
+            this.array = array;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import org.jsoup.nodes.Document;
+
+import java.io.IOException;
+
+/**
+ * The values a login needs from the device home page: the session tokens and the RSA key material.
+ * <p>
+ * {@link #read(BufferedSource)} scans the raw HTML for the few values needed, avoiding a full DOM parse, while
+ * {@link #parse(Document)} reads them from an already parsed {@link Document}.
+ */
+final class LoginPage {
+
+    /**
+     * A home page which is not the login page, the session is still valid.
+     */
+    static final LoginPage NOT_LOGIN = new LoginPage(null, null, null, null);
+
+    private static final String EXP_PATTERN = "exponent = \"";
+    private static final String MOD_PATTERN = "modulus = \"";
+
+    final String webSessionId;
+    final String webSessionNum;
+    final String exponent;
+    final String modulus;
+
+    private LoginPage(String webSessionId, String webSessionNum, String exponent, String modulus) {
+        this.webSessionId = webSessionId;
+        this.webSessionNum = webSessionNum;
+        this.exponent = exponent;
+        this.modulus = modulus;
+    }
+
+    /**
+     * Whether the page is the login page.
+     *
+     * @return True if a login is required.
+     */
+    boolean isLogin() {
+        return this != NOT_LOGIN;
+    }
+
+    /**
+     * Read the login values from the home page body. The values are extracted while streaming the body, which is not
+     * scanned any further once they are found; a full Jsoup parse is done only if they cannot be found.
+     *
+     * @param source The home page body.
+     * @return The {@link LoginPage}.
+     * @throws IOException Whenever the page reports an error or something goes wrong reading the body.
+     */
+    static LoginPage read(BufferedSource source) throws IOException {
+        HtmlScanner scanner = new HtmlScanner(source, true);
+        LoginPage page = extract(scanner);
+        if (page == null)
+            return parse(RequestAdapter.toDocument(scanner.remainder()));
+        scanner.drain();
+        return page;
+    }
+
+    /**
+     * Extract the login values by scanning the raw HTML.
+     *
+     * @param html The home page HTML.
+     * @return The {@link LoginPage}, or null if the values could not be found and a full parse is needed.
+     * @throws IOException Never thrown, the HTML is already in memory.
+     */
+    static LoginPage extract(String html) throws IOException {
+        return extract(new HtmlScanner(new Buffer().writeUtf8(html), false));
+    }
+
+    private static LoginPage extract(HtmlScanner scanner) throws IOException {
+        StringBuilder title = null;
+        boolean titleDone = false;
+        String webSessionId = null;
+        String webSessionNum = null;
+        String exponent = null;
+        String modulus = null;
+        String line;
+        while ((line = scanner.nextLine()) != null) {
+            // Error pages must be reported by the full parse.
+            if (HtmlScanner.isError(line))
+                return null;
+            if (!titleDone) {
+                String lower = line.toLowerCase();
+                int start = 0;
+                if (title == null) {
+                    start = lower.indexOf("<title>");
+                    if (start >= 0) {
+                        title = new StringBuilder();
+                        start += "<title>".length();
+                    }
+                }
+                if (title != null && start >= 0) {
+                    int end = lower.indexOf("</title>", start);
+                    title.append(line, start, end >= 0 ? end : line.length());
+                    if (end >= 0) {
+                        titleDone = true;
+                        if (!title.toString().trim().equalsIgnoreCase("login"))
+                            return NOT_LOGIN;
+                    }
+                }
+            }
+            if (webSessionId == null)
+                webSessionId = inputValue(line, "sWebSessionid");
+            if (webSessionNum == null)
+                webSessionNum = inputValue(line, "sWebSessionnum");
+            if (exponent == null)
+                exponent = quoted(line, EXP_PATTERN);
+            if (modulus == null)
+                modulus = quoted(line, MOD_PATTERN);
+            if (titleDone && webSessionId != null && webSessionNum != null && exponent != null && modulus != null)
+                return new LoginPage(webSessionId, webSessionNum, exponent, modulus);
+        }
+        return null;
+    }
+
+    /**
+     * Read the login values from a parsed home page.
+     *
+     * @param doc The home page {@link Document}.
+     * @return The {@link LoginPage}.
+     */
+    static LoginPage parse(Document doc) {
+        if (!RequestAdapter.isLoginPage(doc))
+            return NOT_LOGIN;
+        String data = doc.data();
+        return new LoginPage(
+                doc.getElementsByAttributeValue("name", "sWebSessionid").first().attr("value"),
+                doc.getElementsByAttributeValue("name", "sWebSessionnum").first().attr("value"),
+                quoted(data, EXP_PATTERN),
+                quoted(data, MOD_PATTERN));
+    }
+
+    private static String quoted(String text, String pattern) {
+        int start = text.indexOf(pattern);
+        if (start < 0)
+            return null;
+        start += pattern.length();
+        int end = text.indexOf('"', start);
+        return end < 0 ? null : text.substring(start, end);
+    }
+
+    private static String inputValue(String html, String name) {
+        int idx = html.indexOf("name=\"" + name + "\"");
+        if (idx < 0)
+            return null;
+        int tagStart = html.lastIndexOf('<', idx);
+        int tagEnd = html.indexOf('>', idx);
+        if (tagStart < 0 || tagEnd < 0)
+            return null;
+        return quoted(html.substring(tagStart, tagEnd), "value=\"");
+    }
+}
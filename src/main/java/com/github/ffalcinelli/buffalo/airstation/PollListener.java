@@ -0,0 +1,29 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import org.json.JSONObject;
+
+/**
+ * Interface to receive the results of an {@link AirStationPoller}.
+ */
+public interface PollListener {
+
+    /**
+     * Called with the result of each successful poll.
+     *
+     * @param airStation The polled device.
+     * @param param      The polled JSON param.
+     * @param data       The data received, read only.
+     * @param changed    Whether the data differs from the previous poll (false on the first poll).
+     */
+    void onResult(AirStation airStation, JSONFunction param, JSONObject data, boolean changed);
+
+    /**
+     * Called when a poll fails.
+     *
+     * @param airStation The polled device.
+     * @param param      The polled JSON param.
+     * @param t          The failure cause.
+     */
+    void onFailure(AirStation airStation, JSONFunction param, Throwable t);
+}
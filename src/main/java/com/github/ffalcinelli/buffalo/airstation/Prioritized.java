@@ -0,0 +1,19 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+/**
+ * Interface to give an asynchronous operation a priority and a deadline. An {@link AsyncCallback} implementing it
+ * is scheduled by the device {@link Bulkhead} accordingly: interactive requests are sent before background ones, and
+ * requests still waiting for a slot past their deadline are dropped, failing with a
+ * {@link com.github.ffalcinelli.buffalo.exception.DeadlineExceededException}.
+ */
+public interface Prioritized {
+
+    Bulkhead.Priority getPriority();
+
+    /**
+     * Get the time after which the request must not be sent anymore.
+     *
+     * @return The deadline in milliseconds since the epoch, or 0 for no deadline.
+     */
+    long getDeadline();
+}
@@ -0,0 +1,120 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.ffalcinelli.buffalo.airstation.ReadOnlyJSONObject.readOnlyError;
+
+/**
+ * A {@link JSONArray} which can not be changed once built, the array counterpart of {@link ReadOnlyJSONObject}.
+ */
+final class ReadOnlyJSONArray extends JSONArray {
+
+    private final List<Object> values;
+
+    private ReadOnlyJSONArray(JSONArray array) {
+        List<Object> values = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            Object value = ReadOnlyJSONObject.readOnly(array.opt(i));
+            super.put(value);
+            values.add(value);
+        }
+        this.values = Collections.unmodifiableList(values);
+    }
+
+    /**
+     * Get a read only copy of the given array.
+     *
+     * @param array The {@link JSONArray} to copy.
+     * @return The read only {@link JSONArray}, the given one if already read only.
+     */
+    static JSONArray of(JSONArray array) {
+        return array instanceof ReadOnlyJSONArray ? array : new ReadOnlyJSONArray(array);
+    }
+
+    @Override
+    public JSONArray put(boolean value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(Collection<?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(double value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(long value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(Map<?, ?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, boolean value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, Collection<?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, double value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, int value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, long value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, Map<?, ?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONArray put(int index, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public Object remove(int index) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return values.iterator();
+    }
+}
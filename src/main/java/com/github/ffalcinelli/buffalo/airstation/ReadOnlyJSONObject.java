@@ -0,0 +1,126 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link JSONObject} which can not be changed once built, nested objects and arrays included, so that a parsed
+ * `get_json_param` response can be handed to many callers. Every method changing the object throws an
+ * {@link UnsupportedOperationException}; a copy to edit can be made with {@code new JSONObject(json.toString())}.
+ */
+final class ReadOnlyJSONObject extends JSONObject {
+
+    private ReadOnlyJSONObject(JSONObject json) {
+        for (String key : json.keySet())
+            super.put(key, readOnly(json.opt(key)));
+    }
+
+    /**
+     * Get a read only copy of the given object.
+     *
+     * @param json The {@link JSONObject} to copy.
+     * @return The read only {@link JSONObject}, the given one if already read only.
+     */
+    static JSONObject of(JSONObject json) {
+        return json instanceof ReadOnlyJSONObject ? json : new ReadOnlyJSONObject(json);
+    }
+
+    /**
+     * Get a read only copy of the given value, if it is an object or an array.
+     *
+     * @param value The value to copy.
+     * @return The read only value.
+     */
+    static Object readOnly(Object value) {
+        if (value instanceof JSONObject)
+            return of((JSONObject) value);
+        if (value instanceof JSONArray)
+            return ReadOnlyJSONArray.of((JSONArray) value);
+        return value;
+    }
+
+    static UnsupportedOperationException readOnlyError() {
+        return new UnsupportedOperationException("The device data is read only, copy it to make changes");
+    }
+
+    @Override
+    public JSONObject accumulate(String key, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject append(String key, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject increment(String key) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, boolean value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, Collection<?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, double value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, int value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, long value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, Map<?, ?> value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject put(String key, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject putOnce(String key, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public JSONObject putOpt(String key, Object value) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public Object remove(String key) {
+        throw readOnlyError();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return Collections.unmodifiableSet(super.keySet());
+    }
+
+    @Override
+    public Iterator<String> keys() {
+        return keySet().iterator();
+    }
+}
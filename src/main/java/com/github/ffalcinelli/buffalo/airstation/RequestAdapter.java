@@ -1,27 +1,32 @@
 package com.github.ffalcinelli.buffalo.airstation;
 
+import com.github.ffalcinelli.buffalo.crypto.Encryptor;
+import com.github.ffalcinelli.buffalo.crypto.JCARsa;
 import com.github.ffalcinelli.buffalo.crypto.JSRsa;
 import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import com.github.ffalcinelli.buffalo.exception.SessionExpiredException;
 import com.github.ffalcinelli.buffalo.models.NasSettings;
 import com.github.ffalcinelli.buffalo.models.NetworkDevice;
 import com.github.ffalcinelli.buffalo.models.WifiSettings;
 import com.github.ffalcinelli.buffalo.utils.Utils;
 import okhttp3.*;
+import okio.Buffer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -37,11 +42,26 @@ public class RequestAdapter implements Closeable {
     public static final String DEFAULT_ENCODING = "utf-8";
     public static final String DEFAULT_USERNAME = "admin";
     public static final String DEFAULT_PASSWORD = "password";
-
-    private String url;
-    private String encoding;
-    private String webSessionId;
-    private String webSessionNum;
+    public static final String JS_ENCRYPTOR = "js";
+    public static final String JCA_ENCRYPTOR = "jca";
+    public static final String DEFAULT_ENCRYPTOR = JS_ENCRYPTOR;
+
+    private static final int MAX_FRM_TEMPLATES = 64;
+    private static final RequestBody EMPTY_FORM = RequestBody.create(FORM, new byte[0]);
+
+    private final String url;
+    private final String encoding;
+    private final Charset charset;
+    private final String encryptor;
+    private final AtomicReference<Session> session = new AtomicReference<>(Session.NONE);
+    private final HttpUrl homeUrl;
+    private final HttpUrl loginUrl;
+    private final HttpUrl logoutUrl;
+    private final HttpUrl fncUrl;
+    private final HttpUrl setUrl;
+    private final Map<JSONFunction, String> fncPrefixes = new EnumMap<>(JSONFunction.class);
+    private final ConcurrentMap<String, HttpUrl> frmUrls = new ConcurrentHashMap<>();
+    private volatile CachedKey key;
 
     /**
      * Construct a {@link RequestAdapter} for the given url.
@@ -50,30 +70,49 @@ public class RequestAdapter implements Closeable {
      * @param encoding The encoding.
      */
     public RequestAdapter(String url, String encoding) {
+        this(url, encoding, DEFAULT_ENCRYPTOR);
+    }
+
+    /**
+     * Construct a {@link RequestAdapter} for the given url.
+     *
+     * @param url       The AirStation url.
+     * @param encoding  The encoding.
+     * @param encryptor The {@link Encryptor} implementation to encrypt the login password with: {@link #JS_ENCRYPTOR}
+     *                  for {@link JSRsa} or {@link #JCA_ENCRYPTOR} for {@link JCARsa}.
+     */
+    public RequestAdapter(String url, String encoding, String encryptor) {
+        if (!JS_ENCRYPTOR.equals(encryptor) && !JCA_ENCRYPTOR.equals(encryptor))
+            throw new IllegalArgumentException("Unknown encryptor " + encryptor);
         this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
         this.encoding = encoding;
+        this.charset = lookupCharset(encoding);
+        this.encryptor = encryptor;
+        // URLs are parsed once, each request only adds its cache busting parameter.
+        HttpUrl cgi = HttpUrl.parse(this.url + "/cgi-bin/cgi");
+        if (cgi == null)
+            throw new IllegalArgumentException("Invalid AirStation url " + url);
+        this.homeUrl = cgi.newBuilder().addQueryParameter("req", "twz").build();
+        this.loginUrl = cgi.newBuilder().addQueryParameter("req", "inp").addQueryParameter("res", "login.html").build();
+        this.logoutUrl = homeUrl.newBuilder().addQueryParameter("frm", "logout.html").build();
+        this.fncUrl = cgi.newBuilder().addQueryParameter("req", "fnc").build();
+        this.setUrl = cgi.newBuilder().addQueryParameter("req", "set").build();
+        for (JSONFunction param : JSONFunction.values())
+            fncPrefixes.put(param, fncPrefix(param.name()));
+    }
+
+    private static String fncPrefix(String param) {
+        return "%24{get_json_param(" + param + ",";
     }
 
     /**
      * Get a default, non persistent, {@link CookieJar} implementation.
      *
      * @return The {@link CookieJar} implementation.
+     * @see HostCookieJar
      */
     public static CookieJar getDefaultCookieJar() {
-        return new CookieJar() {
-            private final HashMap<HttpUrl, List<Cookie>> cookieStore = new HashMap<>();
-
-            @Override
-            public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
-                cookieStore.put(url, cookies);
-            }
-
-            @Override
-            public List<Cookie> loadForRequest(HttpUrl url) {
-                List<Cookie> cookies = cookieStore.get(url);
-                return cookies != null ? cookies : new ArrayList<Cookie>();
-            }
-        };
+        return new HostCookieJar();
     }
 
     /**
@@ -84,8 +123,18 @@ public class RequestAdapter implements Closeable {
      * @throws AirStationException Whenever something goes wrong getting or parsing the response.
      */
     static Document responseToDocument(Response response) throws IOException {
-        Document doc = null;
-        doc = Jsoup.parse(response.body().string());
+        return toDocument(response.body().string());
+    }
+
+    /**
+     * Transform an HTML page into a {@link Document}.
+     *
+     * @param html The HTML to parse.
+     * @return A {@link Document} representing the page.
+     * @throws AirStationException If the page reports an error.
+     */
+    static Document toDocument(String html) throws AirStationException {
+        Document doc = Jsoup.parse(html);
         Element div = doc.getElementsByAttributeValue("class", "errortxt").first();
         if (div != null)
             throw new AirStationException(div.text());
@@ -93,22 +142,59 @@ public class RequestAdapter implements Closeable {
     }
 
     /**
-     * From a map of String,String pairs, produce a form encoded string (key1=value1&key2=value2&...).
+     * Whether the given document is the device login page.
+     *
+     * @param doc The {@link Document} to check.
+     * @return True if the document is the login page, false otherwise.
+     */
+    static boolean isLoginPage(Document doc) {
+        Element title = doc.getElementsByTag("title").first();
+        return title != null && title.text().equalsIgnoreCase("login");
+    }
+
+    /**
+     * Check that a response body, expected to need a valid session, is not the login page.
+     *
+     * @param body The response body.
+     * @throws SessionExpiredException If the body is the login page.
+     * @throws IOException             Whenever something goes wrong reading the body.
+     */
+    static void checkSession(String body) throws IOException {
+        checkSession(new HtmlScanner(new Buffer().writeUtf8(body), true));
+    }
+
+    /**
+     * Check that a response body, expected to need a valid session, is not the login page, scanning it up to its
+     * title as told by {@link HtmlScanner#isLoginPage()}.
      *
-     * @param params   The Map&lt;String, String&gt; to get parameters from.
-     * @param encoding The encoding to use.
-     * @return A String form encoded.
-     * @throws UnsupportedEncodingException If the specified encoding is not supported.
+     * @param scanner The recording {@link HtmlScanner} over the response body.
+     * @throws SessionExpiredException If the body is the login page.
+     * @throws IOException             Whenever something goes wrong reading the body.
      */
-    static String mapToFormEncoded(Map<String, String> params, String encoding) throws UnsupportedEncodingException {
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            sb.append(URLEncoder.encode(entry.getKey(), encoding))
-                    .append("=")
-                    .append(URLEncoder.encode(entry.getValue(), encoding)).append("&");
+    static void checkSession(HtmlScanner scanner) throws IOException {
+        if (scanner.isLoginPage())
+            throw new SessionExpiredException("The device session has expired");
+    }
+
+    private static Charset lookupCharset(String encoding) {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            // Reported by getCharset() when a form is encoded, as URLEncoder did.
+            return null;
         }
-        sb.deleteCharAt(sb.length() - 1);
-        return sb.toString();
+    }
+
+    /**
+     * Get the {@link Charset} form parameters are encoded with.
+     *
+     * @return The {@link Charset}.
+     * @throws UnsupportedEncodingException If the encoding is not supported.
+     */
+    private Charset getCharset() throws UnsupportedEncodingException {
+        if (charset == null)
+            throw new UnsupportedEncodingException(encoding);
+        return charset;
     }
 
     /**
@@ -118,48 +204,77 @@ public class RequestAdapter implements Closeable {
      */
     public Request getHomeRequest() {
         return new Request.Builder()
-                .url(String.format("%s/cgi-bin/cgi?req=twz", url))
+                .url(homeUrl)
                 .build();
     }
 
     /**
      * After having received the home page, build the subsequent login {@link Request}.
+     * <p>
+     * The session tokens and the RSA key are extracted while streaming the page, falling back to a full parse only
+     * when they cannot be found. The encryptor is cached by modulus, so it is built again only when the device rotates its key.
+     * <p>
+     * The new session is carried by the request and published by {@link #toLoginResponse(Response)} only once the
+     * device accepts the login, so that requests sent meanwhile keep the session they are recovering from.
      *
      * @param username     The username to use while forging the request.
      * @param password     The password to use while forging the request.
      * @param homeResponse The response got for a previous call to the home page.
-     * @return The login {@link Request}.
+     * @return The login {@link Request}, or null if the home page is not the login page.
      * @throws IOException          Whenever and error occurs while parsing the response.
      * @throws UnsupportedEncodingException If an unsupported encoding is specified to encode FORM parameters.
      */
     public Request doLoginFromHomeResponse(String username, String password, Response homeResponse) throws IOException {
-        Document doc = null;
-        doc = responseToDocument(homeResponse);
-        if (doc.getElementsByTag("title").first().text().equalsIgnoreCase("login")) {
-            Map<String, String> params = new HashMap<>();
-            params.put("lang", "auto");
-            params.put("airstation_uname", username);
-            webSessionId = doc.getElementsByAttributeValue("name", "sWebSessionid").first().attr("value");
-            webSessionNum = doc.getElementsByAttributeValue("name", "sWebSessionnum").first().attr("value");
-            params.put("sWebSessionnum", webSessionNum);
-            params.put("sWebSessionid", webSessionId);
-            String data = doc.data();
-            final String EXP_PATTERN = "exponent = \"";
-            final String MOD_PATTERN = "modulus = \"";
-            int expIdx = data.indexOf(EXP_PATTERN);
-            int modIdx = data.indexOf(MOD_PATTERN);
-            JSRsa JSRsa = new JSRsa(data.substring(expIdx + EXP_PATTERN.length(),
-                    data.indexOf("\"", expIdx + EXP_PATTERN.length())),
-                    data.substring(modIdx + MOD_PATTERN.length(),
-                            data.indexOf("\"", modIdx + MOD_PATTERN.length())));
-            params.put("encrypted", JSRsa.encrypt("airstation_pass=" + password));
-            RequestBody body = RequestBody.create(FORM, mapToFormEncoded(params, encoding));
-            return new Request.Builder()
-                    .url(String.format("%s/cgi-bin/cgi?req=inp&res=login.html", url))
-                    .post(body)
-                    .build();
+        LoginPage page = LoginPage.read(homeResponse.body().source());
+        if (!page.isLogin())
+            return null;
+        Session session = new Session(page.webSessionId, page.webSessionNum);
+        RequestBody body = new FormRequestBody.Builder(getCharset())
+                .addEncoded("lang", "auto")
+                .add("airstation_uname", username)
+                .add("sWebSessionnum", session.getWebSessionNum())
+                .add("sWebSessionid", session.getWebSessionId())
+                .add("encrypted", getEncryptor(page.exponent, page.modulus).encrypt("airstation_pass=" + password))
+                .build();
+        return new Request.Builder()
+                .url(loginUrl)
+                .post(body)
+                .tag(session)
+                .build();
+    }
+
+    /**
+     * Check the response to a login {@link Request} built by {@link #doLoginFromHomeResponse(String, String, Response)}
+     * and publish the session it carries.
+     *
+     * @param response The login {@link Response}.
+     * @return a {@link JSONObject} {"RESULT": "OK"} if the login was accepted.
+     * @throws IOException If the device reports an error.
+     */
+    public JSONObject toLoginResponse(Response response) throws IOException {
+        JSONObject result = toJSONResponse(response);
+        Object tag = response.request().tag();
+        if (tag instanceof Session)
+            session.set((Session) tag);
+        return result;
+    }
+
+    /**
+     * Get the {@link Encryptor} for the given key, reusing the cached one if the modulus did not change.
+     *
+     * @param exponent The exponent (Integer string representation).
+     * @param modulus  The modulus (hex string).
+     * @return The {@link Encryptor}.
+     */
+    Encryptor getEncryptor(String exponent, String modulus) {
+        CachedKey key = this.key;
+        if (key == null || !key.modulus.equals(modulus) || !key.exponent.equals(exponent)) {
+            key = new CachedKey(exponent, modulus, JCA_ENCRYPTOR.equals(encryptor)
+                    ? new JCARsa(exponent, modulus)
+                    : new JSRsa(exponent, modulus));
+            this.key = key;
         }
-        return null;
+        return key.encryptor;
     }
 
     /**
@@ -169,14 +284,23 @@ public class RequestAdapter implements Closeable {
      */
     public Request getLogoutRequest() {
         return new Request.Builder()
-                .url(String.format("%s/cgi-bin/cgi?req=twz&frm=logout.html", url))
+                .url(logoutUrl)
                 .build();
     }
 
     @Override
     public void close() throws IOException {
-        webSessionId = null;
-        webSessionNum = null;
+        session.set(Session.NONE);
+    }
+
+    /**
+     * Get the current session. The returned {@link Session} is immutable, so that all of its values belong to the
+     * same login even if another thread logs in or out meanwhile.
+     *
+     * @return The current {@link Session}, {@link Session#NONE} if not logged in.
+     */
+    public Session getSession() {
+        return session.get();
     }
 
     /**
@@ -186,10 +310,26 @@ public class RequestAdapter implements Closeable {
      * @return The {@link Request}.
      */
     public Request getJSONParamRequest(String param) {
-        RequestBody requestBody = RequestBody.create(FORM, "");
+        return fncRequest(fncPrefix(param));
+    }
+
+    /**
+     * Build a {@link Request} to retrieve a given JSON dataset.
+     *
+     * @param param The dataset to retrieve.
+     * @return The {@link Request}.
+     */
+    public Request getJSONParamRequest(JSONFunction param) {
+        return fncRequest(fncPrefixes.get(param));
+    }
+
+    private Request fncRequest(String fncPrefix) {
+        HttpUrl url = fncUrl.newBuilder()
+                .addEncodedQueryParameter("fnc", fncPrefix + System.currentTimeMillis() + ")}")
+                .build();
         return new Request.Builder()
-                .url(String.format("%s/cgi-bin/cgi?req=fnc&fnc=%%24{get_json_param(%s,%d)}", url, param, System.currentTimeMillis()))
-                .post(requestBody)
+                .url(url)
+                .post(EMPTY_FORM)
                 .build();
     }
 
@@ -201,9 +341,11 @@ public class RequestAdapter implements Closeable {
      * @throws UnsupportedEncodingException If the encoding used to format parameters is not supported.
      */
     public Request getSETRequest(Map<String, String> params) throws UnsupportedEncodingException {
-        RequestBody requestBody = RequestBody.create(FORM, mapToFormEncoded(params, encoding));
+        RequestBody requestBody = FormRequestBody.of(params, getCharset());
         return new Request.Builder()
-                .url(String.format("%s/cgi-bin/cgi?req=set&t=%d", url, System.currentTimeMillis()))
+                .url(setUrl.newBuilder()
+                        .addQueryParameter("t", String.valueOf(System.currentTimeMillis()))
+                        .build())
                 .post(requestBody)
                 .build();
     }
@@ -215,8 +357,18 @@ public class RequestAdapter implements Closeable {
      * @return The {@link Request}.
      */
     public Request getFRMRequest(String frm) {
+        HttpUrl template = frmUrls.get(frm);
+        if (template == null) {
+            template = HttpUrl.parse(String.format("%s/cgi-bin/cgi?req=frm&frm=%s", url, frm));
+            if (template == null)
+                throw new IllegalArgumentException("Invalid form page " + frm);
+            if (frmUrls.size() < MAX_FRM_TEMPLATES)
+                frmUrls.putIfAbsent(frm, template);
+        }
         return new Request.Builder()
-                .url(String.format("%s/cgi-bin/cgi?req=frm&frm=%s&rnd=%d", url, frm, Utils.getRandomInt(8)))
+                .url(template.newBuilder()
+                        .addQueryParameter("rnd", String.valueOf(Utils.getRandomInt(8)))
+                        .build())
                 .build();
     }
 
@@ -398,26 +550,34 @@ public class RequestAdapter implements Closeable {
      *
      * @param response The {@link Response} containing the DHCP reservation table.
      * @return A {@link JSONArray} with the DHCP reservation table.
-     * @throws AirStationException Whenever something goes wrong getting or parsing the response.
+     * @throws SessionExpiredException If the device answered with the login page.
+     * @throws AirStationException     Whenever something goes wrong getting or parsing the response.
      */
     public JSONArray toDhcpEntries(Response response) throws IOException {
-        Document doc = responseToDocument(response);
-        Element table = doc.getElementsByAttributeValue("class", "AD_LIST").first();
         JSONArray entries = new JSONArray();
-        for (Element tr : table.getElementsByTag("tr")) {
-            Elements tds = tr.getElementsByTag("td");
-            if (tds.size() == 5) {
+        try (DhcpLeaseReader reader = toDhcpLeaseReader(response)) {
+            while (reader.next()) {
                 entries.put(new JSONObject()
-                        .put("IP", tds.get(0).text().replaceAll("\\(\\*\\)", ""))
-                        .put("MAC", tds.get(1).text())
-                        .put("LEASE", tds.get(2).text())
-                        .put("ID", tds.get(4).getElementsByAttributeValue("type", "submit")
-                                .first().attr("name").substring(3)));
+                        .put("IP", reader.getIpAddress())
+                        .put("MAC", reader.getMacAddress())
+                        .put("LEASE", reader.getLease())
+                        .put("ID", reader.getId()));
             }
         }
         return entries;
     }
 
+    /**
+     * Return a {@link DhcpLeaseReader} streaming the DHCP reservation table out of the response body. The reader
+     * must be closed once done.
+     *
+     * @param response The {@link Response} containing the DHCP reservation table.
+     * @return A {@link DhcpLeaseReader} over the table rows.
+     */
+    public DhcpLeaseReader toDhcpLeaseReader(Response response) {
+        return new DhcpLeaseReader(response.body().source());
+    }
+
     /**
      * Get the required set of parameters to perform a DHCP entry edit.
      *
@@ -431,8 +591,9 @@ public class RequestAdapter implements Closeable {
         params.put("manmac" + id, dev.getMacAddress());
         params.put("EDITID", id);
         params.put("DOFIX" + id, "Save");
-        params.put("sWebSessionnum", webSessionNum);
-        params.put("sWebSessionid", webSessionId);
+        Session session = getSession();
+        params.put("sWebSessionnum", session.getWebSessionNum());
+        params.put("sWebSessionid", session.getWebSessionId());
         return params;
     }
 
@@ -445,7 +606,7 @@ public class RequestAdapter implements Closeable {
      * @throws IOException Whenever something goes wrong getting or parsing the response.
      */
     JSONObject toJSONResponse(Response response) throws IOException {
-        RequestAdapter.responseToDocument(response);
+        HtmlScanner.checkError(response.body().source());
         return new JSONObject().put("RESULT", "OK");
     }
 
@@ -455,10 +616,13 @@ public class RequestAdapter implements Closeable {
      * @return True if session is logged in, false otherwise.
      */
     public boolean isLoggedIn() {
-        return !Utils.isStringEmpty(webSessionId) && !Utils.isStringEmpty(webSessionNum);
+        return getSession().isValid();
     }
 
-    enum JSONFunction {
+    /**
+     * The datasets exposed by the `get_json_param` device function.
+     */
+    public enum JSONFunction {
         AOSS,
         DEVCTRL,
         DEVICE,
@@ -479,4 +643,19 @@ public class RequestAdapter implements Closeable {
         EXTENDERMONITOR,
         WEB_AXS
     }
+
+    /**
+     * The device RSA key together with the {@link Encryptor} built upon it.
+     */
+    private static final class CachedKey {
+        private final String exponent;
+        private final String modulus;
+        private final Encryptor encryptor;
+
+        private CachedKey(String exponent, String modulus, Encryptor encryptor) {
+            this.exponent = exponent;
+            this.modulus = modulus;
+            this.encryptor = encryptor;
+        }
+    }
 }
@@ -0,0 +1,13 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.Request;
+
+import java.io.IOException;
+
+/**
+ * Interface to build a fresh {@link Request}, so that it can be replayed with up to date session values.
+ */
+interface RequestFactory {
+
+    Request newRequest() throws IOException;
+}
@@ -0,0 +1,260 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * A bounded, least recently used cache of `get_json_param` responses with a time to live for each
+ * {@link JSONFunction}. Datasets without a time to live are never cached.
+ * <p>
+ * An entry past its time to live, but still within the stale-while-revalidate window, is served as is while a single
+ * background refresh is performed. The cache is configured by the "cache" settings object:
+ * <pre>
+ * {"maxSize": 32, "staleWhileRevalidate": 0, "ttl": {"LANG": 300000, "DEVICE": 300000, ...}}
+ * </pre>
+ */
+public class ResponseCache {
+
+    public static final int DEFAULT_MAX_SIZE = 32;
+    public static final int DEFAULT_STALE_WHILE_REVALIDATE = 0;
+    public static final int DEFAULT_TTL = 300000;
+
+    private static final Map<String, EnumSet<JSONFunction>> INVALIDATIONS = new LinkedHashMap<>();
+
+    static {
+        INVALIDATIONS.put("do_wol_DEVCTRL", EnumSet.of(DEVCTRL));
+        INVALIDATIONS.put("basic_setting_DEVCTRL", EnumSet.of(DEVCTRL));
+        INVALIDATIONS.put("button_AOSS", EnumSet.of(AOSS, WPS));
+        INVALIDATIONS.put("basic_setting_WIRELESS", EnumSet.of(WIRELESS));
+        INVALIDATIONS.put("button_GUEST", EnumSet.of(GUEST));
+        INVALIDATIONS.put("basic_setting_NAS", EnumSet.of(NAS, SAMBA, TORRENT, DLNA, WEB_AXS));
+        INVALIDATIONS.put("button_NAS_redetect", EnumSet.of(NAS));
+        INVALIDATIONS.put("button_QOS", EnumSet.of(QOS));
+        INVALIDATIONS.put("basic_setting_QOS", EnumSet.of(QOS));
+        INVALIDATIONS.put("basic_setting_PARENTAL", EnumSet.of(PARENTAL));
+    }
+
+    private final Map<JSONFunction, Long> ttls = new EnumMap<>(JSONFunction.class);
+    private final Map<JSONFunction, Long> generations = new EnumMap<>(JSONFunction.class);
+    private final Map<JSONFunction, CacheEntry> entries;
+    private final long staleWhileRevalidate;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Build a cache from the given settings. When no "ttl" object is given, the datasets which rarely change (LANG,
+     * SYSTEM, FUNCTION, DEVICE and NAS) are cached for {@link #DEFAULT_TTL} milliseconds.
+     *
+     * @param settings The cache settings.
+     */
+    public ResponseCache(JSONObject settings) {
+        final int maxSize = getIntOrDefault(settings, "maxSize", DEFAULT_MAX_SIZE);
+        this.staleWhileRevalidate = getIntOrDefault(settings, "staleWhileRevalidate", DEFAULT_STALE_WHILE_REVALIDATE);
+        if (!settings.has("ttl")) {
+            JSONObject ttl = new JSONObject();
+            for (JSONFunction param : EnumSet.of(LANG, SYSTEM, FUNCTION, DEVICE, NAS))
+                ttl.put(param.name(), DEFAULT_TTL);
+            settings.put("ttl", ttl);
+        }
+        JSONObject ttl = settings.getJSONObject("ttl");
+        for (String name : ttl.keySet())
+            ttls.put(JSONFunction.valueOf(name), ttl.getLong(name));
+        this.entries = new LinkedHashMap<JSONFunction, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<JSONFunction, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the functions whose data may be changed by a `set` request with the given parameters. Requests not known
+     * to the cache affect every function.
+     *
+     * @param params The `set` request parameters.
+     * @return The affected functions.
+     */
+    static EnumSet<JSONFunction> affectedBy(Map<String, String> params) {
+        String el = params.get("el");
+        if (el != null && INVALIDATIONS.containsKey(el))
+            return EnumSet.copyOf(INVALIDATIONS.get(el));
+        if (el == null && params.containsKey("EDITID"))
+            return EnumSet.of(DEVCTRL);
+        if (el == null && params.containsKey("ssid_g"))
+            return EnumSet.of(GUEST);
+        return EnumSet.allOf(JSONFunction.class);
+    }
+
+    /**
+     * Whether the given function is cached at all.
+     *
+     * @param param The JSON param.
+     * @return True if a time to live is configured for the param.
+     */
+    public boolean isCached(JSONFunction param) {
+        return ttls.containsKey(param);
+    }
+
+    /**
+     * Look a cached value up. A stale value is returned at most once per entry with refresh set to true, telling the
+     * caller to revalidate it; until that refresh lands the stale value is served without further refreshes.
+     *
+     * @param param The JSON param.
+     * @return The {@link Lookup}, or null on a cache miss.
+     */
+    synchronized Lookup get(JSONFunction param) {
+        CacheEntry entry = entries.get(param);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        long age = now() - entry.timestamp;
+        long ttl = ttls.get(param);
+        if (age <= ttl) {
+            hits.incrementAndGet();
+            return new Lookup(entry.value, false);
+        }
+        if (age <= ttl + staleWhileRevalidate) {
+            staleHits.incrementAndGet();
+            boolean refresh = !entry.refreshing;
+            entry.refreshing = true;
+            return new Lookup(entry.value, refresh);
+        }
+        entries.remove(param);
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Get the generation of the given param, to be passed to {@link #put(JSONFunction, JSONObject, long)} once the
+     * value is retrieved.
+     *
+     * @param param The JSON param.
+     * @return The current generation.
+     */
+    synchronized long generation(JSONFunction param) {
+        Long generation = generations.get(param);
+        return generation != null ? generation : 0;
+    }
+
+    /**
+     * Store a value, unless the param has been invalidated since the value was requested.
+     *
+     * @param param      The JSON param.
+     * @param value      The value retrieved.
+     * @param generation The generation of the param when the value was requested.
+     */
+    synchronized void put(JSONFunction param, JSONObject value, long generation) {
+        if (isCached(param) && generation == generation(param))
+            entries.put(param, new CacheEntry(value, now()));
+    }
+
+    /**
+     * Stop refreshing a stale entry after a failed revalidation, so that a later lookup tries again.
+     *
+     * @param param The JSON param.
+     */
+    synchronized void refreshFailed(JSONFunction param) {
+        CacheEntry entry = entries.get(param);
+        if (entry != null)
+            entry.refreshing = false;
+    }
+
+    /**
+     * Drop the cached values of the given params.
+     *
+     * @param params The JSON params to invalidate.
+     */
+    public synchronized void invalidate(EnumSet<JSONFunction> params) {
+        for (JSONFunction param : params) {
+            entries.remove(param);
+            generations.put(param, generation(param) + 1);
+        }
+    }
+
+    /**
+     * Drop every cached value.
+     */
+    public void invalidateAll() {
+        invalidate(EnumSet.allOf(JSONFunction.class));
+    }
+
+    /**
+     * Get the number of cached values.
+     *
+     * @return The cache size.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of lookups served by a fresh value.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups served by a stale value while revalidating it.
+     *
+     * @return The number of stale hits.
+     */
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    /**
+     * Get the number of lookups which found no usable value.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The current time in milliseconds.
+     *
+     * @return The current time.
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * The outcome of a cache lookup.
+     */
+    static class Lookup {
+        final JSONObject value;
+        final boolean refresh;
+
+        private Lookup(JSONObject value, boolean refresh) {
+            this.value = value;
+            this.refresh = refresh;
+        }
+    }
+
+    private static class CacheEntry {
+        private final JSONObject value;
+        private final long timestamp;
+        private boolean refreshing;
+
+        private CacheEntry(JSONObject value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+}
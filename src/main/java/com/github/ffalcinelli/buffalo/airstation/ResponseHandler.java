@@ -0,0 +1,13 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Interface to turn a device {@link Response} into a result.
+ */
+interface ResponseHandler<T> {
+
+    T handle(Response response) throws IOException;
+}
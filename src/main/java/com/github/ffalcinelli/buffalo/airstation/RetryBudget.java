@@ -0,0 +1,90 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * A budget capping the extra requests sent by {@link RetryPolicy}, so that retries and hedges can not multiply the
+ * load of devices which are already struggling.
+ * <p>
+ * Every read handled by a policy deposits ratio hundredths of a token, up to maxTokens, and every retry or hedge
+ * withdraws a whole token: in the long run at most ratio extra requests are sent every hundred reads, while the
+ * tokens saved up allow short bursts. A budget can be shared among many devices, as {@link AirStationFleet} does, and
+ * is configured by a settings object:
+ * <pre>
+ * {"ratio": 10, "maxTokens": 20}
+ * </pre>
+ */
+public class RetryBudget {
+
+    public static final int DEFAULT_RATIO = 10;
+    public static final int DEFAULT_MAX_TOKENS = 20;
+
+    private final double ratio;
+    private final double maxTokens;
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+    private double tokens;
+
+    /**
+     * Build a full budget from the given settings.
+     *
+     * @param settings The budget settings.
+     */
+    public RetryBudget(JSONObject settings) {
+        this.ratio = getIntOrDefault(settings, "ratio", DEFAULT_RATIO) / 100.0;
+        this.maxTokens = getIntOrDefault(settings, "maxTokens", DEFAULT_MAX_TOKENS);
+        if (ratio < 0 || maxTokens < 0)
+            throw new IllegalArgumentException("ratio and maxTokens must not be negative");
+        this.tokens = maxTokens;
+    }
+
+    /**
+     * Deposit the share of a read.
+     */
+    synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * Withdraw a token for a retry or a hedge.
+     *
+     * @return False if the budget is exhausted and the extra request must not be sent.
+     */
+    boolean tryWithdraw() {
+        synchronized (this) {
+            if (tokens >= 1) {
+                tokens -= 1;
+                granted.incrementAndGet();
+                return true;
+            }
+        }
+        denied.incrementAndGet();
+        return false;
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Get the number of extra requests allowed so far.
+     *
+     * @return The number of tokens withdrawn.
+     */
+    public long getGrantedCount() {
+        return granted.get();
+    }
+
+    /**
+     * Get the number of extra requests refused because the budget was exhausted.
+     *
+     * @return The number of refused withdrawals.
+     */
+    public long getDeniedCount() {
+        return denied.get();
+    }
+}
@@ -0,0 +1,323 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * Hedging and retries of the idempotent reads of a device, `get_json_param` and the DHCP reservation table.
+ * <p>
+ * When a read is still running after the hedgePercentile of the latencies recently seen, a duplicate is sent and the
+ * first response wins, the other call being cancelled. No read is hedged before enough latencies are known, and a
+ * hedgePercentile of 0 disables hedging. A read failing with a transient {@link IOException}, as a dropped connection
+ * or a timeout, is sent again up to maxRetries times, after an exponential backoff from the backoff delay with equal
+ * jitter. Failures from the device or from the client itself, as an expired deadline or an open circuit, are never
+ * retried, and neither are cancelled reads and `set` requests. Every retry and hedge withdraws a token from the {@link RetryBudget}.
+ * <p>
+ * The policy is configured by the "retry" settings object:
+ * <pre>
+ * {"maxRetries": 2, "backoff": 100, "hedgePercentile": 95, "hedgeMinDelay": 10}
+ * </pre>
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final int DEFAULT_BACKOFF = 100;
+    public static final int DEFAULT_HEDGE_PERCENTILE = 95;
+    public static final int DEFAULT_HEDGE_MIN_DELAY = 10;
+
+    static final int SAMPLES = 100;
+    static final int MIN_SAMPLES = 20;
+
+    static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "RetryPolicy");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final int maxRetries;
+    private final long backoff;
+    private final int hedgePercentile;
+    private final long hedgeMinDelay;
+    private final long[] latencies = new long[SAMPLES];
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private volatile RetryBudget budget;
+    private int samples;
+
+    /**
+     * Build a policy from the given settings, with a budget of its own.
+     *
+     * @param settings The retry settings.
+     */
+    public RetryPolicy(JSONObject settings) {
+        this.maxRetries = getIntOrDefault(settings, "maxRetries", DEFAULT_MAX_RETRIES);
+        this.backoff = getIntOrDefault(settings, "backoff", DEFAULT_BACKOFF);
+        this.hedgePercentile = getIntOrDefault(settings, "hedgePercentile", DEFAULT_HEDGE_PERCENTILE);
+        this.hedgeMinDelay = getIntOrDefault(settings, "hedgeMinDelay", DEFAULT_HEDGE_MIN_DELAY);
+        if (maxRetries < 0 || backoff < 1 || hedgePercentile < 0 || hedgePercentile > 100 || hedgeMinDelay < 0)
+            throw new IllegalArgumentException("maxRetries and hedgeMinDelay must not be negative, backoff must be "
+                    + "positive and hedgePercentile between 0 and 100");
+        this.budget = new RetryBudget(new JSONObject());
+    }
+
+    public RetryBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Replace the budget of this policy, for instance to share one budget among many devices.
+     *
+     * @param budget The {@link RetryBudget} to withdraw from.
+     */
+    public void setBudget(RetryBudget budget) {
+        if (budget == null)
+            throw new IllegalArgumentException("The budget must not be null");
+        this.budget = budget;
+    }
+
+    /**
+     * Run a read, hedging and retrying it as needed, and notify the callback of the first success or of the last
+     * failure.
+     *
+     * @param attempt  The {@link Attempt} sending the read.
+     * @param callback The {@link AsyncCallback} to notify.
+     * @param tracker  The {@link CallTracker} to hand every call to, may be null.
+     * @param <T>      The result type.
+     */
+    <T> void execute(Attempt<T> attempt, AsyncCallback<T> callback, CallTracker tracker) {
+        budget.deposit();
+        new Execution<>(attempt, callback, tracker).start();
+    }
+
+    /**
+     * Tell whether a failure is worth a retry: transport failures are, failures reported by the device or raised
+     * by the client are not.
+     *
+     * @param t The failure.
+     * @return True if the read can be sent again.
+     */
+    static boolean isTransient(Throwable t) {
+        return t instanceof IOException && !(t instanceof AirStationException);
+    }
+
+    synchronized void record(long latency) {
+        latencies[samples++ % SAMPLES] = latency;
+    }
+
+    /**
+     * Get the delay after which a read is hedged.
+     *
+     * @return The delay in milliseconds, or -1 if reads must not be hedged.
+     */
+    synchronized long getHedgeDelay() {
+        if (hedgePercentile == 0 || samples < MIN_SAMPLES)
+            return -1;
+        long[] sorted = Arrays.copyOf(latencies, Math.min(samples, SAMPLES));
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(sorted.length * hedgePercentile / 100.0) - 1;
+        return Math.max(hedgeMinDelay, sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * Get the delay before the given retry: half of the exponential backoff plus a random share of the other half.
+     *
+     * @param retry The retry number, starting from 1.
+     * @return The delay in milliseconds.
+     */
+    long getBackoff(int retry) {
+        long delay = backoff << Math.min(retry - 1, 16);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Get the number of retries sent since creation.
+     *
+     * @return The retry counter.
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Get the number of hedges sent since creation.
+     *
+     * @return The hedge counter.
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Get the number of reads whose hedge answered first.
+     *
+     * @return The counter of hedges winning over the original request.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * A single send of a read.
+     *
+     * @param <T> The result type.
+     */
+    interface Attempt<T> {
+
+        void start(AsyncCallback<T> callback, CallTracker tracker);
+    }
+
+    /**
+     * The state of a read: the calls sent for it, how many are running and whether a result was delivered.
+     */
+    private final class Execution<T> implements CallTracker {
+        private final Attempt<T> attempt;
+        private final AsyncCallback<T> callback;
+        private final CallTracker tracker;
+        private final List<Cancellable> calls = new ArrayList<>();
+        private ScheduledFuture<?> hedge;
+        private boolean done;
+        private int running;
+        private int retry;
+
+        Execution(Attempt<T> attempt, AsyncCallback<T> callback, CallTracker tracker) {
+            this.attempt = attempt;
+            this.callback = callback;
+            this.tracker = tracker;
+        }
+
+        void start() {
+            long delay = getHedgeDelay();
+            if (delay >= 0) {
+                hedge = TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (Execution.this) {
+                            if (done || running == 0)
+                                return;
+                        }
+                        if (budget.tryWithdraw()) {
+                            hedges.incrementAndGet();
+                            send(true);
+                        }
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            send(false);
+        }
+
+        private void send(final boolean hedged) {
+            final long sent = now();
+            synchronized (this) {
+                running++;
+            }
+            attempt.start(new AsyncCallback<T>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    failed(t);
+                }
+
+                @Override
+                public void onSuccess(T data) {
+                    succeeded(data, now() - sent, hedged);
+                }
+            }, this);
+        }
+
+        private void succeeded(T data, long latency, boolean hedged) {
+            List<Cancellable> sent;
+            synchronized (this) {
+                running--;
+                if (done)
+                    return;
+                done = true;
+                sent = new ArrayList<>(calls);
+            }
+            if (hedge != null)
+                hedge.cancel(false);
+            record(latency);
+            if (hedged)
+                hedgeWins.incrementAndGet();
+            // The call which answered is already done, cancelling it is harmless. The losing calls fail as cancelled,
+            // which the circuit breaker and the throttle ignore.
+            for (Cancellable call : sent)
+                call.cancel();
+            callback.onSuccess(data);
+        }
+
+        private void failed(Throwable t) {
+            long delay = -1;
+            synchronized (this) {
+                running--;
+                // Wait for the other call still running, if any.
+                if (done || running > 0)
+                    return;
+                if (isTransient(t) && retry < maxRetries && !isCancelled() && budget.tryWithdraw())
+                    delay = getBackoff(++retry);
+                else
+                    done = true;
+            }
+            if (delay < 0) {
+                if (hedge != null)
+                    hedge.cancel(false);
+                callback.onFailure(t);
+                return;
+            }
+            retries.incrementAndGet();
+            TIMER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(false);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Tell whether the read was cancelled, either through its future or by cancelling one of its calls, as a
+         * {@link SingleFlight} does once every caller left. The failure of a cancelled call is final.
+         */
+        private boolean isCancelled() {
+            if (callback instanceof Future && ((Future<?>) callback).isCancelled())
+                return true;
+            for (Cancellable call : calls)
+                if (call.isCanceled())
+                    return true;
+            return false;
+        }
+
+        @Override
+        public void track(Cancellable call) {
+            boolean cancel;
+            synchronized (this) {
+                cancel = done;
+                if (!done)
+                    calls.add(call);
+            }
+            if (cancel)
+                call.cancel();
+            else if (tracker != null)
+                tracker.track(call);
+        }
+    }
+}
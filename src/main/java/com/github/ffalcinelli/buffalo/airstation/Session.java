@@ -0,0 +1,50 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.utils.Utils;
+
+/**
+ * An immutable AirStation web session, as issued by the device login page.
+ */
+public final class Session {
+
+    /**
+     * The session of an adapter not logged in.
+     */
+    public static final Session NONE = new Session(null, null);
+
+    private final String webSessionId;
+    private final String webSessionNum;
+
+    /**
+     * Build a session.
+     *
+     * @param webSessionId  The sWebSessionid value.
+     * @param webSessionNum The sWebSessionnum value.
+     */
+    public Session(String webSessionId, String webSessionNum) {
+        this.webSessionId = webSessionId;
+        this.webSessionNum = webSessionNum;
+    }
+
+    public String getWebSessionId() {
+        return webSessionId;
+    }
+
+    public String getWebSessionNum() {
+        return webSessionNum;
+    }
+
+    /**
+     * Whether this is a logged in session.
+     *
+     * @return True if both the session id and number are set, false otherwise.
+     */
+    public boolean isValid() {
+        return !Utils.isStringEmpty(webSessionId) && !Utils.isStringEmpty(webSessionNum);
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" + "webSessionNum=" + webSessionNum + ", valid=" + isValid() + '}';
+    }
+}
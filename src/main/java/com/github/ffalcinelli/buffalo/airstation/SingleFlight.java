@@ -0,0 +1,194 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesce concurrent identical requests: while a request for a given key is in flight, further callers for the same
+ * key wait for its result instead of issuing their own request. Every caller receives the very same result instance.
+ * <p>
+ * A flight is a {@link CallTracker}: callers which are trackers themselves are handed a {@link Cancellable} share of
+ * every request issued, and the request is cancelled once every caller cancelled its share. A caller which can not cancel keeps the
+ * call running.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Join the flight for the given key, starting a new one if none is in progress.
+     *
+     * @param key      The request key.
+     * @param callback The {@link AsyncCallback} to notify with the flight result.
+     * @return The new {@link Flight} the caller must perform and complete, or null if the caller joined a flight
+     * already in progress.
+     */
+    Flight join(K key, AsyncCallback<V> callback) {
+        while (true) {
+            Flight flight = new Flight(key, callback);
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                leaders.incrementAndGet();
+                return flight;
+            }
+            if (existing.add(callback)) {
+                coalesced.incrementAndGet();
+                return null;
+            }
+            // The existing flight is landing: it is about to be removed, try again.
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * Get the number of requests actually performed.
+     *
+     * @return The number of flights started.
+     */
+    public long getLeaderCount() {
+        return leaders.get();
+    }
+
+    /**
+     * Get the number of requests saved by joining a flight already in progress.
+     *
+     * @return The number of coalesced callers.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Get the number of flights currently in progress.
+     *
+     * @return The number of in flight requests.
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+
+    /**
+     * A request in progress. Completing it notifies every caller which joined it.
+     */
+    class Flight implements AsyncCallback<V>, CallTracker {
+        private final K key;
+        private final List<AsyncCallback<V>> callbacks = new ArrayList<>();
+        private final Set<AsyncCallback<V>> cancelled =
+                Collections.newSetFromMap(new IdentityHashMap<AsyncCallback<V>, Boolean>());
+        private final List<Cancellable> calls = new ArrayList<>();
+        private boolean landed;
+        private boolean abandoned;
+
+        private Flight(K key, AsyncCallback<V> callback) {
+            this.key = key;
+            this.callbacks.add(callback);
+        }
+
+        private boolean add(AsyncCallback<V> callback) {
+            List<Cancellable> issued;
+            synchronized (this) {
+                if (landed)
+                    return false;
+                callbacks.add(callback);
+                issued = new ArrayList<>(calls);
+            }
+            for (Cancellable call : issued)
+                share(call, callback);
+            return true;
+        }
+
+        @Override
+        public void track(Cancellable call) {
+            List<AsyncCallback<V>> sharing;
+            synchronized (this) {
+                if (!abandoned) {
+                    calls.add(call);
+                    sharing = new ArrayList<>(callbacks);
+                } else {
+                    sharing = null;
+                }
+            }
+            if (sharing == null) {
+                call.cancel();
+                return;
+            }
+            for (AsyncCallback<V> callback : sharing)
+                share(call, callback);
+        }
+
+        private void share(Cancellable call, AsyncCallback<V> callback) {
+            if (callback instanceof CallTracker)
+                ((CallTracker) callback).track(new Share(call, callback));
+        }
+
+        /**
+         * Record that a caller cancelled its share, cancelling the calls once no caller is left waiting. The flight
+         * is left at once, so that later callers start a new one.
+         */
+        private void cancelled(AsyncCallback<V> callback) {
+            List<Cancellable> issued;
+            synchronized (this) {
+                cancelled.add(callback);
+                if (abandoned || landed || cancelled.size() < callbacks.size())
+                    return;
+                abandoned = true;
+                landed = true;
+                issued = new ArrayList<>(calls);
+            }
+            flights.remove(key, this);
+            for (Cancellable call : issued)
+                call.cancel();
+        }
+
+        private List<AsyncCallback<V>> land() {
+            synchronized (this) {
+                landed = true;
+            }
+            flights.remove(key, this);
+            return callbacks;
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            for (AsyncCallback<V> callback : land())
+                callback.onFailure(t);
+        }
+
+        @Override
+        public void onSuccess(V data) {
+            for (AsyncCallback<V> callback : land())
+                callback.onSuccess(data);
+        }
+
+        /**
+         * The share of a request handed to a single caller: cancelling it only withdraws that caller.
+         */
+        private final class Share implements Cancellable {
+            private final Cancellable call;
+            private final AsyncCallback<V> callback;
+
+            private Share(Cancellable call, AsyncCallback<V> callback) {
+                this.call = call;
+                this.callback = callback;
+            }
+
+            @Override
+            public void cancel() {
+                cancelled(callback);
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return call.isCanceled();
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+import static com.github.ffalcinelli.buffalo.utils.Utils.getStringOrDefault;
+
+/**
+ * A per-device token bucket whose rate follows the load of the device.
+ * <p>
+ * Background requests take a token before being sent, waiting for the bucket to refill when it is empty, while
+ * interactive requests take a token without ever waiting, so that they slow the background ones down. Requests not
+ * given a priority by a {@link Prioritized} callback, as the synchronous ones, are throttled as the defaultPriority
+ * setting says: set it to BACKGROUND to pace polling loops written by hand as well. The rate is tuned additive
+ * increase, multiplicative decrease: every response within the target latency raises it by a hundredth of the range
+ * between the minimum and the maximum rate, while a slower response, a failure or a BUSY sample reporting the device
+ * SYSTEM busy halves it (at most once per target latency, so that a burst of slow responses counts once). The device
+ * is sampled with BUSY at most once per busySampleInterval while requests are flowing.
+ * <p>
+ * The throttle is configured by the "throttle" settings object, with rates in requests per minute:
+ * <pre>
+ * {"minRate": 30, "maxRate": 1200, "burst": 5, "targetLatency": 1000, "busySampleInterval": 10000,
+ *  "defaultPriority": "INTERACTIVE"}
+ * </pre>
+ */
+public class Throttle {
+
+    public static final int DEFAULT_MIN_RATE = 30;
+    public static final int DEFAULT_MAX_RATE = 1200;
+    public static final int DEFAULT_BURST = 5;
+    public static final int DEFAULT_TARGET_LATENCY = 1000;
+    public static final int DEFAULT_BUSY_SAMPLE_INTERVAL = 10000;
+    public static final Bulkhead.Priority DEFAULT_PRIORITY = Bulkhead.Priority.INTERACTIVE;
+
+    static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Throttle");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final double minRate;
+    private final double maxRate;
+    private final int burst;
+    private final long targetLatency;
+    private final long busySampleInterval;
+    private final Bulkhead.Priority defaultPriority;
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong decreases = new AtomicLong();
+    // Rates are kept in requests per millisecond.
+    private double rate;
+    private double tokens;
+    private long refilled;
+    private long decreased;
+    private long sampled;
+    private double latency;
+
+    /**
+     * Build a throttle from the given settings, starting halfway between the minimum and the maximum rate.
+     *
+     * @param settings The throttle settings.
+     */
+    public Throttle(JSONObject settings) {
+        this.minRate = getIntOrDefault(settings, "minRate", DEFAULT_MIN_RATE) / 60000.0;
+        this.maxRate = getIntOrDefault(settings, "maxRate", DEFAULT_MAX_RATE) / 60000.0;
+        this.burst = getIntOrDefault(settings, "burst", DEFAULT_BURST);
+        this.targetLatency = getIntOrDefault(settings, "targetLatency", DEFAULT_TARGET_LATENCY);
+        this.busySampleInterval = getIntOrDefault(settings, "busySampleInterval", DEFAULT_BUSY_SAMPLE_INTERVAL);
+        this.defaultPriority = Bulkhead.Priority.valueOf(
+                getStringOrDefault(settings, "defaultPriority", DEFAULT_PRIORITY.name()));
+        if (minRate <= 0 || maxRate < minRate || burst < 1)
+            throw new IllegalArgumentException("Rates must be positive, with minRate not above maxRate, and burst positive");
+        this.rate = (minRate + maxRate) / 2;
+        this.tokens = burst;
+        this.refilled = now();
+        this.decreased = Long.MIN_VALUE / 2;
+        this.sampled = refilled;
+    }
+
+    /**
+     * Take a token for a request of the given priority.
+     *
+     * @param priority The request priority, null for a request not given one.
+     * @return 0 if the request can be sent right away, otherwise the milliseconds to wait before sending it.
+     */
+    long pace(Bulkhead.Priority priority) {
+        if ((priority != null ? priority : defaultPriority) == Bulkhead.Priority.BACKGROUND)
+            return reserve();
+        take();
+        return 0;
+    }
+
+    /**
+     * Take a token for a background request.
+     *
+     * @return 0 if the request can be sent right away, otherwise the milliseconds to wait before sending it.
+     */
+    synchronized long reserve() {
+        refill();
+        tokens--;
+        if (tokens >= 0)
+            return 0;
+        throttled.incrementAndGet();
+        return (long) Math.ceil(-tokens / rate);
+    }
+
+    /**
+     * Take a token for an interactive request, which is sent right away even if the bucket is empty.
+     */
+    synchronized void take() {
+        refill();
+        tokens--;
+    }
+
+    /**
+     * Tell whether a BUSY sample is due, marking it as taken.
+     *
+     * @return True at most once per busySampleInterval.
+     */
+    synchronized boolean isSampleDue() {
+        long now = now();
+        if (now - sampled < busySampleInterval)
+            return false;
+        sampled = now;
+        return true;
+    }
+
+    /**
+     * Feed the latency of a response.
+     *
+     * @param millis The time from sending the request to reading the response.
+     */
+    synchronized void onLatency(long millis) {
+        latency = latency == 0 ? millis : 0.8 * latency + 0.2 * millis;
+        if (millis > targetLatency)
+            decrease();
+        else
+            rate = Math.min(maxRate, rate + (maxRate - minRate) / 100);
+    }
+
+    /**
+     * Feed a request failure, which is taken as a sign of overload.
+     */
+    synchronized void onFailure() {
+        decrease();
+    }
+
+    /**
+     * Feed a BUSY sample.
+     *
+     * @param busy Whether the device reports to be busy.
+     */
+    synchronized void onBusy(boolean busy) {
+        sampled = now();
+        if (busy)
+            decrease();
+    }
+
+    private void decrease() {
+        long now = now();
+        if (now - decreased < targetLatency)
+            return;
+        decreased = now;
+        decreases.incrementAndGet();
+        refill();
+        rate = Math.max(minRate, rate / 2);
+    }
+
+    private void refill() {
+        long now = now();
+        tokens = Math.min(burst, tokens + (now - refilled) * rate);
+        refilled = now;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Get the current rate.
+     *
+     * @return The rate in requests per minute.
+     */
+    public synchronized double getRate() {
+        return rate * 60000;
+    }
+
+    /**
+     * Get the average latency of the recent responses.
+     *
+     * @return The exponentially weighted average latency in milliseconds.
+     */
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    /**
+     * Get the number of background requests delayed since creation.
+     *
+     * @return The number of throttled requests.
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Get the number of times the rate was halved since creation.
+     *
+     * @return The number of decreases.
+     */
+    public long getDecreaseCount() {
+        return decreases.get();
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.getIntOrDefault;
+
+/**
+ * A per-device queue of `set` requests, collapsing the writes to the same setting which are still waiting to be sent.
+ * <p>
+ * Writes are keyed by their "el" element and, for per-client settings, by their "mac" parameter. A write to a key
+ * which is already pending is merged into the pending one, its parameters replacing the older values (last writer
+ * wins), so that a single request is sent for both. The firmware takes a single element per request, so writes to
+ * different keys are still sent as separate requests. Only "basic_setting_" elements are queued: buttons and other
+ * actions are sent right away.
+ * <p>
+ * The queue is flushed when it holds maxPending writes or maxDelay milliseconds after the first pending write. It is
+ * configured by the "writeQueue" settings object:
+ * <pre>
+ * {"maxDelay": 50, "maxPending": 32}
+ * </pre>
+ * Every caller is notified of the result of the request its write was sent with.
+ */
+public class WriteQueue {
+
+    public static final int DEFAULT_MAX_DELAY = 50;
+    public static final int DEFAULT_MAX_PENDING = 32;
+
+    private static final String QUEUED_PREFIX = "basic_setting_";
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "WriteQueue");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final AirStation airStation;
+    private final int maxDelay;
+    private final int maxPending;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final List<AsyncCallback<Void>> drains = new ArrayList<>();
+    private Map<String, Write> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private int inFlight;
+    private ScheduledFuture<?> timer;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Build a queue sending its requests through the given device.
+     *
+     * @param airStation The device to send the requests to.
+     * @param settings   The queue settings.
+     */
+    WriteQueue(AirStation airStation, JSONObject settings) {
+        this.airStation = airStation;
+        this.maxDelay = getIntOrDefault(settings, "maxDelay", DEFAULT_MAX_DELAY);
+        this.maxPending = getIntOrDefault(settings, "maxPending", DEFAULT_MAX_PENDING);
+        if (maxDelay < 0 || maxPending < 1)
+            throw new IllegalArgumentException("maxDelay must not be negative and maxPending must be positive");
+    }
+
+    /**
+     * Whether the given `set` parameters are written through the queue.
+     *
+     * @param params The `set` request parameters.
+     * @return True for "basic_setting_" elements.
+     */
+    static boolean isQueued(Map<String, String> params) {
+        String el = params.get("el");
+        return el != null && el.startsWith(QUEUED_PREFIX);
+    }
+
+    /**
+     * Get the key the given parameters are collapsed by.
+     *
+     * @param params The `set` request parameters.
+     * @return The element, followed by the MAC address if any.
+     */
+    static String keyOf(Map<String, String> params) {
+        String mac = params.get("mac");
+        return mac == null ? params.get("el") : params.get("el") + "|" + mac.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Queue a write, merging it into the pending write with the same key if any.
+     *
+     * @param params   The `set` request parameters.
+     * @param callback The {@link AsyncCallback} notified with the result of the request the write is sent with.
+     */
+    void submit(Map<String, String> params, AsyncCallback<JSONObject> callback) {
+        submitted.incrementAndGet();
+        boolean full;
+        synchronized (this) {
+            String key = keyOf(params);
+            Write write = pending.get(key);
+            if (write == null) {
+                write = new Write();
+                pending.put(key, write);
+            }
+            write.params.putAll(params);
+            write.callbacks.add(callback);
+            pendingCount++;
+            full = pendingCount >= maxPending;
+            if (!full && timer == null)
+                timer = TIMER.schedule(flushTask, maxDelay, TimeUnit.MILLISECONDS);
+        }
+        if (full)
+            flush();
+    }
+
+    /**
+     * Send the pending writes right away.
+     */
+    public void flush() {
+        Map<String, Write> writes;
+        synchronized (this) {
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+            if (pending.isEmpty())
+                return;
+            writes = pending;
+            pending = new LinkedHashMap<>();
+            pendingCount = 0;
+            inFlight += writes.size();
+        }
+        for (final Write write : writes.values()) {
+            sent.incrementAndGet();
+            airStation.send(write.params, new AsyncCallback<JSONObject>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    try {
+                        for (AsyncCallback<JSONObject> callback : write.callbacks)
+                            callback.onFailure(t);
+                    } finally {
+                        landed();
+                    }
+                }
+
+                @Override
+                public void onSuccess(JSONObject data) {
+                    try {
+                        for (AsyncCallback<JSONObject> callback : write.callbacks)
+                            callback.onSuccess(data);
+                    } finally {
+                        landed();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Send the pending writes right away, and notify the callback once every write sent by the queue is done,
+     * whatever its outcome.
+     *
+     * @param callback The {@link AsyncCallback} notified once the queue is drained, it never fails.
+     */
+    void drain(AsyncCallback<Void> callback) {
+        flush();
+        synchronized (this) {
+            if (inFlight > 0) {
+                drains.add(callback);
+                return;
+            }
+        }
+        callback.onSuccess(null);
+    }
+
+    private void landed() {
+        List<AsyncCallback<Void>> drained;
+        synchronized (this) {
+            if (--inFlight > 0 || drains.isEmpty())
+                return;
+            drained = new ArrayList<>(drains);
+            drains.clear();
+        }
+        for (AsyncCallback<Void> callback : drained)
+            callback.onSuccess(null);
+    }
+
+    /**
+     * Get the number of writes waiting to be sent.
+     *
+     * @return The number of pending writes, counting the collapsed ones.
+     */
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    /**
+     * Get the number of writes submitted to the queue.
+     *
+     * @return The number of writes.
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * Get the number of `set` requests the queue sent.
+     *
+     * @return The number of requests, the difference with {@link #getSubmittedCount()} being the collapsed writes.
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * The merged parameters of the writes to the same key, with their callers.
+     */
+    private static final class Write {
+        private final Map<String, String> params = new LinkedHashMap<>();
+        private final List<AsyncCallback<JSONObject>> callbacks = new ArrayList<>();
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.ffalcinelli.buffalo.crypto;
+
+import javax.crypto.Cipher;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+
+/**
+ * An {@link Encryptor} built upon the Java Cryptography Architecture "RSA/ECB/PKCS1Padding" cipher, producing the same
+ * line broken Base64 format of {@link JSRsa}.
+ */
+public class JCARsa implements Encryptor {
+
+    private static final String TRANSFORMATION = "RSA/ECB/PKCS1Padding";
+
+    private final PublicKey key;
+
+    /**
+     * Build an RSA encryptor. Modulus and Exponent must be read from login page, they could change from device to
+     * device.
+     *
+     * @param exp The exponent (Integer string representation).
+     * @param mod The modulus (hex string).
+     * @throws IllegalArgumentException If the key is not a valid RSA public key.
+     */
+    public JCARsa(String exp, String mod) {
+        try {
+            this.key = KeyFactory.getInstance("RSA").generatePublic(
+                    new RSAPublicKeySpec(new BigInteger(mod, 16), new BigInteger(exp)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Invalid RSA public key", e);
+        }
+    }
+
+    /**
+     * Encrypt the given String, encoding it as the AirStation Javascript does.
+     *
+     * @param plainText The text to encrypt.
+     * @return The encrypted text.
+     * @throws IllegalArgumentException If the message is too long for the key.
+     */
+    @Override
+    public String encrypt(String plainText) {
+        byte[] cipherText;
+        try {
+            // Cipher instances are not thread safe, while getting one from the provider is cheap.
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            cipherText = cipher.doFinal(JSRsa.encodeUtf8(plainText));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Unable to encrypt the message", e);
+        }
+        // The Javascript drops the leading zero bytes of the cipher.
+        int offset = 0;
+        while (offset < cipherText.length - 1 && cipherText[offset] == 0)
+            offset++;
+        byte[] magnitude = new byte[cipherText.length - offset];
+        System.arraycopy(cipherText, offset, magnitude, 0, magnitude.length);
+        return JSRsa.base64(magnitude);
+    }
+}
@@ -6,11 +6,18 @@ import java.security.SecureRandom;
 /**
  * This is a Java translation of Buffalo AirStation Javascript RSA implementation.
  * <p>
+ * The whole encryption works on byte arrays: the padded message is built in place, the padding is drawn in bulk from
+ * a shared {@link SecureRandom} and the cipher bytes are written straight into the line broken Base64 output, so the
+ * result is the same the router's Javascript produces.
+ * <p>
  * Created by fabio on 24/02/17.
  */
 public class JSRsa implements Encryptor {
     private final static String b64map = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
-    private final static String b64pad = "=";
+    private final static char b64pad = '=';
+    private final static int LINE_LENGTH = 64;
+    // SecureRandom is thread safe, a single instance avoids seeding a new one for each message.
+    private final static SecureRandom RNG = new SecureRandom();
     private BigInteger exp;
     private BigInteger mod;
     private int len;
@@ -31,20 +38,20 @@ public class JSRsa implements Encryptor {
     String hex2b64(String h) {
         int i;
         int c;
-        String ret = "";
+        StringBuilder ret = new StringBuilder((h.length() * 2 + 8) / 3);
         for (i = 0; i + 3 <= h.length(); i += 3) {
             c = Integer.parseInt(h.substring(i, i + 3), 16);
-            ret += String.format("%c%c", b64map.charAt(c >> 6), b64map.charAt(c & 63));
+            ret.append(b64map.charAt(c >> 6)).append(b64map.charAt(c & 63));
         }
         if (i + 1 == h.length()) {
             c = Integer.parseInt(h.substring(i, i + 1), 16);
-            ret += String.format("%c", b64map.charAt(c << 2));
+            ret.append(b64map.charAt(c << 2));
         } else if (i + 2 == h.length()) {
             c = Integer.parseInt(h.substring(i, i + 2), 16);
-            ret += String.format("%c%c", b64map.charAt(c >> 2), b64map.charAt((c & 3) << 4));
+            ret.append(b64map.charAt(c >> 2)).append(b64map.charAt((c & 3) << 4));
         }
-        while ((ret.length() & 3) > 0) ret += b64pad;
-        return ret;
+        while ((ret.length() & 3) > 0) ret.append(b64pad);
+        return ret.toString();
     }
 
     String linebrk(String s, int n) {
@@ -57,49 +64,127 @@ public class JSRsa implements Encryptor {
         return sb.append(s.substring(i, s.length())).toString();
     }
 
-    // PKCS#1 (type 2, random) pad input string s to n bytes, and return a bigint
-    BigInteger pkcs1pad2(String s) {
-        int n = this.len;
-        if (n < s.length() + 11) { // TODO: fix for utf-8
-            throw new IllegalArgumentException("Message too long for RSA");
+    /**
+     * Encode the given bytes in Base64, breaking lines every 64 characters. This is the same as
+     * {@link #hexToBase64(String)} applied to the hex representation of the bytes.
+     *
+     * @param data The bytes to encode.
+     * @return The line broken Base64 text.
+     */
+    static String base64(byte[] data) {
+        int chars = (data.length + 2) / 3 * 4;
+        char[] out = new char[chars + Math.max(0, (chars - 1) / LINE_LENGTH)];
+        int o = 0;
+        int written = 0;
+        for (int i = 0; i < data.length; i += 3) {
+            int remaining = data.length - i;
+            int b = (data[i] & 0xff) << 16;
+            if (remaining > 1)
+                b |= (data[i + 1] & 0xff) << 8;
+            if (remaining > 2)
+                b |= data[i + 2] & 0xff;
+            for (int k = 0; k < 4; k++) {
+                if (written > 0 && written % LINE_LENGTH == 0)
+                    out[o++] = '\n';
+                out[o++] = k <= remaining ? b64map.charAt((b >> (18 - 6 * k)) & 63) : b64pad;
+                written++;
+            }
         }
+        return new String(out, 0, o);
+    }
 
-        int i = s.length() - 1;
-        byte[] ba = new byte[n];
-        while (i >= 0 && n > 0) {
-            int c = s.codePointAt(i--);
-            if (c < 128) { // encode using utf-8
-                ba[--n] = (byte) c;
-            } else if ((c > 127) && (c < 2048)) {
-                ba[--n] = (byte) ((c & 63) | 128);
-                ba[--n] = (byte) ((c >> 6) | 192);
+    /**
+     * Encode the given String using utf-8, one UTF-16 unit at a time as the Javascript does.
+     *
+     * @param s The String to encode.
+     * @return The encoded bytes.
+     */
+    static byte[] encodeUtf8(String s) {
+        int size = 0;
+        for (int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            size += c < 128 ? 1 : c < 2048 ? 2 : 3;
+        }
+        byte[] ba = new byte[size];
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            int c = s.charAt(i);
+            if (c < 128) {
+                ba[n++] = (byte) c;
+            } else if (c < 2048) {
+                ba[n++] = (byte) ((c >> 6) | 192);
+                ba[n++] = (byte) ((c & 63) | 128);
             } else {
-                ba[--n] = (byte) ((c & 63) | 128);
-                ba[--n] = (byte) (((c >> 6) & 63) | 128);
-                ba[--n] = (byte) ((c >> 12) | 224);
+                ba[n++] = (byte) ((c >> 12) | 224);
+                ba[n++] = (byte) (((c >> 6) & 63) | 128);
+                ba[n++] = (byte) ((c & 63) | 128);
             }
         }
+        return ba;
+    }
+
+    // PKCS#1 (type 2, random) pad input string s to n bytes
+    byte[] pkcs1pad2Bytes(String s) {
+        int n = this.len;
+        if (n < s.length() + 11) {
+            throw new IllegalArgumentException("Message too long for RSA");
+        }
+        byte[] message = encodeUtf8(s);
+        if (n < message.length + 11) {
+            throw new IllegalArgumentException("Message too long for RSA");
+        }
+
+        byte[] ba = new byte[n];
+        n -= message.length;
+        System.arraycopy(message, 0, ba, n, message.length);
         ba[--n] = 0x0;
-        SecureRandom rng = new SecureRandom();
+        // random non-zero pad, drawn in bulk and redrawing only the zero bytes
+        byte[] pad = new byte[n - 2];
+        RNG.nextBytes(pad);
         byte[] x = new byte[1];
-        while (n > 2) { // random non-zero pad
-            x[0] = 0x0;
-            while (x[0] == 0x0)
-                rng.nextBytes(x);
-            ba[--n] = x[0];
+        for (int i = 0; i < pad.length; i++) {
+            while (pad[i] == 0x0) {
+                RNG.nextBytes(x);
+                pad[i] = x[0];
+            }
         }
-        ba[--n] = 2;
-        ba[--n] = 0x0;
-        return new BigInteger(ba);
+        System.arraycopy(pad, 0, ba, 2, pad.length);
+        ba[1] = 2;
+        ba[0] = 0x0;
+        return ba;
+    }
+
+    // PKCS#1 (type 2, random) pad input string s to n bytes, and return a bigint
+    BigInteger pkcs1pad2(String s) {
+        return new BigInteger(pkcs1pad2Bytes(s));
     }
 
     String hexToBase64(String data) {
         if (data != null && !data.equals("")) {
-            return linebrk(hex2b64(data), 64);
+            return linebrk(hex2b64(data), LINE_LENGTH);
         }
         return "";
     }
 
+    /**
+     * Encrypt the given String, returning the cipher as an unsigned big endian byte array without leading zeros.
+     *
+     * @param plainText The text to encrypt.
+     * @return The cipher bytes.
+     */
+    byte[] encryptToBytes(String plainText) {
+        BigInteger m = new BigInteger(1, pkcs1pad2Bytes(plainText));
+        byte[] c = m.modPow(exp, mod).toByteArray();
+        int offset = 0;
+        while (offset < c.length - 1 && c[offset] == 0)
+            offset++;
+        if (offset == 0)
+            return c;
+        byte[] magnitude = new byte[c.length - offset];
+        System.arraycopy(c, offset, magnitude, 0, magnitude.length);
+        return magnitude;
+    }
+
     /**
      * Encrypt the given String using AirStation's RSA implementation.
      *
@@ -107,12 +192,6 @@ public class JSRsa implements Encryptor {
      * @return The encrypted text.
      */
     public String encrypt(String plainText) {
-        BigInteger m = pkcs1pad2(plainText);
-        BigInteger c = m.modPow(exp, mod);
-        String h = c.toString(16);
-        if ((h.length() & 1) == 0) {
-            return hexToBase64(h);
-        }
-        return hexToBase64("0" + h);
+        return base64(encryptToBytes(plainText));
     }
 }
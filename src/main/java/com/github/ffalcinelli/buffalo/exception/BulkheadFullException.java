@@ -0,0 +1,11 @@
+package com.github.ffalcinelli.buffalo.exception;
+
+/**
+ * Thrown when a request is rejected because too many requests to the same device are already pending.
+ */
+public class BulkheadFullException extends AirStationException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.ffalcinelli.buffalo.exception;
+
+/**
+ * Thrown when a request fails fast because the circuit breaker of the device is open.
+ */
+public class CircuitOpenException extends AirStationException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.ffalcinelli.buffalo.exception;
+
+/**
+ * Thrown when a request is dropped because its deadline expired while it was waiting for a free slot.
+ */
+public class DeadlineExceededException extends AirStationException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.ffalcinelli.buffalo.exception;
+
+/**
+ * Thrown when the device answers a request with its login page, because the session has expired.
+ */
+public class SessionExpiredException extends AirStationException {
+
+    public SessionExpiredException(String message) {
+        super(message);
+    }
+}
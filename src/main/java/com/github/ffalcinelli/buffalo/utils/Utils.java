@@ -3,7 +3,7 @@ package com.github.ffalcinelli.buffalo.utils;
 import org.json.JSONObject;
 
 import java.io.Closeable;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A class for utilities and shortcuts. DRY.
@@ -29,6 +29,40 @@ public class Utils {
         return def;
     }
 
+    /**
+     * Given a {@link JSONObject} retrieves the int value associated with the given key parameter. If
+     * the {@link JSONObject} has no such key, then the default value will be returned and the key, value pair got set
+     * into the {@link JSONObject} itself
+     *
+     * @param json The {@link JSONObject}
+     * @param key  The key to retrieve
+     * @param def  The default value to use if no such key exists
+     * @return The value either default or actually associated with key
+     */
+    public static int getIntOrDefault(JSONObject json, String key, int def) {
+        if (json.has(key))
+            return json.getInt(key);
+        json.put(key, def);
+        return def;
+    }
+
+    /**
+     * Given a {@link JSONObject} retrieves the boolean value associated with the given key parameter. If
+     * the {@link JSONObject} has no such key, then the default value will be returned and the key, value pair got set
+     * into the {@link JSONObject} itself
+     *
+     * @param json The {@link JSONObject}
+     * @param key  The key to search for
+     * @param def  The default value
+     * @return The boolean value associated with the key or the default value if no such key is present
+     */
+    public static boolean getBooleanOrDefault(JSONObject json, String key, boolean def) {
+        if (json.has(key))
+            return json.getBoolean(key);
+        json.put(key, def);
+        return def;
+    }
+
     /**
      * Checks whether the passed string is null or empty
      *
@@ -60,10 +94,9 @@ public class Utils {
      * @return The random number
      */
     public static int getRandomInt(int digits) {
-        Random rnd = new Random();
         digits = digits > 1 ? digits - 1 : digits;
-        Double base = Math.pow(10, digits);
-        Double max = Math.pow(10, digits + 1) - base - 1;
-        return base.intValue() + rnd.nextInt(max.intValue());
+        int base = (int) Math.pow(10, digits);
+        int max = (int) Math.pow(10, digits + 1) - base - 1;
+        return base + ThreadLocalRandom.current().nextInt(max);
     }
 }
@@ -9,12 +9,16 @@ import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
 import static org.junit.Assert.assertEquals;
@@ -66,6 +70,19 @@ public abstract class AbstractAirStationTestCase extends AbstractTestCase {
     NasSettings nas;
     MockWebServer server;
     AirStation airStation;
+    // When set, the mocked device answers with its login page until the next login.
+    volatile boolean sessionExpired;
+    // When set, the mocked device drops every connection.
+    volatile boolean unreachable;
+    // The mocked device drops that many connections, then answers the ones after as usual.
+    AtomicInteger drops = new AtomicInteger();
+    // The mocked device reads that many requests and never answers them.
+    AtomicInteger hangs = new AtomicInteger();
+    // The mocked device sends that many get_json_param bodies after a delay of two seconds.
+    AtomicInteger stalls = new AtomicInteger();
+    AtomicInteger logins = new AtomicInteger();
+    // When set, the mocked device holds every login until the latch is released.
+    volatile CountDownLatch loginGate;
 
     @Before
     public void setUp() throws IOException {
@@ -78,8 +95,12 @@ public abstract class AbstractAirStationTestCase extends AbstractTestCase {
             public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
 
                 try {
+                    if (unreachable || (drops.get() > 0 && drops.getAndDecrement() > 0))
+                        return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                    if (hangs.get() > 0 && hangs.getAndDecrement() > 0)
+                        return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
                     if (request.getPath().equals("/cgi-bin/cgi?req=twz")) {
-                        if (isLoggedIn())
+                        if (isLoggedIn() && !sessionExpired)
                             return mockHtmlResponse("main");
                         else
                             return mockHtmlResponse("login");
@@ -88,6 +109,11 @@ public abstract class AbstractAirStationTestCase extends AbstractTestCase {
                         if (request.getMethod().equalsIgnoreCase("GET"))
                             return mockHtmlResponse("login");
                         else {
+                            logins.incrementAndGet();
+                            CountDownLatch gate = loginGate;
+                            if (gate != null)
+                                gate.await();
+                            sessionExpired = false;
                             String url = baseUrl.toString();
                             url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
                             return new MockResponse().setResponseCode(302).setHeader("Location", url + "/cgi-bin/cgi?req=twz");
@@ -97,12 +123,18 @@ public abstract class AbstractAirStationTestCase extends AbstractTestCase {
                         if (request.getMethod().equalsIgnoreCase("GET"))
                             return mockHtmlResponse("login");
                     }
+                    if (sessionExpired && request.getPath().matches("/cgi-bin/cgi\\?req=(fnc|frm|set)&.*"))
+                        return mockHtmlResponse("login");
                     if (request.getPath().startsWith("/cgi-bin/cgi?req=frm&frm=dhcps_lease.html&rnd=")) {
                         return mockHtmlResponse("dhcp_reserv");
                     }
                     for (String resource : jsonResources) {
-                        if (request.getPath().startsWith(String.format("/cgi-bin/cgi?req=fnc&fnc=%%24{get_json_param(%s,", resource)))
-                            return mockJsonResponse(resource);
+                        if (request.getPath().startsWith(String.format("/cgi-bin/cgi?req=fnc&fnc=%%24{get_json_param(%s,", resource))) {
+                            MockResponse response = mockJsonResponse(resource);
+                            if (stalls.get() > 0 && stalls.getAndDecrement() > 0)
+                                response.setBodyDelay(2, TimeUnit.SECONDS);
+                            return response;
+                        }
                     }
                     for (String element : formElements) {
 //                        System.out.println(request.getBody().readString(Charset.defaultCharset()));
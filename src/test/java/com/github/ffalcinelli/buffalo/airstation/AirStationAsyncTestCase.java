@@ -2,6 +2,8 @@ package com.github.ffalcinelli.buffalo.airstation;
 
 import com.github.ffalcinelli.buffalo.exception.AirStationException;
 import com.github.ffalcinelli.buffalo.exception.AuthenticationException;
+import com.github.ffalcinelli.buffalo.models.NasSettings;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
 import junit.framework.TestCase;
 import okhttp3.*;
 import org.json.JSONArray;
@@ -11,8 +13,10 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -93,6 +97,20 @@ public class AirStationAsyncTestCase extends AbstractAirStationTestCase {
         assertTrue(future.result().getBoolean("SUPPORT"));
     }
 
+    @Test
+    public void devices() throws Throwable {
+        Future<List<NetworkDevice>> devices = new Future<>();
+        airStation.getDevices(devices);
+        assertEquals(2, devices.result().size());
+    }
+
+    @Test
+    public void nasSettings() throws Throwable {
+        Future<NasSettings> nas = new Future<>();
+        airStation.getNasSettings(nas);
+        assertFalse(nas.result().isDlnaEnabled());
+    }
+
     @Test
     public void device() throws Throwable {
         airStation.getDevice(future);
@@ -306,11 +324,30 @@ public class AirStationAsyncTestCase extends AbstractAirStationTestCase {
         jsonArrayFuture.result();
     }
 
+    @Test
+    public void addressReservationNotLoggedInNotifiedOnce() throws Exception {
+        final AtomicInteger notifications = new AtomicInteger();
+        airStation.getAdapter().close();
+        airStation.getDhcpReservation(new AsyncCallback<JSONArray>() {
+            @Override
+            public void onFailure(Throwable t) {
+                assertTrue(t instanceof IllegalStateException);
+                notifications.incrementAndGet();
+            }
+
+            @Override
+            public void onSuccess(JSONArray data) {
+                notifications.incrementAndGet();
+            }
+        });
+        Thread.sleep(200);
+        assertEquals(1, notifications.get());
+    }
+
     @Test(expected = ConnectException.class)
     public void addressReservationNotConnected() throws Throwable {
         Future<JSONArray> jsonArrayFuture = new Future<>();
         server.close();
-        airStation.getAdapter().close();
         airStation.getDhcpReservation(jsonArrayFuture);
         jsonArrayFuture.result();
     }
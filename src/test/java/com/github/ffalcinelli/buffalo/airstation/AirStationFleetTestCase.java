@@ -0,0 +1,89 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AirStationFleetTestCase extends AbstractAirStationTestCase {
+
+    AirStationFleet fleet;
+
+    @Override
+    public void setupConnection() throws IOException {
+        fleet = new AirStationFleet();
+        for (int i = 0; i < 4; i++) {
+            fleet.newAirStation(baseUrl.toString()).login("admin", "password");
+        }
+    }
+
+    @Override
+    public void tearDown() {
+        fleet.getClient().dispatcher().executorService().shutdown();
+        super.tearDown();
+    }
+
+    @Override
+    public boolean isLoggedIn() {
+        // Each fleet device opens its own session, so the mocked device always asks for a login.
+        return false;
+    }
+
+    @Test
+    public void sharedResources() {
+        AirStation first = fleet.getAirStations().get(0);
+        AirStation second = fleet.getAirStations().get(1);
+        assertNotSame(first.getAdapter(), second.getAdapter());
+        assertTrue(first.getAdapter().isLoggedIn());
+        assertTrue(second.getAdapter().isLoggedIn());
+    }
+
+    @Test
+    public void forEach() throws InterruptedException, ExecutionException {
+        List<Future<JSONObject>> results = fleet.forEach(new AirStationFleet.Operation<JSONObject>() {
+            @Override
+            public JSONObject apply(AirStation airStation) throws IOException {
+                return airStation.getDevice();
+            }
+        }, 2);
+        assertEquals(4, results.size());
+        for (Future<JSONObject> result : results) {
+            assertEquals("BUFFALO INC", result.get().getString("VENDOR"));
+        }
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void forEachFailure() throws InterruptedException, ExecutionException {
+        List<Future<Void>> results = fleet.forEach(new AirStationFleet.Operation<Void>() {
+            @Override
+            public Void apply(AirStation airStation) throws IOException {
+                throw new IOException("failure");
+            }
+        }, 2);
+        results.get(0).get();
+    }
+
+    @Test
+    public void close() throws IOException {
+        fleet.close();
+        assertTrue(fleet.getAirStations().isEmpty());
+        assertTrue(fleet.getClient().dispatcher().executorService().isShutdown());
+        assertEquals(0, fleet.getClient().connectionPool().connectionCount());
+    }
+
+    @Test
+    public void remove() {
+        AirStation airStation = fleet.getAirStations().get(0);
+        assertTrue(fleet.remove(airStation));
+        assertEquals(3, fleet.getAirStations().size());
+        assertSame(fleet.getClient().dispatcher(), fleet.getClient().newBuilder().build().dispatcher());
+    }
+}
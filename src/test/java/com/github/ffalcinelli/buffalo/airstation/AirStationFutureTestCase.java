@@ -0,0 +1,190 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.EnumSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertEquals;
+
+public class AirStationFutureTestCase extends AbstractAirStationTestCase {
+
+    AirStationAsync async;
+    ExecutorService executor;
+
+    @Override
+    public void setupConnection() throws IOException {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "completion");
+            }
+        });
+        async = new AirStationAsync(airStation, executor);
+    }
+
+    @Override
+    public void tearDown() {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    @Test
+    public void chain() throws Exception {
+        JSONObject result = async.login("admin", "password")
+                .then(new AirStationFuture.Continuation<JSONObject, JSONObject>() {
+                    @Override
+                    public AirStationFuture<JSONObject> apply(JSONObject value) {
+                        assertResultOk(value);
+                        return async.getDevice();
+                    }
+                })
+                .then(new AirStationFuture.Continuation<JSONObject, JSONObject>() {
+                    @Override
+                    public AirStationFuture<JSONObject> apply(JSONObject value) {
+                        assertEquals("BUFFALO INC", value.getString("VENDOR"));
+                        return async.guest(true);
+                    }
+                })
+                .get(1, TimeUnit.SECONDS);
+        assertResultOk(result);
+    }
+
+    @Test
+    public void callbacksRunOnExecutor() throws Exception {
+        async.login("admin", "password").get(1, TimeUnit.SECONDS);
+        final AirStationFuture<String> threadName = new AirStationFuture<>();
+        async.getIcon().addCallback(new AsyncCallback<JSONObject>() {
+            @Override
+            public void onFailure(Throwable t) {
+                threadName.onFailure(t);
+            }
+
+            @Override
+            public void onSuccess(JSONObject data) {
+                threadName.onSuccess(Thread.currentThread().getName());
+            }
+        });
+        assertEquals("completion", threadName.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = ConnectException.class)
+    public void failure() throws Throwable {
+        server.close();
+        try {
+            async.login("admin", "password").get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        MockWebServer slowServer = new MockWebServer();
+        slowServer.enqueue(new MockResponse().setBody("slow").throttleBody(1, 1, TimeUnit.SECONDS));
+        slowServer.start();
+        try {
+            AirStationAsync slow = new AirStationAsync(new AirStation(slowServer.url("/").toString()), executor);
+            AirStationFuture<JSONObject> future = slow.login("admin", "password");
+            slowServer.takeRequest(1, TimeUnit.SECONDS);
+            assertTrue(future.cancel(true));
+            assertTrue(future.isCancelled());
+            try {
+                future.get();
+                fail("The future should be cancelled");
+            } catch (CancellationException expected) {
+                assertEquals(0, slow.getAirStation().getBulkhead().getQueueLength());
+            }
+            // The body takes four seconds to arrive: the slot is freed that early only if the call was cancelled.
+            awaitIdle(slow.getAirStation().getBulkhead());
+        } finally {
+            closeIgnoreException(slowServer);
+        }
+    }
+
+    @Test
+    public void cancelJSONParam() throws Exception {
+        async.login("admin", "password").get(1, TimeUnit.SECONDS);
+        stalls.set(1);
+        AirStationFuture<JSONObject> first = async.getIcon();
+        AirStationFuture<JSONObject> second = async.getJSONParam(ICON);
+        assertEquals(1, airStation.getSingleFlight().getCoalescedCount());
+        assertTrue(first.cancel(true));
+        // The other caller still waits for the shared call.
+        Thread.sleep(50);
+        assertEquals(1, airStation.getBulkhead().getActiveCount());
+        assertTrue(second.cancel(true));
+        awaitIdle(airStation.getBulkhead());
+        assertEquals(0, airStation.getSingleFlight().getInFlightCount());
+        assertTrue(async.getIcon().get(1, TimeUnit.SECONDS).getBoolean("INTERNET"));
+    }
+
+    @Test
+    public void cancelFlightShares() {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        AirStationFuture<String> first = new AirStationFuture<>();
+        AirStationFuture<String> second = new AirStationFuture<>();
+        SingleFlight<String, String>.Flight flight = flights.join("key", first);
+        assertNull(flights.join("key", second));
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        flight.track(new Cancellable() {
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+
+            @Override
+            public boolean isCanceled() {
+                return cancelled.get();
+            }
+        });
+        assertTrue(first.cancel(true));
+        assertFalse(cancelled.get());
+        assertTrue(second.cancel(true));
+        assertTrue(cancelled.get());
+        assertEquals(0, flights.getInFlightCount());
+    }
+
+    private static void awaitIdle(Bulkhead bulkhead) throws InterruptedException {
+        for (int i = 0; i < 100 && bulkhead.getActiveCount() > 0; i++)
+            Thread.sleep(10);
+        assertEquals(0, bulkhead.getActiveCount());
+    }
+
+    @Test
+    public void alreadyCompleted() throws Exception {
+        assertEquals("value", AirStationFuture.succeeded("value", executor).get());
+        try {
+            AirStationFuture.failed(new IOException("failure"), executor).get();
+        } catch (ExecutionException e) {
+            assertEquals("failure", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void jsonParams() throws Exception {
+        async.login("admin", "password").get(1, TimeUnit.SECONDS);
+        JSONParamSnapshot snapshot = async.getJSONParams(EnumSet.of(WIRELESS, GUEST, QOS)).get(1, TimeUnit.SECONDS);
+        assertTrue(snapshot.isComplete());
+        assertTrue(snapshot.get(QOS).getBoolean("SUPPORT"));
+        assertEquals(0, async.getJSONParams(EnumSet.noneOf(RequestAdapter.JSONFunction.class))
+                .get(1, TimeUnit.SECONDS).getValues().size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class AirStationPollerTestCase extends AbstractAirStationTestCase {
+
+    @Override
+    public void setupConnection() throws IOException {
+        airStation.login("admin", "password");
+    }
+
+    @Test
+    public void adaptiveInterval() throws InterruptedException {
+        final CountDownLatch results = new CountDownLatch(4);
+        final AtomicBoolean changed = new AtomicBoolean();
+        try (AirStationPoller poller = new AirStationPoller(new JSONObject()
+                .put("minInterval", 10).put("maxInterval", 80).put("jitter", 0))) {
+            poller.addListener(new PollListener() {
+                @Override
+                public void onResult(AirStation airStation, JSONFunction param, JSONObject data, boolean change) {
+                    assertEquals(ICON, param);
+                    changed.compareAndSet(false, change);
+                    results.countDown();
+                }
+
+                @Override
+                public void onFailure(AirStation airStation, JSONFunction param, Throwable t) {
+                }
+            });
+            AirStationPoller.Poll poll = poller.poll(airStation, ICON);
+            assertTrue(results.await(5, TimeUnit.SECONDS));
+            assertFalse(changed.get());
+            assertEquals(80, poll.getInterval());
+        }
+    }
+
+    @Test
+    public void failureBacksOff() throws Exception {
+        final CountDownLatch failures = new CountDownLatch(1);
+        airStation.close();
+        try (AirStationPoller poller = new AirStationPoller(new JSONObject()
+                .put("minInterval", 10).put("maxInterval", 500))) {
+            poller.addListener(new PollListener() {
+                @Override
+                public void onResult(AirStation airStation, JSONFunction param, JSONObject data, boolean changed) {
+                }
+
+                @Override
+                public void onFailure(AirStation airStation, JSONFunction param, Throwable t) {
+                    failures.countDown();
+                }
+            });
+            AirStationPoller.Poll poll = poller.poll(airStation, BUSY);
+            assertTrue(failures.await(5, TimeUnit.SECONDS));
+            assertEquals(500, poll.getInterval());
+        }
+    }
+
+    @Test
+    public void remove() {
+        try (AirStationPoller poller = new AirStationPoller()) {
+            AirStationPoller.Poll icon = poller.poll(airStation, ICON);
+            poller.poll(airStation, DEVCTRL, 1000, 2000);
+            assertEquals(2, poller.getPolls().size());
+            poller.remove(airStation);
+            assertTrue(icon.isCancelled());
+            assertTrue(poller.getPolls().isEmpty());
+        }
+    }
+
+    @Test
+    public void jitter() {
+        try (AirStationPoller poller = new AirStationPoller()) {
+            for (int i = 0; i < 100; i++) {
+                long delay = poller.jittered(1000);
+                assertTrue(delay >= 800 && delay <= 1200);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        try (AirStationPoller poller = new AirStationPoller()) {
+            poller.poll(airStation, ICON, 100, 10);
+        }
+    }
+}
@@ -2,14 +2,32 @@ package com.github.ffalcinelli.buffalo.airstation;
 
 import com.github.ffalcinelli.buffalo.exception.AirStationException;
 import com.github.ffalcinelli.buffalo.exception.AuthenticationException;
+import com.github.ffalcinelli.buffalo.exception.DeadlineExceededException;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
 import junit.framework.TestCase;
 import okhttp3.*;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
 import java.io.IOException;
-
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
 import static junit.framework.TestCase.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
@@ -75,6 +93,68 @@ public class AirStationTestCase extends AbstractAirStationTestCase {
         assertTrue(response.getBoolean("INTERNET"));
     }
 
+    @Test
+    public void unchangedResponse() throws IOException {
+        JSONObject response = airStation.getIcon();
+        assertSame(response, airStation.getIcon());
+        assertNotSame(response, airStation.getDevice());
+        airStation.close();
+        airStation.login("admin", "password");
+        assertNotSame(response, airStation.getIcon());
+    }
+
+    @Test
+    public void readOnlyResponse() throws IOException {
+        final JSONObject response = airStation.getWireless();
+        final JSONArray interfaces = response.getJSONArray("INTERFACE");
+        assertReadOnly(new Runnable() {
+            @Override
+            public void run() {
+                response.put("FOO", "BAR");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            @Override
+            public void run() {
+                response.remove("INTERFACE");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            @Override
+            public void run() {
+                response.keySet().remove("INTERFACE");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            @Override
+            public void run() {
+                interfaces.put("FOO");
+            }
+        });
+        assertReadOnly(new Runnable() {
+            @Override
+            public void run() {
+                interfaces.getJSONObject(0).put("BAND", "5GHz");
+            }
+        });
+        assertTrue(response.has("INTERFACE"));
+        assertEquals("2.4GHz", interfaces.getJSONObject(0).getString("BAND"));
+
+        JSONObject copy = new JSONObject(response.toString());
+        copy.getJSONArray("INTERFACE").getJSONObject(0).put("BAND", "5GHz");
+        assertEquals("5GHz", copy.getJSONArray("INTERFACE").getJSONObject(0).getString("BAND"));
+        assertSame(response, airStation.getWireless());
+    }
+
+    private static void assertReadOnly(Runnable change) {
+        try {
+            change.run();
+            fail("Read only response changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
     @Test
     public void lang() throws IOException {
         JSONObject response = airStation.getLang();
@@ -258,6 +338,48 @@ public class AirStationTestCase extends AbstractAirStationTestCase {
         assertEquals("192.168.11.3", jsonArray.getJSONObject(0).get("IP"));
     }
 
+    @Test
+    public void devices() throws IOException {
+        List<NetworkDevice> devices = airStation.getDevices();
+        assertEquals(2, devices.size());
+        assertEquals("00:00:00:00:00:0A", devices.get(0).getMacAddress());
+    }
+
+    @Test
+    public void typedSettings() throws IOException {
+        assertEquals("Buffalo-G-274A", airStation.getWifiSettings().get(0).getSsid());
+        assertEquals("Guest-274A", airStation.getGuestSettings().getSsid());
+        assertFalse(airStation.getNasSettings().isSambaEnabled());
+    }
+
+    @Test
+    public void dhcpLeases() throws IOException {
+        final List<NetworkDevice> devices = new ArrayList<>();
+        int count = airStation.getDhcpLeases(new DhcpLeaseListener() {
+            @Override
+            public void onLease(NetworkDevice device) {
+                devices.add(device);
+            }
+        });
+        assertEquals(airStation.getDhcpReservation().length(), count);
+        assertEquals(count, devices.size());
+        assertEquals("192.168.11.3", devices.get(0).getIpAddress());
+    }
+
+    @Test
+    public void openDhcpLeases() throws IOException {
+        int count = 0;
+        try (DhcpLeaseReader reader = airStation.openDhcpLeases()) {
+            assertEquals(1, airStation.getBulkhead().getActiveCount());
+            while (reader.next()) {
+                if (count++ == 0)
+                    assertEquals("192.168.11.3", reader.getIpAddress());
+            }
+        }
+        assertEquals(0, airStation.getBulkhead().getActiveCount());
+        assertEquals(airStation.getDhcpReservation().length(), count);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void addressReservationNotLoggedIn() throws IOException {
         airStation.close();
@@ -268,4 +390,282 @@ public class AirStationTestCase extends AbstractAirStationTestCase {
     public void editDhcpEntry() throws IOException {
         assertResultOk(airStation.updateDhcpReservation(device));
     }
+
+    @Test
+    public void concurrencySettings() {
+        assertEquals(AirStation.DEFAULT_MAX_REQUESTS_PER_HOST, settings.getInt("maxRequestsPerHost"));
+        assertEquals(AirStation.DEFAULT_MAX_QUEUED_REQUESTS, settings.getInt("maxQueuedRequests"));
+        AirStation other = new AirStation(new JSONObject().put("url", baseUrl.toString()).put("maxRequestsPerHost", 2));
+        assertEquals(2, other.getBulkhead().getMaxConcurrent());
+        assertEquals(0, other.getBulkhead().getRejectedCount());
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void callTimeout() throws IOException {
+        MockWebServer slowServer = new MockWebServer();
+        slowServer.enqueue(new MockResponse().setBody("slow body").throttleBody(1, 1, TimeUnit.SECONDS));
+        slowServer.start();
+        try {
+            AirStation slow = new AirStation(new JSONObject()
+                    .put("url", slowServer.url("/").toString())
+                    .put("callTimeout", 200));
+            slow.execute(slow.getAdapter().getHomeRequest(), new ResponseHandler<String>() {
+                @Override
+                public String handle(Response response) throws IOException {
+                    return response.body().string();
+                }
+            });
+        } finally {
+            closeIgnoreException(slowServer);
+        }
+    }
+
+    @Test
+    public void jsonParams() throws IOException {
+        JSONParamSnapshot snapshot = airStation.getJSONParams(EnumSet.of(ICON, DEVCTRL, DEVICE, BUSY));
+        assertTrue(snapshot.isComplete());
+        assertEquals(4, snapshot.getValues().size());
+        assertEquals("BUFFALO INC", snapshot.get(DEVICE).getString("VENDOR"));
+        assertTrue(snapshot.get(ICON).getBoolean("INTERNET"));
+        assertTrue(snapshot.getTimestamp() > 0);
+    }
+
+    @Test
+    public void jsonParamsPartialFailure() throws IOException {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("maxRequestsPerHost", 1)
+                .put("maxQueuedRequests", 0));
+        airStation.login("admin", "password");
+        JSONParamSnapshot snapshot = airStation.getJSONParams(EnumSet.of(ICON, DEVCTRL));
+        assertFalse(snapshot.isComplete());
+        assertEquals(1, snapshot.getValues().size());
+        assertEquals(1, snapshot.getFailures().size());
+        assertEquals(1, airStation.getBulkhead().getRejectedCount());
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("maxRequestsPerHost", 1));
+        airStation.login("admin", "password");
+        SingleFlight<RequestAdapter.JSONFunction, JSONObject> singleFlight = airStation.getSingleFlight();
+        long leaders = singleFlight.getLeaderCount();
+        // Hold the only slot, so that the first request stays in flight while the others join it.
+        airStation.getBulkhead().acquire();
+        AirStationFuture<JSONObject> first = new AirStationFuture<>();
+        AirStationFuture<JSONObject> second = new AirStationFuture<>();
+        airStation.getJSONParam(DEVICE, first);
+        airStation.getJSONParam(DEVICE, second);
+        final AirStationFuture<JSONObject> third = new AirStationFuture<>();
+        Thread sync = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    third.onSuccess(airStation.getJSONParam(DEVICE));
+                } catch (Exception e) {
+                    third.onFailure(e);
+                }
+            }
+        });
+        sync.start();
+        while (singleFlight.getCoalescedCount() < 2)
+            Thread.sleep(10);
+        assertEquals(1, singleFlight.getInFlightCount());
+        airStation.getBulkhead().release();
+        JSONObject device = first.get(5, TimeUnit.SECONDS);
+        assertEquals("BUFFALO INC", device.getString("VENDOR"));
+        assertSame(device, second.get(5, TimeUnit.SECONDS));
+        assertSame(device, third.get(5, TimeUnit.SECONDS));
+        assertEquals(leaders + 1, singleFlight.getLeaderCount());
+        assertEquals(0, singleFlight.getInFlightCount());
+        // A new request starts a new flight, the unchanged body gives back the same instance.
+        assertSame(device, airStation.getJSONParam(DEVICE));
+        assertEquals(leaders + 2, singleFlight.getLeaderCount());
+    }
+
+    @Test
+    public void priorityLanes() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("maxRequestsPerHost", 1));
+        airStation.login("admin", "password");
+        class BackgroundFuture extends AirStationFuture<JSONObject> implements Prioritized {
+            private final long deadline;
+
+            BackgroundFuture(long deadline) {
+                this.deadline = deadline;
+            }
+
+            @Override
+            public Bulkhead.Priority getPriority() {
+                return Bulkhead.Priority.BACKGROUND;
+            }
+
+            @Override
+            public long getDeadline() {
+                return deadline;
+            }
+        }
+        airStation.getBulkhead().acquire();
+        BackgroundFuture expiring = new BackgroundFuture(System.currentTimeMillis() + 20);
+        BackgroundFuture poll = new BackgroundFuture(0);
+        AirStationFuture<JSONObject> aoss = new AirStationFuture<>();
+        airStation.getJSONParam(ICON, expiring);
+        airStation.getJSONParam(DEVICE, poll);
+        airStation.aoss(aoss);
+        assertEquals(1, airStation.getBulkhead().getQueueLength(Bulkhead.Priority.INTERACTIVE));
+        Thread.sleep(50);
+        airStation.getBulkhead().release();
+        assertResultOk(aoss.get(5, TimeUnit.SECONDS));
+        assertEquals("BUFFALO INC", poll.get(5, TimeUnit.SECONDS).getString("VENDOR"));
+        // The interactive request jumped ahead of the background one queued before it.
+        List<String> paths = new ArrayList<>();
+        RecordedRequest request;
+        while ((request = server.takeRequest(100, TimeUnit.MILLISECONDS)) != null)
+            paths.add(request.getPath());
+        assertTrue(paths.get(paths.size() - 2).startsWith("/cgi-bin/cgi?req=set&"));
+        assertTrue(paths.get(paths.size() - 1).contains("get_json_param(DEVICE,"));
+        try {
+            expiring.get(5, TimeUnit.SECONDS);
+            fail("The expired request should have been dropped");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+        assertEquals(1, airStation.getBulkhead().getExpiredCount());
+    }
+
+    @Test
+    public void throttle() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("throttle", new JSONObject().put("busySampleInterval", 0).put("targetLatency", 10000)));
+        airStation.login("admin", "password");
+        Throttle throttle = airStation.getThrottle();
+        double rate = throttle.getRate();
+        while (server.takeRequest(100, TimeUnit.MILLISECONDS) != null)
+            ;
+        assertTrue(airStation.getIcon().getBoolean("INTERNET"));
+        assertTrue(throttle.getRate() > rate);
+        boolean sampled = false;
+        RecordedRequest request;
+        while ((request = server.takeRequest(1, TimeUnit.SECONDS)) != null)
+            sampled |= request.getPath().contains("get_json_param(BUSY,");
+        assertTrue(sampled);
+    }
+
+    @Test
+    public void throttleSynchronousReads() throws Exception {
+        closeIgnoreException(airStation);
+        // A token every 100 milliseconds, without a burst.
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("throttle", new JSONObject()
+                        .put("minRate", 600)
+                        .put("maxRate", 600)
+                        .put("burst", 1)
+                        .put("busySampleInterval", 60000)
+                        .put("defaultPriority", "BACKGROUND")));
+        airStation.login("admin", "password");
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++)
+            airStation.getIcon();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+        assertTrue(airStation.getThrottle().getThrottledCount() >= 3);
+    }
+
+    @Test
+    public void responseCache() throws IOException {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("cache", new JSONObject()));
+        airStation.login("admin", "password");
+        int requests = server.getRequestCount();
+        JSONObject device = airStation.getDevice();
+        assertSame(device, airStation.getDevice());
+        airStation.getBusy();
+        airStation.getBusy();
+        assertEquals(requests + 3, server.getRequestCount());
+        // A NAS setup invalidates the NAS dataset only.
+        JSONObject nas = airStation.getNas();
+        assertResultOk(airStation.nasBasicSetup(this.nas));
+        requests = server.getRequestCount();
+        // The NAS dataset is requested again, its unchanged body gives back the same instance.
+        assertSame(nas, airStation.getNas());
+        assertEquals(requests + 1, server.getRequestCount());
+        assertSame(device, airStation.getDevice());
+        assertEquals(2, airStation.getResponseCache().getHitCount());
+    }
+
+    @Test
+    public void staleRefreshInBackground() throws Exception {
+        closeIgnoreException(airStation);
+        // A token a second, so that the background refresh finds the bucket empty.
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("cache", new JSONObject()
+                        .put("staleWhileRevalidate", 60000)
+                        .put("ttl", new JSONObject().put("DEVICE", 100)))
+                .put("throttle", new JSONObject()
+                        .put("minRate", 60)
+                        .put("maxRate", 60)
+                        .put("burst", 1)
+                        .put("busySampleInterval", 60000)));
+        airStation.login("admin", "password");
+        JSONObject device = airStation.getDevice();
+        Throttle throttle = airStation.getThrottle();
+        assertEquals(0, throttle.getThrottledCount());
+        Thread.sleep(150);
+        assertSame(device, airStation.getDevice());
+        assertEquals(1, airStation.getResponseCache().getStaleHitCount());
+        assertEquals(1, throttle.getThrottledCount());
+    }
+
+    @Test
+    public void session() throws IOException {
+        Session session = airStation.getAdapter().getSession();
+        assertTrue(session.isValid());
+        Map<String, String> params = airStation.getAdapter().getDhcpEntryParams(device);
+        assertEquals(session.getWebSessionId(), params.get("sWebSessionid"));
+        assertEquals(session.getWebSessionNum(), params.get("sWebSessionnum"));
+        airStation.getAdapter().close();
+        assertSame(Session.NONE, airStation.getAdapter().getSession());
+        assertFalse(airStation.getAdapter().isLoggedIn());
+        // The session read before logging out is left untouched.
+        assertTrue(session.isValid());
+    }
+
+    @Test
+    public void concurrentUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                final RequestAdapter.JSONFunction param = RequestAdapter.JSONFunction.values()[i % 4];
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return airStation.getJSONParam(param);
+                    }
+                });
+                tasks.add(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        return airStation.getDhcpReservation();
+                    }
+                });
+            }
+            for (Future<Object> result : executor.invokeAll(tasks))
+                assertNotNull(result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(airStation.getAdapter().isLoggedIn());
+    }
 }
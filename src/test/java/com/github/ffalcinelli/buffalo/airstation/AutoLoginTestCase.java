@@ -0,0 +1,118 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.SessionExpiredException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class AutoLoginTestCase extends AbstractAirStationTestCase {
+
+    @Override
+    public void setupConnection() throws IOException {
+        airStation.login("admin", "password");
+    }
+
+    @Test
+    public void sync() throws IOException {
+        Session session = airStation.getAdapter().getSession();
+        sessionExpired = true;
+        assertEquals("BUFFALO INC", airStation.getDevice().getString("VENDOR"));
+        assertEquals(1, airStation.getAutoLoginCount());
+        assertEquals(2, logins.get());
+        assertNotSame(session, airStation.getAdapter().getSession());
+        assertTrue(airStation.getDhcpReservation() instanceof JSONArray);
+        assertEquals(1, airStation.getAutoLoginCount());
+    }
+
+    @Test
+    public void typed() throws IOException {
+        sessionExpired = true;
+        assertEquals(2, airStation.getDevices().size());
+        assertEquals(1, airStation.getAutoLoginCount());
+    }
+
+    @Test
+    public void dhcpLeaseReader() throws IOException {
+        sessionExpired = true;
+        try (DhcpLeaseReader reader = airStation.openDhcpLeases()) {
+            assertTrue(reader.next());
+        }
+        assertEquals(1, airStation.getAutoLoginCount());
+        assertEquals(0, airStation.getBulkhead().getActiveCount());
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        sessionExpired = true;
+        List<AirStationFuture<JSONObject>> futures = new ArrayList<>();
+        for (RequestAdapter.JSONFunction param : new RequestAdapter.JSONFunction[]{DEVICE, ICON, DEVCTRL, BUSY, LANG}) {
+            AirStationFuture<JSONObject> future = new AirStationFuture<>();
+            airStation.getJSONParam(param, future);
+            futures.add(future);
+        }
+        assertResultOk(airStation.wol("aa:bb:cc:dd:ee:ff"));
+        for (AirStationFuture<JSONObject> future : futures)
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, airStation.getAutoLoginCount());
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void readsDuringLogin() throws Exception {
+        sessionExpired = true;
+        loginGate = new CountDownLatch(1);
+        AirStationFuture<JSONObject> first = new AirStationFuture<>();
+        airStation.getJSONParam(DEVICE, first);
+        for (int i = 0; i < 100 && logins.get() < 2; i++)
+            Thread.sleep(10);
+        assertEquals(2, logins.get());
+        // The device still answers with its login page until it accepts the login held.
+        List<AirStationFuture<JSONObject>> futures = new ArrayList<>();
+        for (RequestAdapter.JSONFunction param : new RequestAdapter.JSONFunction[]{ICON, LANG, BUSY}) {
+            AirStationFuture<JSONObject> future = new AirStationFuture<>();
+            airStation.getJSONParam(param, future);
+            futures.add(future);
+        }
+        Thread.sleep(200);
+        loginGate.countDown();
+        assertNotNull(first.get(5, TimeUnit.SECONDS));
+        for (AirStationFuture<JSONObject> future : futures)
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, airStation.getAutoLoginCount());
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void alreadyLoggedIn() throws IOException {
+        Session session = airStation.getAdapter().getSession();
+        assertResultOk(airStation.login("admin", "password"));
+        assertEquals(1, logins.get());
+        assertSame(session, airStation.getAdapter().getSession());
+        sessionExpired = true;
+        assertResultOk(airStation.login("admin", "password"));
+        assertEquals(2, logins.get());
+        assertNotSame(session, airStation.getAdapter().getSession());
+    }
+
+    @Test(expected = SessionExpiredException.class)
+    public void disabled() throws IOException {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject().put("url", baseUrl.toString()).put("autoLogin", false));
+        airStation.login("admin", "password");
+        sessionExpired = true;
+        airStation.getDevice();
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.airstation.Bulkhead.Lane;
+import com.github.ffalcinelli.buffalo.airstation.Bulkhead.Priority;
+import com.github.ffalcinelli.buffalo.exception.BulkheadFullException;
+import com.github.ffalcinelli.buffalo.exception.DeadlineExceededException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BulkheadTestCase {
+
+    private Bulkhead bulkhead;
+    private AtomicInteger runs;
+    private Runnable task;
+
+    @Before
+    public void setUp() {
+        bulkhead = new Bulkhead(2, 1);
+        runs = new AtomicInteger();
+        task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void queueAndRelease() throws Exception {
+        bulkhead.submit(task);
+        bulkhead.submit(task);
+        bulkhead.submit(task);
+        assertEquals(2, runs.get());
+        assertEquals(2, bulkhead.getActiveCount());
+        assertEquals(1, bulkhead.getQueueLength());
+        bulkhead.release();
+        assertEquals(3, runs.get());
+        assertEquals(2, bulkhead.getActiveCount());
+        assertEquals(0, bulkhead.getQueueLength());
+        bulkhead.release();
+        bulkhead.release();
+        assertEquals(0, bulkhead.getActiveCount());
+    }
+
+    private Runnable named(final List<String> order, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void priorities() throws Exception {
+        bulkhead = new Bulkhead(1, 10);
+        List<String> order = new ArrayList<>();
+        Lane background = new Lane(Priority.BACKGROUND, 0, false);
+        bulkhead.submit(task);
+        bulkhead.submit(named(order, "b1"), background, null);
+        bulkhead.submit(named(order, "i1"), Lane.DEFAULT, null);
+        bulkhead.submit(named(order, "b2"), background, null);
+        bulkhead.submit(named(order, "i2"), Lane.DEFAULT, null);
+        assertEquals(2, bulkhead.getQueueLength(Priority.INTERACTIVE));
+        assertEquals(2, bulkhead.getQueueLength(Priority.BACKGROUND));
+        for (int i = 0; i < 4; i++)
+            bulkhead.release();
+        assertEquals(Arrays.asList("i1", "i2", "b1", "b2"), order);
+    }
+
+    @Test
+    public void deadlines() throws Exception {
+        bulkhead = new Bulkhead(1, 10);
+        bulkhead.submit(task);
+        try {
+            bulkhead.submit(task, new Lane(Priority.BACKGROUND, System.currentTimeMillis() - 1, false), null);
+            fail("Deadline should be expired");
+        } catch (DeadlineExceededException e) {
+            assertEquals(1, bulkhead.getExpiredCount());
+        }
+        List<String> order = new ArrayList<>();
+        bulkhead.submit(task, new Lane(Priority.BACKGROUND, System.currentTimeMillis() + 20, false),
+                named(order, "expired"));
+        bulkhead.submit(named(order, "sent"), new Lane(Priority.BACKGROUND, 0, false), null);
+        Thread.sleep(50);
+        bulkhead.release();
+        assertEquals(Arrays.asList("expired", "sent"), order);
+        assertEquals(2, bulkhead.getExpiredCount());
+        assertEquals(1, runs.get());
+        try {
+            bulkhead.acquire(new Lane(Priority.INTERACTIVE, System.currentTimeMillis() - 1, false));
+            fail("Deadline should be expired");
+        } catch (DeadlineExceededException e) {
+            assertEquals(3, bulkhead.getExpiredCount());
+        }
+    }
+
+    @Test
+    public void serial() throws Exception {
+        bulkhead = new Bulkhead(3, 10);
+        List<String> order = new ArrayList<>();
+        bulkhead.submit(named(order, "s1"), Lane.SERIAL, null);
+        bulkhead.submit(named(order, "s2"), Lane.SERIAL, null);
+        bulkhead.submit(named(order, "n"), Lane.DEFAULT, null);
+        assertEquals(Arrays.asList("s1", "n"), order);
+        assertEquals(1, bulkhead.getQueueLength());
+        bulkhead.release();
+        assertEquals(1, bulkhead.getQueueLength());
+        bulkhead.release(Lane.SERIAL);
+        assertEquals(Arrays.asList("s1", "n", "s2"), order);
+        assertEquals(1, bulkhead.getActiveCount());
+    }
+
+    @Test
+    public void reject() throws Exception {
+        bulkhead.submit(task);
+        bulkhead.submit(task);
+        bulkhead.submit(task);
+        try {
+            bulkhead.submit(task);
+            fail("Bulkhead should be full");
+        } catch (BulkheadFullException e) {
+            assertEquals(1, bulkhead.getRejectedCount());
+        }
+        try {
+            bulkhead.acquire();
+            fail("Bulkhead should be full");
+        } catch (BulkheadFullException e) {
+            assertEquals(2, bulkhead.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void acquireWaitsForRelease() throws Exception {
+        bulkhead.acquire();
+        bulkhead.acquire();
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (bulkhead.getQueueLength() == 0)
+                    Thread.yield();
+                bulkhead.release();
+            }
+        });
+        releaser.start();
+        bulkhead.acquire();
+        releaser.join();
+        assertEquals(2, bulkhead.getActiveCount());
+    }
+}
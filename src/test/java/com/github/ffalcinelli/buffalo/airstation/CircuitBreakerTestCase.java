@@ -0,0 +1,162 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.CircuitOpenException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.ffalcinelli.buffalo.airstation.CircuitBreaker.State.*;
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.ICON;
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class CircuitBreakerTestCase extends AbstractAirStationTestCase {
+
+    private CircuitBreaker breaker;
+    private final List<String> transitions = new ArrayList<>();
+
+    @Override
+    public void setupConnection() throws IOException {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("circuitBreaker", new JSONObject().put("failureThreshold", 2).put("cooldown", 100)));
+        airStation.login("admin", "password");
+        breaker = airStation.getCircuitBreaker();
+        breaker.addListener(new CircuitListener() {
+            @Override
+            public void onStateChange(AirStation source, CircuitBreaker.State previous, CircuitBreaker.State current) {
+                assertSame(airStation, source);
+                synchronized (transitions) {
+                    transitions.add(previous + ">" + current);
+                }
+            }
+        });
+    }
+
+    private void open() {
+        unreachable = true;
+        for (int i = 0; i < 2; i++) {
+            try {
+                airStation.getIcon();
+                fail("The device should be unreachable");
+            } catch (IOException e) {
+                assertFalse(e instanceof CircuitOpenException);
+            }
+        }
+        assertEquals(OPEN, breaker.getState());
+    }
+
+    private void awaitState(CircuitBreaker.State state) throws InterruptedException {
+        for (int i = 0; i < 500 && breaker.getState() != state; i++)
+            Thread.sleep(10);
+        assertEquals(state, breaker.getState());
+    }
+
+    @Test
+    public void failFastAndRecover() throws Exception {
+        assertTrue(airStation.getIcon().getBoolean("INTERNET"));
+        open();
+        long requests = server.getRequestCount();
+        try {
+            airStation.getIcon();
+            fail("The circuit should be open");
+        } catch (CircuitOpenException e) {
+            assertEquals(1, breaker.getRejectedCount());
+        }
+        AirStationFuture<JSONObject> future = new AirStationFuture<>();
+        airStation.getJSONParam(ICON, future);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("The circuit should be open");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof CircuitOpenException);
+        }
+        assertEquals(requests, server.getRequestCount());
+
+        unreachable = false;
+        Thread.sleep(150);
+        try {
+            airStation.getIcon();
+            fail("Requests fail fast while the probe is running");
+        } catch (CircuitOpenException e) {
+            assertEquals(1, breaker.getProbeCount());
+        }
+        awaitState(CLOSED);
+        assertTrue(airStation.getIcon().getBoolean("INTERNET"));
+        assertEquals(0, breaker.getConsecutiveFailures());
+        synchronized (transitions) {
+            assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>CLOSED]", transitions.toString());
+        }
+    }
+
+    @Test
+    public void cancelledCallsIgnored() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("circuitBreaker", new JSONObject().put("failureThreshold", 2))
+                .put("throttle", new JSONObject()));
+        airStation.login("admin", "password");
+        double rate = airStation.getThrottle().getRate();
+        hangs.set(3);
+        List<AirStationFuture<JSONArray>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AirStationFuture<JSONArray> future = new AirStationFuture<>();
+            airStation.getDhcpReservation(future);
+            futures.add(future);
+        }
+        Thread.sleep(200);
+        for (AirStationFuture<JSONArray> future : futures)
+            assertTrue(future.cancel(true));
+        for (int i = 0; i < 100 && airStation.getBulkhead().getActiveCount() > 0; i++)
+            Thread.sleep(10);
+        assertEquals(0, airStation.getBulkhead().getActiveCount());
+        assertEquals(CLOSED, airStation.getCircuitBreaker().getState());
+        assertEquals(0, airStation.getCircuitBreaker().getConsecutiveFailures());
+        assertEquals(0, airStation.getThrottle().getDecreaseCount());
+        assertTrue(airStation.getThrottle().getRate() >= rate);
+    }
+
+    @Test
+    public void timedOutCallsCount() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("callTimeout", 100)
+                .put("circuitBreaker", new JSONObject().put("failureThreshold", 2)));
+        airStation.login("admin", "password");
+        hangs.set(2);
+        for (int i = 0; i < 2; i++) {
+            try {
+                airStation.getIcon();
+                fail("The call should time out");
+            } catch (InterruptedIOException expected) {
+                // The watchdog cancelled the call.
+            }
+        }
+        assertEquals(OPEN, airStation.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void failedProbeReopens() throws Exception {
+        open();
+        Thread.sleep(150);
+        try {
+            airStation.getIcon();
+            fail("The circuit should be half-open");
+        } catch (CircuitOpenException e) {
+            assertEquals(1, breaker.getProbeCount());
+        }
+        awaitState(OPEN);
+        assertEquals(2, breaker.getOpenCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.AbstractTestCase;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class DeviceChangeFeedTestCase extends AbstractTestCase {
+
+    private final AirStation airStation = new AirStation("http://192.168.11.1");
+    private final DeviceChangeFeed feed = new DeviceChangeFeed();
+    private final List<DeviceEvent> received = new ArrayList<>();
+
+    {
+        feed.addListener(new DeviceEventListener() {
+            @Override
+            public void onDeviceEvent(AirStation source, DeviceEvent event) {
+                assertSame(airStation, source);
+                received.add(event);
+            }
+        });
+    }
+
+    private NetworkDevice device(String mac, int qos) {
+        NetworkDevice device = new NetworkDevice();
+        device.setMacAddress(mac);
+        device.setQos(qos);
+        return device;
+    }
+
+    @Test
+    public void firstListJoins() throws IOException {
+        JSONObject devctrl = jsonFromFixture("devctrl");
+        feed.onResult(airStation, DEVCTRL, devctrl, true);
+        int clients = devctrl.getJSONArray("DEVICE").length() - 1;
+        assertEquals(clients, received.size());
+        for (DeviceEvent event : received) {
+            assertEquals(DeviceEvent.Type.JOINED, event.getType());
+            assertNull(event.getPrevious());
+        }
+        assertEquals(clients, feed.getDevices(airStation).size());
+    }
+
+    @Test
+    public void delta() throws IOException {
+        JSONObject devctrl = jsonFromFixture("devctrl");
+        feed.onResult(airStation, DEVCTRL, devctrl, true);
+        received.clear();
+
+        JSONArray devices = devctrl.getJSONArray("DEVICE");
+        JSONObject first = devices.getJSONObject(0);
+        first.put("DISCONNECT", !first.getBoolean("DISCONNECT"));
+        first.put("UP", "1Mbps");
+        String left = devices.getJSONObject(1).getString("MAC");
+        devices.remove(1);
+        devices.put(new JSONObject().put("NAME", "C").put("MAC", "00:00:00:00:00:0c").put("QOS", 1));
+
+        feed.onResult(airStation, DEVCTRL, devctrl, true);
+        assertEquals(3, received.size());
+        assertEquals(DeviceEvent.Type.CHANGED, received.get(0).getType());
+        assertEquals(first.getString("MAC"), received.get(0).getMacAddress());
+        assertEquals(!first.getBoolean("DISCONNECT"), received.get(0).getPrevious().isDisconnected());
+        assertEquals(DeviceEvent.Type.JOINED, received.get(1).getType());
+        assertEquals(1, received.get(1).getCurrent().getQos());
+        assertEquals(DeviceEvent.Type.LEFT, received.get(2).getType());
+        assertEquals(left, received.get(2).getMacAddress());
+        assertNull(received.get(2).getCurrent());
+    }
+
+    @Test
+    public void macIsCaseInsensitive() {
+        feed.update(airStation, Collections.singletonList(device("aa:bb:cc:dd:ee:ff", 0)));
+        assertTrue(feed.update(airStation, Collections.singletonList(device("AA:BB:CC:DD:EE:FF", 0))).isEmpty());
+        List<DeviceEvent> events = feed.update(airStation, Collections.singletonList(device("AA:BB:CC:DD:EE:FF", 2)));
+        assertEquals(1, events.size());
+        assertEquals(DeviceEvent.Type.CHANGED, events.get(0).getType());
+    }
+
+    @Test
+    public void unchangedPollsAreSkipped() throws IOException {
+        JSONObject devctrl = jsonFromFixture("devctrl");
+        feed.onResult(airStation, DEVCTRL, devctrl, true);
+        received.clear();
+        devctrl.getJSONArray("DEVICE").remove(0);
+        feed.onResult(airStation, DEVCTRL, devctrl, false);
+        feed.onResult(airStation, ICON, new JSONObject(), true);
+        assertTrue(received.isEmpty());
+
+        feed.forget(airStation);
+        assertTrue(feed.getDevices(airStation).isEmpty());
+        feed.onResult(airStation, DEVCTRL, devctrl, false);
+        assertEquals(devctrl.getJSONArray("DEVICE").length() - 1, received.size());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.AbstractTestCase;
+import com.github.ffalcinelli.buffalo.exception.SessionExpiredException;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import okio.Buffer;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class DhcpLeaseReaderTestCase extends AbstractTestCase {
+
+    @Test
+    public void sameAsDocument() throws IOException {
+        String html = readFixture("dhcp_reserv", "html");
+        List<String> expected = new ArrayList<>();
+        Element table = Jsoup.parse(html).getElementsByAttributeValue("class", "AD_LIST").first();
+        for (Element tr : table.getElementsByTag("tr")) {
+            Elements tds = tr.getElementsByTag("td");
+            if (tds.size() == 5)
+                expected.add(tds.get(0).text().replaceAll("\\(\\*\\)", "") + "|" + tds.get(1).text() + "|"
+                        + tds.get(2).text() + "|"
+                        + tds.get(4).getElementsByAttributeValue("type", "submit").first().attr("name").substring(3));
+        }
+        assertFalse(expected.isEmpty());
+
+        Buffer page = new Buffer().writeUtf8(html);
+        List<String> actual = new ArrayList<>();
+        DhcpLeaseReader reader = new DhcpLeaseReader(page);
+        while (reader.next())
+            actual.add(reader.getIpAddress() + "|" + reader.getMacAddress() + "|" + reader.getLease() + "|"
+                    + reader.getId());
+        assertEquals(expected, actual);
+        assertFalse(reader.next());
+        assertTrue(page.exhausted());
+    }
+
+    @Test
+    public void networkDevice() throws IOException {
+        DhcpLeaseReader reader = new DhcpLeaseReader(new Buffer().writeUtf8(
+                "<table class=\"AD_LIST\"><tr><td>192.168.11.7</td><td>00:11:22:33:44:55</td><td>161:39:13</td>"
+                        + "<td></td><td><input type=\"submit\" value=\"\" name=\"VAL4\"></td></tr></table>"));
+        assertTrue(reader.next());
+        NetworkDevice device = reader.toNetworkDevice();
+        assertEquals("192.168.11.7", device.getIpAddress());
+        assertEquals("00:11:22:33:44:55", device.getMacAddress());
+        assertEquals(161 * 3600 + 39 * 60 + 13, device.getLeaseTime());
+        assertEquals(4, device.getId());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void parseLease() {
+        assertEquals(0, DhcpLeaseReader.parseLease("--:--:--"));
+        assertEquals(3723, DhcpLeaseReader.parseLease("1:02:03"));
+    }
+
+    @Test(expected = SessionExpiredException.class)
+    public void loginPage() throws IOException {
+        new DhcpLeaseReader(new Buffer().writeUtf8(readFixture("login", "html"))).next();
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class FingerprintTestCase {
+
+    private Fingerprint fingerprint(String text, Buffer sink) throws IOException {
+        return Fingerprint.read(new Buffer().writeUtf8(text), sink);
+    }
+
+    @Test
+    public void fnv1a() throws IOException {
+        Buffer sink = new Buffer();
+        assertEquals(0xcbf29ce484222325L, fingerprint("", sink).getHash());
+        assertEquals(0xaf63dc4c8601ec8cL, fingerprint("a", sink).getHash());
+        assertEquals(0x85944171f73967e8L, fingerprint("foobar", sink).getHash());
+        assertEquals("afoobar", sink.readUtf8());
+    }
+
+    @Test
+    public void largeBody() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            sb.append("{\"N\":").append(i).append('}');
+        String body = sb.toString();
+        Buffer sink = new Buffer();
+        Fingerprint fingerprint = fingerprint(body, sink);
+        assertEquals(body, sink.readUtf8());
+        assertEquals(body.length(), fingerprint.getLength());
+        assertTrue(fingerprint.matches(fingerprint(body, new Buffer())));
+        assertFalse(fingerprint.matches(fingerprint(body.replace("4999", "4998"), new Buffer())));
+        assertFalse(fingerprint.matches(null));
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class FormRequestBodyTestCase {
+
+    private static final String[] VALUES = {"basic_setting_WIRELESS", "a b&c=d", "città", "€ 5/10", "😀",
+            "broken\uD800", "+%*.-_~'", ""};
+
+    private String encode(Map<String, String> params, String encoding) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (sb.length() > 0)
+                sb.append('&');
+            sb.append(URLEncoder.encode(entry.getKey(), encoding)).append('=')
+                    .append(URLEncoder.encode(entry.getValue(), encoding));
+        }
+        return sb.toString();
+    }
+
+    private void assertSameAsURLEncoder(String encoding) throws IOException {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < VALUES.length; i++)
+            params.put("k" + i + VALUES[i], VALUES[i]);
+        FormRequestBody body = FormRequestBody.of(params, Charset.forName(encoding));
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertEquals(buffer.size(), body.contentLength());
+        assertEquals(encode(params, encoding), buffer.readUtf8());
+    }
+
+    @Test
+    public void utf8() throws IOException {
+        assertSameAsURLEncoder("utf-8");
+    }
+
+    @Test
+    public void otherCharset() throws IOException {
+        assertSameAsURLEncoder("ISO-8859-1");
+    }
+
+    @Test
+    public void encoded() throws IOException {
+        FormRequestBody body = new FormRequestBody.Builder(Charset.forName("utf-8"))
+                .addEncoded("el", "button_QOS")
+                .add("val", "ON OFF")
+                .build();
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        assertEquals("el=button_QOS&val=ON+OFF", buffer.readUtf8());
+        assertEquals(24, body.contentLength());
+    }
+}
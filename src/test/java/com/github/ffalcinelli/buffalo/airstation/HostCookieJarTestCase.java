@@ -0,0 +1,66 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.Cookie;
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertEquals;
+
+public class HostCookieJarTestCase {
+
+    HttpUrl device = HttpUrl.parse("http://192.168.11.1/cgi-bin/cgi?req=twz");
+    HttpUrl other = HttpUrl.parse("http://192.168.12.1/cgi-bin/cgi?req=twz");
+
+    private static Cookie cookie(String name, String value, HttpUrl url, long expiresAt) {
+        return new Cookie.Builder().name(name).value(value).hostOnlyDomain(url.host()).path("/").expiresAt(expiresAt)
+                .build();
+    }
+
+    @Test
+    public void keyedByHost() {
+        HostCookieJar jar = new HostCookieJar();
+        long expiresAt = System.currentTimeMillis() + 60000;
+        for (int i = 0; i < 1000; i++) {
+            HttpUrl url = device.newBuilder().addQueryParameter("t", String.valueOf(i)).build();
+            jar.saveFromResponse(url, Collections.singletonList(cookie("session", String.valueOf(i), url, expiresAt)));
+        }
+        assertEquals(1, jar.size());
+        List<Cookie> cookies = jar.loadForRequest(device.newBuilder().addQueryParameter("t", "new").build());
+        assertEquals(1, cookies.size());
+        assertEquals("999", cookies.get(0).value());
+        assertTrue(jar.loadForRequest(other).isEmpty());
+    }
+
+    @Test
+    public void expiry() {
+        HostCookieJar jar = new HostCookieJar();
+        long now = System.currentTimeMillis();
+        jar.saveFromResponse(device, Arrays.asList(
+                cookie("session", "1", device, now + 60000),
+                cookie("old", "1", device, now + 60000)));
+        assertEquals(2, jar.size());
+        // A cookie saved with a past expiry removes the stored one.
+        jar.saveFromResponse(device, Collections.singletonList(cookie("old", "", device, now - 1)));
+        assertEquals(1, jar.loadForRequest(device).size());
+        assertEquals(1, jar.size());
+    }
+
+    @Test
+    public void bounded() {
+        HostCookieJar jar = new HostCookieJar(2);
+        long expiresAt = System.currentTimeMillis() + 60000;
+        for (int i = 0; i < 5; i++)
+            jar.saveFromResponse(device, Collections.singletonList(cookie("c" + i, "v", device, expiresAt)));
+        List<Cookie> cookies = jar.loadForRequest(device);
+        assertEquals(2, cookies.size());
+        assertEquals("c3", cookies.get(0).name());
+        assertEquals("c4", cookies.get(1).name());
+        jar.clear();
+        assertEquals(0, jar.size());
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.AbstractTestCase;
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class HtmlScannerTestCase extends AbstractTestCase {
+
+    @Test
+    public void checkError() throws IOException {
+        Buffer page = new Buffer().writeUtf8(readFixture("main", "html"));
+        HtmlScanner.checkError(page);
+        assertTrue(page.exhausted());
+        try {
+            HtmlScanner.checkError(new Buffer().writeUtf8(readFixture("login_failed", "html")));
+            fail("An error page must be reported");
+        } catch (AirStationException e) {
+            assertEquals("Password errata.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void checkMultilineError() throws IOException {
+        try {
+            HtmlScanner.checkError(new Buffer().writeUtf8(readFixture("login_failed_multiline", "html")));
+            fail("An error div whose tag spans many lines must be reported");
+        } catch (AirStationException e) {
+            assertEquals("Password errata.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void readLoginPage() throws IOException {
+        Buffer page = new Buffer().writeUtf8(readFixture("login", "html"));
+        LoginPage loginPage = LoginPage.read(page);
+        assertTrue(loginPage.isLogin());
+        assertEquals("51", loginPage.webSessionNum);
+        assertTrue(page.exhausted());
+        assertSame(LoginPage.NOT_LOGIN, LoginPage.read(new Buffer().writeUtf8(readFixture("main", "html"))));
+    }
+
+    @Test
+    public void splitTitle() throws IOException {
+        LoginPage page = LoginPage.extract("<html><head><title>\nLogin\n</title></head><body>\n" +
+                "var exponent = \"65537\";\nvar modulus = \"A526\";\n" +
+                "<input type=\"hidden\" name=\"sWebSessionnum\" value=\"51\">" +
+                "<input type=\"hidden\" name=\"sWebSessionid\" value=\"-709248818\">\n</body></html>");
+        assertTrue(page.isLogin());
+        assertEquals("A526", page.modulus);
+        assertEquals("-709248818", page.webSessionId);
+    }
+
+    @Test
+    public void loginPageTitle() throws IOException {
+        Buffer page = new Buffer().writeUtf8(readFixture("login", "html"));
+        assertTrue(new HtmlScanner(page, false).isLoginPage());
+        // The scan stops at the title.
+        assertFalse(page.exhausted());
+        assertFalse(new HtmlScanner(new Buffer().writeUtf8(readFixture("main", "html")), false).isLoginPage());
+        assertTrue(new HtmlScanner(new Buffer().writeUtf8("\n <html><head><title lang=\"en\">\nLogin\n</title>"), false)
+                .isLoginPage());
+        HtmlScanner plain = new HtmlScanner(new Buffer().writeUtf8(" OK"), true);
+        assertFalse(plain.isLoginPage());
+        assertEquals(" OK", plain.remainder());
+        // No title found by the scan: Jsoup tells.
+        assertTrue(new HtmlScanner(new Buffer().writeUtf8("<html><head><TITLE\n>login</TITLE>"), true).isLoginPage());
+    }
+
+    @Test
+    public void fallback() throws IOException {
+        HtmlScanner scanner = new HtmlScanner(new Buffer().writeUtf8("first\nsecond\nthird"), true);
+        assertEquals("first", scanner.nextLine());
+        assertEquals("first\nsecond\nthird", scanner.remainder());
+        assertNull(scanner.nextLine());
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.AbstractTestCase;
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import com.github.ffalcinelli.buffalo.models.WifiSettings;
+import okio.Buffer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class JSONParamReaderTestCase extends AbstractTestCase {
+
+    private JsonStreamReader reader(String json) {
+        return new JsonStreamReader(new Buffer().writeUtf8(json));
+    }
+
+    @Test
+    public void devices() throws IOException {
+        List<NetworkDevice> devices = JSONParamReader.DEVICES.read(reader(readFixture("devctrl", "json")));
+        JSONArray expected = jsonFromFixture("devctrl").getJSONArray("DEVICE");
+        assertEquals(expected.length() - 1, devices.size());
+        for (int i = 0; i < devices.size(); i++) {
+            JSONObject json = expected.getJSONObject(i);
+            NetworkDevice device = devices.get(i);
+            assertEquals(json.getString("NAME"), device.getName());
+            assertEquals(json.getString("IMAGE"), device.getImg());
+            assertEquals(json.getString("MAC"), device.getMacAddress());
+            assertEquals(json.getInt("QOS"), device.getQos());
+            assertEquals(json.getBoolean("DISCONNECT"), device.isDisconnected());
+        }
+    }
+
+    @Test
+    public void devicesFromTree() throws IOException {
+        List<NetworkDevice> expected = JSONParamReader.DEVICES.read(reader(readFixture("devctrl", "json")));
+        List<NetworkDevice> devices = JSONParamReader.DEVICES.read(jsonFromFixture("devctrl"));
+        assertEquals(expected.size(), devices.size());
+        for (int i = 0; i < devices.size(); i++) {
+            assertEquals(expected.get(i).getName(), devices.get(i).getName());
+            assertEquals(expected.get(i).getImg(), devices.get(i).getImg());
+            assertEquals(expected.get(i).getIpAddress(), devices.get(i).getIpAddress());
+            assertEquals(expected.get(i).getMacAddress(), devices.get(i).getMacAddress());
+            assertEquals(expected.get(i).getQos(), devices.get(i).getQos());
+            assertEquals(expected.get(i).isParentalEnabled(), devices.get(i).isParentalEnabled());
+            assertEquals(expected.get(i).isDisconnected(), devices.get(i).isDisconnected());
+        }
+    }
+
+    @Test
+    public void wireless() throws IOException {
+        List<WifiSettings> interfaces = JSONParamReader.WIRELESS.read(jsonFromFixture("wireless"));
+        assertEquals(2, interfaces.size());
+        WifiSettings g = interfaces.get(0);
+        assertEquals("Buffalo-G-274A", g.getSsid());
+        assertEquals("secret", g.getKey());
+        assertEquals("AES", g.getEncryptionType());
+        assertEquals(40, g.getBw());
+        assertEquals(0, g.getChannel());
+        assertTrue(g.isEnabled());
+        assertEquals("Buffalo-A-274A", interfaces.get(1).getSsid());
+        assertEquals(80, interfaces.get(1).getBw());
+    }
+
+    @Test
+    public void guest() throws IOException {
+        WifiSettings guest = JSONParamReader.GUEST.read(reader(readFixture("guest", "json")));
+        assertEquals("Guest-274A", guest.getSsid());
+        assertEquals("secr3t", guest.getKey());
+        assertEquals(24, guest.getTime());
+        assertFalse(guest.isEnabled());
+    }
+
+    @Test
+    public void functionEnabled() throws IOException {
+        assertFalse(JSONParamReader.FUNCTION_ENABLED.read(reader(readFixture("samba", "json"))));
+        assertTrue(JSONParamReader.FUNCTION_ENABLED.read(reader("{\"SUPPORT\":true,\"FUNCTION\":\"true\"}")));
+    }
+
+    @Test
+    public void treeTokens() throws IOException {
+        JsonReader reader = new JsonTreeReader(new JSONObject("{\"skip\": [1, {\"c\": [null, false]}],"
+                + " \"list\": [\"7\", 2.5, true, null]}"));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("list")) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            assertEquals(JsonReader.Token.STRING, reader.peek());
+            assertEquals(7, reader.nextInt(0));
+            assertEquals(JsonReader.Token.NUMBER, reader.peek());
+            assertEquals(2, reader.nextInt(0));
+            assertTrue(reader.nextBoolean());
+            assertEquals(JsonReader.Token.NULL, reader.peek());
+            assertEquals("null", reader.nextString());
+            assertFalse(reader.hasNext());
+            reader.endArray();
+        }
+        reader.endObject();
+        assertEquals(JsonReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void tokens() throws IOException {
+        JsonStreamReader reader = reader(" {\"a\\\"b\" : \"x\\u00e8\\n\", \"skip\": [1, {\"c\": [null, false]}],"
+                + " \"n\": -12.5e1, \"s\": \"7\"} ");
+        reader.beginObject();
+        assertEquals("a\"b", reader.nextName());
+        assertEquals("xè\n", reader.nextString());
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("n", reader.nextName());
+        assertEquals(JsonStreamReader.Token.NUMBER, reader.peek());
+        assertEquals(-125, reader.nextLong(0));
+        assertEquals("s", reader.nextName());
+        assertEquals(7, reader.nextInt(0));
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonStreamReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test(expected = AirStationException.class)
+    public void unexpectedToken() throws IOException {
+        reader("[1]").beginObject();
+    }
+}
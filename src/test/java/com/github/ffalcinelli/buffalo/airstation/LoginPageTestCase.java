@@ -0,0 +1,65 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.AbstractTestCase;
+import com.github.ffalcinelli.buffalo.crypto.Encryptor;
+import com.github.ffalcinelli.buffalo.crypto.JCARsa;
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class LoginPageTestCase extends AbstractTestCase {
+
+    @Test
+    public void extract() throws IOException {
+        String html = readFixture("login", "html");
+        LoginPage extracted = LoginPage.extract(html);
+        LoginPage parsed = LoginPage.parse(Jsoup.parse(html));
+        assertTrue(extracted.isLogin());
+        assertEquals("-709248818", extracted.webSessionId);
+        assertEquals("51", extracted.webSessionNum);
+        assertEquals(parsed.webSessionId, extracted.webSessionId);
+        assertEquals(parsed.webSessionNum, extracted.webSessionNum);
+        assertEquals(parsed.exponent, extracted.exponent);
+        assertEquals(parsed.modulus, extracted.modulus);
+    }
+
+    @Test
+    public void notLogin() throws IOException {
+        assertSame(LoginPage.NOT_LOGIN, LoginPage.extract(readFixture("main", "html")));
+        assertSame(LoginPage.NOT_LOGIN, LoginPage.parse(Jsoup.parse(readFixture("main", "html"))));
+    }
+
+    @Test
+    public void fallback() throws IOException {
+        assertNull(LoginPage.extract(readFixture("login_failed", "html")));
+        assertNull(LoginPage.extract("<html><body>no title</body></html>"));
+        assertNull(LoginPage.extract("<html><title>Login</title><body>no tokens</body></html>"));
+    }
+
+    @Test
+    public void encryptorCache() throws IOException {
+        RequestAdapter adapter = new RequestAdapter("http://192.168.11.1", "UTF-8");
+        LoginPage page = LoginPage.extract(readFixture("login", "html"));
+        Encryptor encryptor = adapter.getEncryptor(page.exponent, page.modulus);
+        assertSame(encryptor, adapter.getEncryptor(page.exponent, page.modulus));
+        // A rotated key gets a new encryptor.
+        assertNotSame(encryptor, adapter.getEncryptor(page.exponent, page.modulus.substring(2)));
+    }
+
+    @Test
+    public void jcaEncryptor() throws IOException {
+        RequestAdapter adapter = new RequestAdapter("http://192.168.11.1", "UTF-8", RequestAdapter.JCA_ENCRYPTOR);
+        LoginPage page = LoginPage.extract(readFixture("login", "html"));
+        assertTrue(adapter.getEncryptor(page.exponent, page.modulus) instanceof JCARsa);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownEncryptor() {
+        new RequestAdapter("http://192.168.11.1", "UTF-8", "unknown");
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction;
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+
+public class RequestAdapterTestCase {
+
+    private final RequestAdapter adapter = new RequestAdapter("http://192.168.11.1/", "UTF-8");
+
+    @Test
+    public void staticUrls() {
+        assertEquals("http://192.168.11.1/cgi-bin/cgi?req=twz", adapter.getHomeRequest().url().toString());
+        assertEquals("http://192.168.11.1/cgi-bin/cgi?req=twz&frm=logout.html",
+                adapter.getLogoutRequest().url().toString());
+    }
+
+    @Test
+    public void jsonParamUrl() {
+        for (JSONFunction param : JSONFunction.values()) {
+            HttpUrl url = adapter.getJSONParamRequest(param).url();
+            String fnc = url.queryParameter("fnc");
+            assertTrue(fnc, fnc.startsWith("${get_json_param(" + param.name() + ","));
+            long t = Long.parseLong(fnc.substring(fnc.indexOf(',') + 1, fnc.length() - 2));
+            assertEquals(String.format("http://192.168.11.1/cgi-bin/cgi?req=fnc&fnc=%%24{get_json_param(%s,%d)}",
+                    param.name(), t), url.toString());
+        }
+        assertEquals("POST", adapter.getJSONParamRequest("DEVICE").method());
+    }
+
+    @Test
+    public void setAndFrmUrls() throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("el", "button_QOS");
+        HttpUrl set = adapter.getSETRequest(params).url();
+        assertEquals(HttpUrl.parse("http://192.168.11.1/cgi-bin/cgi?req=set&t=" + set.queryParameter("t")), set);
+        adapter.getFRMRequest("dhcps_lease.html");
+        HttpUrl frm = adapter.getFRMRequest("dhcps_lease.html").url();
+        assertEquals(HttpUrl.parse("http://192.168.11.1/cgi-bin/cgi?req=frm&frm=dhcps_lease.html&rnd="
+                + frm.queryParameter("rnd")), frm);
+        assertEquals(8, frm.queryParameter("rnd").length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidUrl() {
+        new RequestAdapter("not an url", "UTF-8");
+    }
+}
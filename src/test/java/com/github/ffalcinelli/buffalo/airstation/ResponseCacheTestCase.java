@@ -0,0 +1,101 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.*;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class ResponseCacheTestCase {
+
+    long now;
+    ResponseCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ResponseCache(new JSONObject()
+                .put("maxSize", 2)
+                .put("staleWhileRevalidate", 500)
+                .put("ttl", new JSONObject().put("LANG", 1000).put("DEVICE", 1000).put("SYSTEM", 1000))) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void defaults() {
+        JSONObject settings = new JSONObject();
+        ResponseCache defaults = new ResponseCache(settings);
+        assertEquals(ResponseCache.DEFAULT_MAX_SIZE, settings.getInt("maxSize"));
+        assertTrue(defaults.isCached(DEVICE));
+        assertTrue(defaults.isCached(NAS));
+        assertFalse(defaults.isCached(BUSY));
+    }
+
+    @Test
+    public void ttl() {
+        JSONObject lang = new JSONObject();
+        assertNull(cache.get(LANG));
+        cache.put(LANG, lang, cache.generation(LANG));
+        now = 1000;
+        ResponseCache.Lookup lookup = cache.get(LANG);
+        assertSame(lang, lookup.value);
+        assertFalse(lookup.refresh);
+        now = 1200;
+        assertTrue(cache.get(LANG).refresh);
+        assertFalse(cache.get(LANG).refresh);
+        cache.refreshFailed(LANG);
+        assertTrue(cache.get(LANG).refresh);
+        now = 1501;
+        assertNull(cache.get(LANG));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getStaleHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void eviction() {
+        cache.put(LANG, new JSONObject(), 0);
+        cache.put(DEVICE, new JSONObject(), 0);
+        cache.get(LANG);
+        cache.put(SYSTEM, new JSONObject(), 0);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(LANG));
+        assertNull(cache.get(DEVICE));
+        cache.put(BUSY, new JSONObject(), 0);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void invalidate() {
+        long generation = cache.generation(DEVICE);
+        cache.invalidate(EnumSet.of(DEVICE));
+        cache.put(DEVICE, new JSONObject(), generation);
+        assertNull(cache.get(DEVICE));
+        cache.put(DEVICE, new JSONObject(), cache.generation(DEVICE));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void affectedBy() {
+        RequestAdapter adapter = new RequestAdapter("http://192.168.11.1", "UTF-8");
+        assertEquals(EnumSet.of(DEVCTRL), ResponseCache.affectedBy(adapter.getWolParams("aa:bb:cc:dd:ee:ff")));
+        assertEquals(EnumSet.of(AOSS, WPS), ResponseCache.affectedBy(adapter.getAossParams()));
+        assertEquals(EnumSet.of(QOS), ResponseCache.affectedBy(adapter.getQosParams(true)));
+        assertEquals(EnumSet.of(GUEST), ResponseCache.affectedBy(adapter.getGuestEnabledParams(true)));
+        assertEquals(EnumSet.of(NAS), ResponseCache.affectedBy(adapter.getDetectNasParams()));
+        assertEquals(EnumSet.of(PARENTAL), ResponseCache.affectedBy(adapter.getParentalPolicyParams(1)));
+        Map<String, String> unknown = new HashMap<>();
+        unknown.put("el", "unknown");
+        assertEquals(EnumSet.allOf(RequestAdapter.JSONFunction.class), ResponseCache.affectedBy(unknown));
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.exception.AirStationException;
+import okhttp3.OkHttpClient;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.ffalcinelli.buffalo.airstation.RequestAdapter.JSONFunction.ICON;
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class RetryPolicyTestCase extends AbstractAirStationTestCase {
+
+    private RetryPolicy policy;
+
+    @Override
+    public void setupConnection() throws IOException {
+        closeIgnoreException(airStation);
+        // Dropped connections must reach the policy instead of being retried by OkHttp.
+        OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build();
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("retry", new JSONObject().put("maxRetries", 2).put("backoff", 10).put("hedgeMinDelay", 100)),
+                null, client);
+        airStation.login("admin", "password");
+        policy = airStation.getRetryPolicy();
+    }
+
+    @Test
+    public void retryTransientFailure() throws Exception {
+        drops.set(1);
+        long requests = server.getRequestCount();
+        assertTrue(airStation.getJSONParam(ICON).getBoolean("INTERNET"));
+        assertEquals(requests + 2, server.getRequestCount());
+        assertEquals(1, policy.getRetryCount());
+
+        drops.set(1);
+        AirStationFuture<JSONArray> future = new AirStationFuture<>();
+        airStation.getDhcpReservation(future);
+        assertTrue(future.get().length() > 0);
+        assertEquals(2, policy.getRetryCount());
+        assertEquals(2, policy.getBudget().getGrantedCount());
+    }
+
+    @Test
+    public void retriesExhausted() throws Exception {
+        unreachable = true;
+        long requests = server.getRequestCount();
+        try {
+            airStation.getJSONParam(ICON);
+            fail("The device should be unreachable");
+        } catch (IOException e) {
+            assertFalse(e instanceof AirStationException);
+        }
+        assertEquals(requests + 3, server.getRequestCount());
+        assertEquals(2, policy.getRetryCount());
+    }
+
+    @Test
+    public void budgetExhausted() throws Exception {
+        policy.setBudget(new RetryBudget(new JSONObject().put("ratio", 0).put("maxTokens", 0)));
+        drops.set(1);
+        try {
+            airStation.getJSONParam(ICON);
+            fail("The retry should be refused");
+        } catch (IOException e) {
+            assertEquals(0, policy.getRetryCount());
+            assertEquals(1, policy.getBudget().getDeniedCount());
+        }
+        assertTrue(airStation.getJSONParam(ICON).getBoolean("INTERNET"));
+    }
+
+    @Test
+    public void cancelledNotRetried() throws Exception {
+        hangs.set(1);
+        AirStationFuture<JSONObject> future = new AirStationFuture<>();
+        airStation.getJSONParam(ICON, future);
+        Thread.sleep(50);
+        assertTrue(future.cancel(true));
+        Thread.sleep(200);
+        assertEquals(0, policy.getRetryCount());
+        assertEquals(0, policy.getBudget().getGrantedCount());
+        assertEquals(0, airStation.getSingleFlight().getInFlightCount());
+    }
+
+    @Test
+    public void timedOutRetried() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("callTimeout", 100)
+                .put("retry", new JSONObject().put("backoff", 10)));
+        airStation.login("admin", "password");
+        policy = airStation.getRetryPolicy();
+        hangs.set(1);
+        AirStationFuture<JSONObject> future = new AirStationFuture<>();
+        airStation.getJSONParam(ICON, future);
+        assertTrue(future.get().getBoolean("INTERNET"));
+        assertEquals(1, policy.getRetryCount());
+    }
+
+    @Test
+    public void setNotRetried() throws Exception {
+        drops.set(1);
+        Map<String, String> params = new HashMap<>();
+        params.put("testkey", "testvalue");
+        try {
+            airStation.set(params);
+            fail("The write should not be retried");
+        } catch (IOException e) {
+            assertEquals(0, policy.getRetryCount());
+        }
+    }
+
+    @Test
+    public void hedgeSlowRead() throws Exception {
+        for (int i = 0; i < RetryPolicy.MIN_SAMPLES; i++)
+            airStation.getJSONParam(ICON);
+        assertEquals(100, policy.getHedgeDelay());
+        stalls.set(1);
+        long start = System.nanoTime();
+        assertTrue(airStation.getJSONParam(ICON).getBoolean("INTERNET"));
+        assertTrue((System.nanoTime() - start) / 1000000 < 1500);
+        assertEquals(1, policy.getHedgeCount());
+        assertEquals(1, policy.getHedgeWinCount());
+        assertEquals(0, policy.getRetryCount());
+    }
+
+    @Test
+    public void losingHedgeIgnored() throws Exception {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("retry", new JSONObject().put("hedgeMinDelay", 100))
+                .put("circuitBreaker", new JSONObject().put("failureThreshold", 1))
+                .put("throttle", new JSONObject()));
+        airStation.login("admin", "password");
+        policy = airStation.getRetryPolicy();
+        for (int i = 0; i < RetryPolicy.MIN_SAMPLES; i++)
+            airStation.getJSONParam(ICON);
+        // The first request never gets its headers: the hedge wins and the request is cancelled while waiting.
+        hangs.set(1);
+        assertTrue(airStation.getJSONParam(ICON).getBoolean("INTERNET"));
+        assertEquals(1, policy.getHedgeWinCount());
+        for (int i = 0; i < 100 && airStation.getBulkhead().getActiveCount() > 0; i++)
+            Thread.sleep(10);
+        assertEquals(0, airStation.getBulkhead().getActiveCount());
+        assertEquals(CircuitBreaker.State.CLOSED, airStation.getCircuitBreaker().getState());
+        assertEquals(0, airStation.getThrottle().getDecreaseCount());
+    }
+
+    @Test
+    public void transientFailures() {
+        assertTrue(RetryPolicy.isTransient(new SocketTimeoutException()));
+        assertFalse(RetryPolicy.isTransient(new AirStationException("Device failure")));
+        assertFalse(RetryPolicy.isTransient(new IllegalStateException()));
+    }
+
+    @Test
+    public void budget() {
+        RetryBudget budget = new RetryBudget(new JSONObject().put("ratio", 50).put("maxTokens", 1));
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        assertFalse(budget.tryWithdraw());
+        budget.deposit();
+        budget.deposit();
+        assertEquals(1.0, budget.getTokens(), 0);
+        assertTrue(budget.tryWithdraw());
+        assertEquals(2, budget.getGrantedCount());
+        assertEquals(2, budget.getDeniedCount());
+    }
+
+    @Test
+    public void fleetSharesBudget() throws IOException {
+        AirStationFleet fleet = new AirStationFleet(new JSONObject().put("retryBudget", new JSONObject().put("maxTokens", 5)));
+        try {
+            JSONObject settings = new JSONObject().put("url", baseUrl.toString()).put("retry", new JSONObject());
+            AirStation first = fleet.newAirStation(settings);
+            AirStation second = fleet.newAirStation(new JSONObject(settings.toString()));
+            assertSame(fleet.getRetryBudget(), first.getRetryPolicy().getBudget());
+            assertSame(fleet.getRetryBudget(), second.getRetryPolicy().getBudget());
+            assertNull(fleet.newAirStation(baseUrl.toString()).getRetryPolicy());
+        } finally {
+            fleet.close();
+        }
+    }
+}
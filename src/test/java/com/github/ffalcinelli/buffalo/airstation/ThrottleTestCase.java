@@ -0,0 +1,89 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class ThrottleTestCase {
+
+    private Throttle throttle(int burst) {
+        return new Throttle(new JSONObject()
+                .put("minRate", 60)
+                .put("maxRate", 6060)
+                .put("burst", burst)
+                .put("targetLatency", 100)
+                .put("busySampleInterval", 60000));
+    }
+
+    @Test
+    public void tokenBucket() {
+        Throttle throttle = throttle(2);
+        assertEquals(3060, throttle.getRate(), 0.001);
+        assertEquals(0, throttle.reserve());
+        throttle.take();
+        long wait = throttle.reserve();
+        assertTrue(wait > 0 && wait <= 20);
+        assertTrue(throttle.reserve() > wait);
+        assertEquals(2, throttle.getThrottledCount());
+    }
+
+    @Test
+    public void defaultPriority() {
+        Throttle throttle = throttle(1);
+        assertEquals(0, throttle.pace(null));
+        assertEquals(0, throttle.pace(Bulkhead.Priority.INTERACTIVE));
+        assertTrue(throttle.pace(Bulkhead.Priority.BACKGROUND) > 0);
+        assertEquals(1, throttle.getThrottledCount());
+        throttle = new Throttle(new JSONObject().put("burst", 1).put("defaultPriority", "BACKGROUND"));
+        assertEquals(0, throttle.pace(null));
+        assertTrue(throttle.pace(null) > 0);
+    }
+
+    @Test
+    public void additiveIncrease() {
+        Throttle throttle = throttle(1);
+        throttle.onLatency(10);
+        assertEquals(3120, throttle.getRate(), 0.001);
+        for (int i = 0; i < 100; i++)
+            throttle.onLatency(10);
+        assertEquals(6060, throttle.getRate(), 0.001);
+        assertEquals(10, throttle.getLatency(), 0.001);
+    }
+
+    @Test
+    public void multiplicativeDecrease() throws InterruptedException {
+        Throttle throttle = throttle(1);
+        throttle.onLatency(500);
+        assertEquals(1530, throttle.getRate(), 0.001);
+        // A burst of slow responses counts once per target latency.
+        throttle.onFailure();
+        throttle.onBusy(true);
+        assertEquals(1530, throttle.getRate(), 0.001);
+        Thread.sleep(150);
+        throttle.onBusy(false);
+        assertEquals(1530, throttle.getRate(), 0.001);
+        throttle.onBusy(true);
+        assertEquals(765, throttle.getRate(), 0.001);
+        assertEquals(2, throttle.getDecreaseCount());
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(110);
+            throttle.onFailure();
+        }
+        assertEquals(60, throttle.getRate(), 0.001);
+    }
+
+    @Test
+    public void busySamples() {
+        Throttle throttle = throttle(1);
+        assertFalse(throttle.isSampleDue());
+        throttle = new Throttle(new JSONObject().put("busySampleInterval", 0));
+        assertTrue(throttle.isSampleDue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRates() {
+        new Throttle(new JSONObject().put("minRate", 100).put("maxRate", 10));
+    }
+}
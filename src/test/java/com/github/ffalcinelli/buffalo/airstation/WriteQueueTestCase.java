@@ -0,0 +1,185 @@
+package com.github.ffalcinelli.buffalo.airstation;
+
+import com.github.ffalcinelli.buffalo.models.NetworkDevice;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.ffalcinelli.buffalo.utils.Utils.closeIgnoreException;
+import static junit.framework.TestCase.*;
+import static org.junit.Assert.assertEquals;
+
+public class WriteQueueTestCase extends AbstractAirStationTestCase {
+
+    @Override
+    public void setupConnection() {
+    }
+
+    private void useQueue(int maxDelay, int maxPending) throws IOException {
+        closeIgnoreException(airStation);
+        airStation = new AirStation(new JSONObject()
+                .put("url", baseUrl.toString())
+                .put("writeQueue", new JSONObject().put("maxDelay", maxDelay).put("maxPending", maxPending)));
+        airStation.login("admin", "password");
+    }
+
+    private NetworkDevice client(String mac, int qos) {
+        NetworkDevice client = new NetworkDevice();
+        client.setName("client");
+        client.setMacAddress(mac);
+        client.setQos(qos);
+        return client;
+    }
+
+    private String find(List<String> bodies, String... parts) {
+        for (String body : bodies) {
+            boolean all = true;
+            for (String part : parts)
+                all &= body.contains(part);
+            if (all)
+                return body;
+        }
+        return null;
+    }
+
+    private List<String> setBodies(int count) throws InterruptedException {
+        List<String> bodies = new ArrayList<>();
+        RecordedRequest request;
+        while ((request = server.takeRequest(1, TimeUnit.SECONDS)) != null) {
+            if (request.getPath().startsWith("/cgi-bin/cgi?req=set&"))
+                bodies.add(request.getBody().readString(Charset.forName("UTF-8")));
+        }
+        assertEquals(count, bodies.size());
+        return bodies;
+    }
+
+    private List<AirStationFuture<JSONObject>> queueWrites() {
+        List<AirStationFuture<JSONObject>> futures = new ArrayList<>();
+        for (String mac : new String[]{"00:00:00:00:00:0A", "00:00:00:00:00:0B", "00:00:00:00:00:0C"}) {
+            AirStationFuture<JSONObject> future = new AirStationFuture<>();
+            airStation.updateDevCtrl(client(mac, 1), future);
+            futures.add(future);
+        }
+        assertEquals(3, airStation.getWriteQueue().getPendingCount());
+        return futures;
+    }
+
+    /**
+     * Check that the pending writes were all sent, one request each, before the logout request.
+     */
+    private void assertWritesBeforeLogout() throws InterruptedException {
+        List<String> paths = new ArrayList<>();
+        RecordedRequest request;
+        while ((request = server.takeRequest(1, TimeUnit.SECONDS)) != null)
+            paths.add(request.getPath());
+        int sets = 0;
+        for (String path : paths) {
+            if (path.startsWith("/cgi-bin/cgi?req=set&"))
+                sets++;
+        }
+        assertEquals(3, sets);
+        assertEquals("/cgi-bin/cgi?req=twz&frm=logout.html", paths.get(paths.size() - 1));
+    }
+
+    @Test
+    public void closeSendsPendingWrites() throws Exception {
+        useQueue(60000, 100);
+        List<AirStationFuture<JSONObject>> futures = queueWrites();
+        airStation.close();
+        for (AirStationFuture<JSONObject> future : futures) {
+            assertTrue(future.isDone());
+            assertResultOk(future.get());
+        }
+        assertWritesBeforeLogout();
+    }
+
+    @Test
+    public void asyncCloseSendsPendingWrites() throws Exception {
+        useQueue(60000, 100);
+        List<AirStationFuture<JSONObject>> futures = queueWrites();
+        AirStationFuture<JSONObject> closed = new AirStationFuture<>();
+        airStation.close(closed);
+        closed.get(5, TimeUnit.SECONDS);
+        for (AirStationFuture<JSONObject> future : futures) {
+            assertTrue(future.isDone());
+            assertResultOk(future.get());
+        }
+        assertWritesBeforeLogout();
+    }
+
+    @Test
+    public void collapse() throws Exception {
+        useQueue(60000, 100);
+        WriteQueue queue = airStation.getWriteQueue();
+        List<AirStationFuture<JSONObject>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            AirStationFuture<JSONObject> future = new AirStationFuture<>();
+            airStation.setQosPolicy("policy" + i, true, future);
+            futures.add(future);
+        }
+        for (int qos = 0; qos < 2; qos++) {
+            for (String mac : new String[]{"00:00:00:00:00:0a", "00:00:00:00:00:0B"}) {
+                AirStationFuture<JSONObject> future = new AirStationFuture<>();
+                airStation.updateDevCtrl(client(mac, qos), future);
+                futures.add(future);
+            }
+        }
+        AirStationFuture<JSONObject> upper = new AirStationFuture<>();
+        airStation.updateDevCtrl(client("00:00:00:00:00:0A", 2), upper);
+        futures.add(upper);
+        assertEquals(8, queue.getPendingCount());
+        assertFalse(futures.get(0).isDone());
+
+        queue.flush();
+        for (AirStationFuture<JSONObject> future : futures)
+            assertEquals("OK", future.get(5, TimeUnit.SECONDS).getString("RESULT"));
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(8, queue.getSubmittedCount());
+        assertEquals(3, queue.getSentCount());
+        List<String> bodies = setBodies(3);
+        assertNotNull(find(bodies, "el=basic_setting_QOS", "polycy=policy2"));
+        assertNotNull(find(bodies, "mac=00%3A00%3A00%3A00%3A00%3A0A", "qos=2"));
+        assertNotNull(find(bodies, "mac=00%3A00%3A00%3A00%3A00%3A0B", "qos=1"));
+    }
+
+    @Test
+    public void thresholds() throws Exception {
+        useQueue(60000, 2);
+        AirStationFuture<JSONObject> first = new AirStationFuture<>();
+        AirStationFuture<JSONObject> second = new AirStationFuture<>();
+        airStation.setParentalPolicy(1, first);
+        airStation.setParentalPolicy(2, second);
+        assertEquals("OK", first.get(5, TimeUnit.SECONDS).getString("RESULT"));
+        assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, airStation.getWriteQueue().getSentCount());
+
+        useQueue(10, 100);
+        AirStationFuture<JSONObject> delayed = new AirStationFuture<>();
+        airStation.setParentalPolicy(3, delayed);
+        assertEquals("OK", delayed.get(5, TimeUnit.SECONDS).getString("RESULT"));
+    }
+
+    @Test
+    public void syncAndActions() throws Exception {
+        useQueue(60000, 100);
+        WriteQueue queue = airStation.getWriteQueue();
+        AirStationFuture<JSONObject> pending = new AirStationFuture<>();
+        airStation.setParentalPolicy(1, pending);
+        AirStationFuture<JSONObject> button = new AirStationFuture<>();
+        airStation.qos(true, button);
+        assertEquals("OK", button.get(5, TimeUnit.SECONDS).getString("RESULT"));
+        assertEquals(1, queue.getPendingCount());
+        assertResultOk(airStation.setParentalPolicy(2));
+        assertTrue(pending.isDone());
+        assertEquals(1, queue.getSentCount());
+        List<String> bodies = setBodies(2);
+        assertNotNull(find(bodies, "el=button_QOS"));
+        assertNotNull(find(bodies, "el=basic_setting_PARENTAL", "polycy=2"));
+    }
+}
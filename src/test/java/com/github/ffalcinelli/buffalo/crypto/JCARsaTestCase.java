@@ -0,0 +1,81 @@
+package com.github.ffalcinelli.buffalo.crypto;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
+
+public class JCARsaTestCase {
+
+    private KeyPair keyPair;
+    private JCARsa jcaRsa;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair = generator.generateKeyPair();
+        jcaRsa = new JCARsa("65537", ((RSAPublicKey) keyPair.getPublic()).getModulus().toString(16));
+    }
+
+    @Test
+    public void decrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        for (String text : new String[]{"airstation_pass=password", "çÇ", String.valueOf(Character.toChars(0xFB4))}) {
+            String encrypted = jcaRsa.encrypt(text);
+            StringBuilder base64 = new StringBuilder();
+            for (String line : encrypted.split("\\n")) {
+                assertTrue(line.length() <= 64);
+                base64.append(line);
+            }
+            assertArrayEquals(text.getBytes("UTF-8"), cipher.doFinal(decodeBase64(base64.toString())));
+        }
+    }
+
+    @Test
+    public void sameFormat() {
+        String modulus = ((RSAPublicKey) keyPair.getPublic()).getModulus().toString(16);
+        String js = new JSRsa("65537", modulus).encrypt("airstation_pass=password");
+        String jca = jcaRsa.encrypt("airstation_pass=password");
+        // Both drop the cipher leading zeros, so lengths match unless one of them has some.
+        assertTrue(Math.abs(js.length() - jca.length()) <= 4);
+        assertEquals(js.split("\\n")[0].length(), jca.split("\\n")[0].length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void messageTooLong() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 512 + 12; i++) {
+            sb.append("a");
+        }
+        jcaRsa.encrypt(sb.toString());
+    }
+
+    private static byte[] decodeBase64(String text) {
+        String map = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        BigInteger value = BigInteger.ZERO;
+        int bits = 0;
+        for (char c : text.toCharArray()) {
+            if (c == '=')
+                break;
+            value = value.shiftLeft(6).or(BigInteger.valueOf(map.indexOf(c)));
+            bits += 6;
+        }
+        value = value.shiftRight(bits % 8);
+        byte[] bytes = value.toByteArray();
+        int length = bits / 8;
+        byte[] result = new byte[length];
+        System.arraycopy(bytes, Math.max(0, bytes.length - length), result,
+                Math.max(0, length - bytes.length), Math.min(length, bytes.length));
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.ffalcinelli.buffalo.crypto;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * A micro benchmark comparing {@link JSRsa} with the original String based implementation it replaced, and with
+ * the {@link JCARsa} alternative.
+ * Run it with the test classpath:
+ * <pre>
+ * java com.github.ffalcinelli.buffalo.crypto.JSRsaBenchmark [iterations]
+ * </pre>
+ */
+public class JSRsaBenchmark {
+
+    private static final String EXPONENT = "65537";
+    private static final String MODULUS = "A5261939975948BB7A58DFFE5FF54E65F0498F9175F5A09288810B8975871E99" +
+            "AF3B5DD94057B0FC07535F5F97444504FA35169D461D0D30CF0192E307727C06" +
+            "5168C788771C561A9400FB49175E9E6AA4E23FE11AF69E9412DD23B0CB6684C4" +
+            "C2429BCE139E848AB26D0829073351F4ACD36074EAFD036A5EB83359D2A698D3";
+    private static final String TEXT = "airstation_pass=password";
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Encryptor legacy = new LegacyJSRsa(EXPONENT, MODULUS);
+        Encryptor current = new JSRsa(EXPONENT, MODULUS);
+        Encryptor jca = new JCARsa(EXPONENT, MODULUS);
+        // Warm up the implementations before measuring.
+        run(legacy, iterations);
+        run(current, iterations);
+        run(jca, iterations);
+        long legacyNanos = run(legacy, iterations);
+        long currentNanos = run(current, iterations);
+        long jcaNanos = run(jca, iterations);
+        System.out.printf("legacy:  %8.2f us/op%n", legacyNanos / 1000.0 / iterations);
+        System.out.printf("current: %8.2f us/op%n", currentNanos / 1000.0 / iterations);
+        System.out.printf("jca:     %8.2f us/op%n", jcaNanos / 1000.0 / iterations);
+        System.out.printf("speedup: %8.2fx%n", (double) legacyNanos / currentNanos);
+    }
+
+    private static long run(Encryptor encryptor, int iterations) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+            sink += encryptor.encrypt(TEXT).length();
+        long elapsed = System.nanoTime() - start;
+        if (sink == 0)
+            throw new IllegalStateException();
+        return elapsed;
+    }
+
+    /**
+     * The String based implementation {@link JSRsa} had before working on byte arrays.
+     */
+    private static class LegacyJSRsa implements Encryptor {
+        private final static String b64map = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        private final static String b64pad = "=";
+        private BigInteger exp;
+        private BigInteger mod;
+        private int len;
+
+        LegacyJSRsa(String exp, String mod) {
+            this.exp = new BigInteger(Integer.toHexString(Integer.parseInt(exp)), 16);
+            this.mod = new BigInteger(mod, 16);
+            this.len = (this.mod.bitLength() + 7) >> 3;
+        }
+
+        String hex2b64(String h) {
+            int i;
+            int c;
+            String ret = "";
+            for (i = 0; i + 3 <= h.length(); i += 3) {
+                c = Integer.parseInt(h.substring(i, i + 3), 16);
+                ret += String.format("%c%c", b64map.charAt(c >> 6), b64map.charAt(c & 63));
+            }
+            if (i + 1 == h.length()) {
+                c = Integer.parseInt(h.substring(i, i + 1), 16);
+                ret += String.format("%c", b64map.charAt(c << 2));
+            } else if (i + 2 == h.length()) {
+                c = Integer.parseInt(h.substring(i, i + 2), 16);
+                ret += String.format("%c%c", b64map.charAt(c >> 2), b64map.charAt((c & 3) << 4));
+            }
+            while ((ret.length() & 3) > 0) ret += b64pad;
+            return ret;
+        }
+
+        String linebrk(String s, int n) {
+            StringBuilder sb = new StringBuilder();
+            int i = 0;
+            while ((i + n) < s.length()) {
+                sb.append(s.substring(i, i + n)).append("\n");
+                i += n;
+            }
+            return sb.append(s.substring(i, s.length())).toString();
+        }
+
+        BigInteger pkcs1pad2(String s) {
+            int n = this.len;
+            int i = s.length() - 1;
+            byte[] ba = new byte[n];
+            while (i >= 0 && n > 0) {
+                int c = s.codePointAt(i--);
+                if (c < 128) {
+                    ba[--n] = (byte) c;
+                } else if ((c > 127) && (c < 2048)) {
+                    ba[--n] = (byte) ((c & 63) | 128);
+                    ba[--n] = (byte) ((c >> 6) | 192);
+                } else {
+                    ba[--n] = (byte) ((c & 63) | 128);
+                    ba[--n] = (byte) (((c >> 6) & 63) | 128);
+                    ba[--n] = (byte) ((c >> 12) | 224);
+                }
+            }
+            ba[--n] = 0x0;
+            SecureRandom rng = new SecureRandom();
+            byte[] x = new byte[1];
+            while (n > 2) {
+                x[0] = 0x0;
+                while (x[0] == 0x0)
+                    rng.nextBytes(x);
+                ba[--n] = x[0];
+            }
+            ba[--n] = 2;
+            ba[--n] = 0x0;
+            return new BigInteger(ba);
+        }
+
+        @Override
+        public String encrypt(String plainText) {
+            BigInteger c = pkcs1pad2(plainText).modPow(exp, mod);
+            String h = c.toString(16);
+            return linebrk(hex2b64((h.length() & 1) == 0 ? h : "0" + h), 64);
+        }
+    }
+}
@@ -3,7 +3,15 @@ package com.github.ffalcinelli.buffalo.crypto;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.crypto.Cipher;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Random;
+
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertNotEquals;
 
 /**
@@ -48,5 +56,30 @@ public class JSRsaTestCase {
         JSRsa.encrypt(sb.toString());
     }
 
+    @Test
+    public void base64Bytes() {
+        Random random = new Random(42);
+        for (int length = 1; length < 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            data[0] = (byte) (data[0] | 0x10);
+            assertEquals(JSRsa.hexToBase64(new BigInteger(1, data).toString(16)), JSRsa.base64(data));
+        }
+    }
 
+    @Test
+    public void decrypt() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        KeyPair keyPair = generator.generateKeyPair();
+        JSRsa rsa = new JSRsa("65537", ((RSAPublicKey) keyPair.getPublic()).getModulus().toString(16));
+        Cipher cipher = Cipher.getInstance("RSA/ECB/PKCS1Padding");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        for (String text : new String[]{"airstation_pass=password", "çÇ", String.valueOf(Character.toChars(0xFB4))}) {
+            assertArrayEquals(text.getBytes("UTF-8"), cipher.doFinal(rsa.encryptToBytes(text)));
+            String encrypted = rsa.encrypt(text);
+            for (String line : encrypted.split("\n"))
+                assertEquals(true, line.length() <= 64);
+        }
+    }
 }
@@ -27,6 +27,15 @@ public class UtilsTestCase {
         assertEquals("there", Utils.getStringOrDefault(json, "here", "value"));
     }
 
+    @Test
+    public void getIntOrDefault() {
+        JSONObject json = new JSONObject();
+        json.put("here", 1);
+        assertEquals(2, Utils.getIntOrDefault(json, "key", 2));
+        assertEquals(2, json.getInt("key"));
+        assertEquals(1, Utils.getIntOrDefault(json, "here", 2));
+    }
+
     @Test
     public void isEmpty() {
         assertTrue(Utils.isStringEmpty(null));